@@ -1,21 +1,22 @@
 package org.meganekkovr;
 
-import org.joml.Quaternionf;
-
 /**
  * CameraComponent updates its {@link Entity}'s rotation to head tracking rotation in every frame.
  * Any children of its entity are fixed on viewport.
+ * Rotation is updated by a system of {@link Scene}, so this works only in a scene.
  */
 public class CameraComponent extends Component {
 
+    /**
+     * Updated by system of {@link Scene}.
+     */
     @Override
-    public void update(FrameInput frame) {
-
-        // Update entity rotation to match to head tracking.
-        Entity entity = getEntity();
-        Quaternionf q = entity.getApp().getCenterViewRotation();
-        entity.setRotation(q);
+    public boolean isThreadSafe() {
+        return true;
+    }
 
-        super.update(frame);
+    @Override
+    public Component copy() {
+        return new CameraComponent();
     }
 }
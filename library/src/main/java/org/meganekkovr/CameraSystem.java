@@ -0,0 +1,27 @@
+package org.meganekkovr;
+
+import org.joml.Quaternionf;
+
+/**
+ * Updates rotation of entities which have {@link CameraComponent} to head tracking rotation.
+ * This runs before entities are updated, so children of camera are fixed on viewport without delay.
+ */
+class CameraSystem extends ComponentSystem {
+
+    CameraSystem() {
+        super(Phase.BEFORE_UPDATE, 0, CameraComponent.class);
+    }
+
+    @Override
+    protected void update(FrameInput frame) {
+
+        final int count = getEntityCount();
+        if (count == 0) return;
+
+        // Update entity rotation to match to head tracking.
+        final Quaternionf q = getScene().getApp().getCenterViewRotation();
+        for (int i = 0; i < count; ++i) {
+            getEntity(i).setRotation(q);
+        }
+    }
+}
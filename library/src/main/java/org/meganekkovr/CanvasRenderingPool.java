@@ -0,0 +1,57 @@
+package org.meganekkovr;
+
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker threads for {@link SurfaceRendererComponent.CanvasRenderer} which is rendered asynchronously.
+ * See {@link SurfaceRendererComponent#setAsyncRendering(boolean)}.
+ */
+final class CanvasRenderingPool {
+
+    private static ExecutorService executor;
+
+    private CanvasRenderingPool() {
+    }
+
+    /**
+     * Run rendering task on worker thread.
+     *
+     * @param task Rendering task
+     * @return Future to check if rendering is done.
+     */
+    static Future<?> submit(Runnable task) {
+        return getExecutor().submit(task);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+
+            // Leave cores for GL thread and UI thread
+            final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+                            r.run();
+                        }
+                    }, "CanvasRenderer-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
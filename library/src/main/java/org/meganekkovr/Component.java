@@ -1,12 +1,61 @@
 package org.meganekkovr;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Component is a basic class in Meganekko. It attaches some actions or behaviors to {@link Entity}.
+ * Each Component class has dense integer type id which is given at first use.
+ * {@link Entity} stores components in array indexed by type id.
  */
 public abstract class Component {
 
+    private static final Map<Class<? extends Component>, Integer> typeIds = new ConcurrentHashMap<>();
+    private static int typeCount;
+
+    private final int typeId = getTypeId(getClass());
     private Entity entity;
 
+    /**
+     * Get type id of Component class. Keep returned value in static field to use
+     * {@link Entity#getComponent(int)} in frequently called code.
+     *
+     * @param clazz Class of Component
+     * @return Type id. It is 0 or greater and smaller than number of Component classes used so far.
+     */
+    public static int getTypeId(Class<? extends Component> clazz) {
+
+        Integer id = typeIds.get(clazz);
+        if (id != null) return id;
+
+        synchronized (typeIds) {
+            id = typeIds.get(clazz);
+            if (id == null) {
+                id = typeCount++;
+                typeIds.put(clazz, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Get bit of Component class in {@link Entity#getComponentMask()}.
+     *
+     * @param clazz Class of Component
+     * @return Bit mask or {@code 0} if type id is 64 or greater.
+     */
+    public static long getTypeMask(Class<? extends Component> clazz) {
+        final int id = getTypeId(clazz);
+        return id < 64 ? 1L << id : 0;
+    }
+
+    /**
+     * @return Type id of this Component's class.
+     */
+    public final int getTypeId() {
+        return typeId;
+    }
+
     /**
      * Called when this is attached to {@link Entity}.
      *
@@ -31,6 +80,51 @@ public abstract class Component {
     public void update(FrameInput frame) {
     }
 
+    /**
+     * Override this to allow {@link #update(FrameInput)} to run on worker threads in parallel update mode.
+     * Thread-safe component must change only its own entity and descendants in update,
+     * must not add or remove components and entities, and must not call GL or JNI functions.
+     * Such work can be moved to GL thread with {@link #deferToGlThread()}.
+     * Returned value must not be changed while attached.
+     *
+     * @return {@code true} if this is thread-safe. Default is {@code false}.
+     * @see Scene#setParallelUpdate(boolean)
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Call at the beginning of {@link #update(FrameInput)} of thread-safe component which has work for GL thread.
+     * <pre>
+     * public void update(FrameInput frame) {
+     *     if (deferToGlThread()) return;
+     *     // GL thread work
+     * }
+     * </pre>
+     *
+     * @return {@code true} if this is called on worker thread. {@link #update(FrameInput)} will be called
+     * again on GL thread after parallel update in same frame.
+     */
+    protected final boolean deferToGlThread() {
+        ParallelUpdater.Batch batch = ParallelUpdater.currentBatch();
+        if (batch == null) return false;
+        batch.deferredComponents.add(this);
+        return true;
+    }
+
+    /**
+     * Create a new component for {@link Entity#copy()}. Heavy resources such as native geometry
+     * and textures should be shared with this component instead of being created again.
+     * Default implementation returns {@code null} and the component is not copied.
+     * Subclasses which have own state should override this.
+     *
+     * @return New detached component or {@code null} if this cannot be copied.
+     */
+    public Component copy() {
+        return null;
+    }
+
     /**
      * For internal use only.
      *
@@ -0,0 +1,237 @@
+package org.meganekkovr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * System updates all entities which have required components at once instead of
+ * {@link Component#update(FrameInput)} of each component. Register it with {@link Scene#addSystem(ComponentSystem)}.
+ * Matched entities and their components are kept in packed arrays which are maintained when components
+ * or entities are added and removed.
+ * <pre>
+ * public class SpinSystem extends ComponentSystem {
+ *
+ *     public SpinSystem() {
+ *         super(Phase.BEFORE_UPDATE, 0, SpinComponent.class);
+ *     }
+ *
+ *     protected void update(FrameInput frame) {
+ *         for (int i = 0, count = getEntityCount(); i &lt; count; ++i) {
+ *             SpinComponent spin = (SpinComponent) getComponent(i, 0);
+ *             getEntity(i).setRotation(spin.next(frame.getDeltaSeconds()));
+ *         }
+ *     }
+ * }
+ * </pre>
+ * Systems run in order of phase and then order value. Consecutive systems which have same phase and order and
+ * return {@code true} from {@link #isParallel()} run in parallel. They must not depend on each other
+ * and must not add or remove components and entities.
+ */
+public abstract class ComponentSystem {
+
+    public enum Phase {
+
+        /**
+         * Run before entities are updated. Transform changes are reflected on same frame.
+         */
+        BEFORE_UPDATE,
+
+        /**
+         * Run after entities are updated. World matrices of this frame are available.
+         */
+        AFTER_UPDATE
+    }
+
+    private final Phase phase;
+    private final int order;
+    private final int[] requiredTypes;
+    private final Map<Entity, Integer> indices = new IdentityHashMap<>();
+    private final List<Entity> pending = new ArrayList<>();
+    private Entity[] entities = new Entity[16];
+    private Component[][] components;
+    private int count;
+    private boolean updating;
+    Scene scene;
+
+    /**
+     * @param phase              When this runs.
+     * @param order              Smaller value runs earlier in same phase.
+     * @param requiredComponents Classes of components which entity must have.
+     */
+    @SafeVarargs
+    protected ComponentSystem(Phase phase, int order, Class<? extends Component>... requiredComponents) {
+
+        if (requiredComponents.length == 0) {
+            throw new IllegalArgumentException("At least one component is required.");
+        }
+
+        this.phase = phase;
+        this.order = order;
+        this.requiredTypes = new int[requiredComponents.length];
+        this.components = new Component[requiredComponents.length][entities.length];
+        for (int i = 0; i < requiredComponents.length; ++i) {
+            requiredTypes[i] = Component.getTypeId(requiredComponents[i]);
+        }
+    }
+
+    /**
+     * Update matched entities. Called on GL thread unless {@link #isParallel()} returns {@code true}.
+     *
+     * @param frame Frame information
+     */
+    protected abstract void update(FrameInput frame);
+
+    /**
+     * Override this to run in parallel with other systems which have same phase and order.
+     *
+     * @return {@code true} if this can run on other thread. Default is {@code false}.
+     */
+    public boolean isParallel() {
+        return false;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * @return Scene which this system is added to, or {@code null}.
+     */
+    public Scene getScene() {
+        return scene;
+    }
+
+    /**
+     * @return Number of matched entities.
+     */
+    protected final int getEntityCount() {
+        return count;
+    }
+
+    /**
+     * @param index Index of matched entity.
+     * @return Matched entity
+     */
+    protected final Entity getEntity(int index) {
+        return entities[index];
+    }
+
+    /**
+     * @param index       Index of matched entity.
+     * @param requirement Index of required component class passed to constructor.
+     * @return Component of matched entity.
+     */
+    protected final Component getComponent(int index, int requirement) {
+        return components[requirement][index];
+    }
+
+    /**
+     * Called from {@link Scene}.
+     */
+    final void run(FrameInput frame) {
+
+        updating = true;
+        try {
+            update(frame);
+        } finally {
+            updating = false;
+        }
+
+        // Apply changes while updating
+        for (int i = 0, size = pending.size(); i < size; ++i) {
+            refresh(pending.get(i));
+        }
+        pending.clear();
+    }
+
+    /**
+     * Add or remove entity to match current components. Called when components of entity
+     * or scene of entity is changed.
+     */
+    final void refresh(Entity entity) {
+
+        if (updating) {
+            pending.add(entity);
+            return;
+        }
+
+        final Integer index = indices.get(entity);
+        if (!matches(entity)) {
+            if (index != null) removeAt(index);
+            return;
+        }
+
+        final int i;
+        if (index != null) {
+            i = index;
+        } else {
+            if (count == entities.length) {
+                grow(count * 2);
+            }
+            i = count++;
+            entities[i] = entity;
+            indices.put(entity, i);
+        }
+
+        // Component may be replaced with another instance
+        for (int r = 0; r < requiredTypes.length; ++r) {
+            components[r][i] = entity.getComponent(requiredTypes[r]);
+        }
+    }
+
+    /**
+     * Called when this is added to or removed from scene.
+     */
+    final void refreshTree(Entity entity) {
+        refresh(entity);
+        for (Entity child : entity.getChildren()) {
+            refreshTree(child);
+        }
+    }
+
+    private boolean matches(Entity entity) {
+
+        if (scene == null || entity.getScene() != scene) return false;
+
+        for (int type : requiredTypes) {
+            if (entity.getComponent(type) == null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Move last entity to removed position to keep arrays packed.
+     */
+    private void removeAt(int index) {
+
+        final int last = --count;
+        indices.remove(entities[index]);
+
+        if (index != last) {
+            entities[index] = entities[last];
+            indices.put(entities[index], index);
+            for (Component[] column : components) {
+                column[index] = column[last];
+            }
+        }
+
+        entities[last] = null;
+        for (Component[] column : components) {
+            column[last] = null;
+        }
+    }
+
+    private void grow(int capacity) {
+        entities = Arrays.copyOf(entities, capacity);
+        for (int r = 0; r < components.length; ++r) {
+            components[r] = Arrays.copyOf(components[r], capacity);
+        }
+    }
+}
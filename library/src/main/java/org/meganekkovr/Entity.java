@@ -2,7 +2,6 @@ package org.meganekkovr;
 
 import android.graphics.drawable.Drawable;
 import android.support.annotation.Nullable;
-import android.support.v4.util.ArrayMap;
 import android.view.View;
 
 import org.joml.Matrix4f;
@@ -10,9 +9,12 @@ import org.joml.Quaternionf;
 import org.joml.Vector3f;
 import org.meganekkovr.animation.EntityAnimator;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -23,10 +25,32 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * Entity which will be rendered has to have {@link GeometryComponent} and {@link SurfaceRendererComponent}.
  */
 public class Entity {
-    private final NativePointer nativePointer;
-    private final Map<Class<? extends Component>, Component> components = new ArrayMap<>();
+
+    /**
+     * Creates content of {@link Entity} on demand. See {@link #setContentInflater(ContentInflater)}.
+     */
+    public interface ContentInflater {
+
+        /**
+         * Create children or components of entity. This is called on GL thread.
+         *
+         * @param entity      Entity
+         * @param budgetNanos Maximum time to spend in nanoseconds. {@link Long#MAX_VALUE} to create all content.
+         * @return {@code true} if all content is created. {@code false} to be called again later.
+         */
+        boolean inflate(Entity entity, long budgetNanos);
+    }
+
+    private static final int SURFACE_RENDERER_TYPE = Component.getTypeId(SurfaceRendererComponent.class);
+    private static final int GEOMETRY_TYPE = Component.getTypeId(GeometryComponent.class);
+    private static final Map<Class<?>, Boolean> customUpdateClasses = new ConcurrentHashMap<>();
+
+    private NativePointer nativePointer;
+    private Component[] components = new Component[8];
+    private long componentMask;
     private final List<Entity> children = new CopyOnWriteArrayList<>();
     private MeganekkoApp app;
+    private Scene scene;
     private Entity parent;
     private boolean localMatrixUpdateRequired = true;
     private boolean worldMatrixUpdateRequired = true;
@@ -36,14 +60,30 @@ public class Entity {
     private final Matrix4f localMatrix = new Matrix4f();
     private final Matrix4f worldModelMatrix = new Matrix4f();
     private final float[] matrixValues = new float[16];
+    private MatrixArena matrixArena;
+    private int matrixSlot = -1;
     private int id;
     private float opacity = 1.0f;
+    private float parentRenderingOpacity = 1.0f;
+    private float renderingOpacity = 1.0f;
     private boolean updateOpacityRequired;
     private boolean visible = true;
+    private boolean parentShown = true;
+    private boolean updateVisibilityRequired;
+    private ContentInflater contentInflater;
+    private EntityPool.Creation poolCreation;
+
+    // For parallel update
+    private final boolean customUpdate = hasCustomUpdate(getClass());
+    private int unsafeComponentCount;
+    private int unsafeCount = customUpdate ? 1 : 0;
+    private int subtreeSize = 1;
 
     /**
      * Override this to create own native instance.
      * Native class must be derived from {@code mgn::Entity}.
+     * This is called when native instance is required first time, such as when {@link GeometryComponent} or
+     * {@link SurfaceRendererComponent} is attached. Entities which only group others don't have native instance.
      *
      * @return Native pointer value return from C++ {@code new}.
      */
@@ -53,8 +93,9 @@ public class Entity {
 
     private static native void setWorldModelMatrix(long nativePtr, float[] matrix);
 
+    private static native void setSharedWorldModelMatrix(long nativePtr, @Nullable ByteBuffer buffer, int offset);
+
     public Entity() {
-        nativePointer = NativePointer.getInstance(newInstance());
     }
 
     /**
@@ -71,6 +112,36 @@ public class Entity {
         }
     }
 
+    /**
+     * For internal use only.
+     *
+     * @param scene Scene which this entity belongs to, or {@code null}.
+     */
+    void setScene(Scene scene) {
+
+        if (this.scene == scene) return;
+
+        final Scene oldScene = this.scene;
+        this.scene = scene;
+
+        // Update matched entities of systems
+        if (oldScene != null) oldScene.onComponentsChanged(this);
+        if (scene != null) scene.onComponentsChanged(this);
+
+        // Propagate to children
+        for (Entity child : children) {
+            child.setScene(scene);
+        }
+    }
+
+    /**
+     * @return Scene which this entity belongs to, or {@code null} if this is not added to any scene.
+     */
+    @Nullable
+    public Scene getScene() {
+        return scene;
+    }
+
     /**
      * This method is not valid until this is attached to {@link Scene}.
      *
@@ -133,6 +204,22 @@ public class Entity {
      */
     public void update(FrameInput frame) {
 
+        // Native calls are recorded on simulation thread in pipelined mode
+        updateSelf(frame, ParallelUpdater.currentBatch());
+
+        // Notify to children
+        for (Entity child : children) {
+            child.update(frame);
+        }
+    }
+
+    /**
+     * Update transform, inherited values and components of this entity.
+     *
+     * @param batch Batch of worker or simulation thread to record native calls, or {@code null} on GL thread.
+     */
+    private void updateSelf(FrameInput frame, @Nullable ParallelUpdater.Batch batch) {
+
         // Update local model matrix if necessary.
         if (localMatrixUpdateRequired) {
             updateLocalMatrix();
@@ -145,28 +232,287 @@ public class Entity {
             updateWorldModelMatrix();
             worldMatrixUpdateRequired = false;
 
-            // Update native side values
-            worldModelMatrix.get(matrixValues);
-            setWorldModelMatrix(nativePointer.get(), matrixValues);
+            // Update native side values. Without native instance, matrix is uploaded when it is created.
+            if (matrixSlot >= 0) {
+
+                // Native side reads shared matrix directly
+                matrixArena.write(matrixSlot, worldModelMatrix);
+            } else {
+                worldModelMatrix.get(matrixValues);
+                if (nativePointer != null) {
+                    if (batch == null) {
+                        uploadWorldModelMatrix();
+                    } else {
+                        batch.matrixUploads.add(this);
+                    }
+                }
+            }
         }
 
-        // Update opacity if necessary.
+        // Update opacity and visibility inherited from parent if necessary.
+        // Parent is already updated, and children are marked to be updated next.
         if (updateOpacityRequired) {
-            updateOpacity();
+            if (updateOpacity()) {
+                if (batch == null) {
+                    uploadOpacity();
+                } else {
+                    batch.opacityUploads.add(this);
+                }
+            }
             updateOpacityRequired = false;
         }
+        if (updateVisibilityRequired) {
+            updateVisibility();
+            updateVisibilityRequired = false;
+        }
 
-        // Notify to components
-        for (Component component : components.values()) {
-            component.update(frame);
+        // Notify to components. Components can be added or removed while updating.
+        for (int i = 0; i < components.length; ++i) {
+            Component component = components[i];
+            if (component != null) {
+                component.update(frame);
+            }
         }
+    }
+
+    /**
+     * Update subtree on worker thread. Called from {@link ParallelUpdater.Batch}.
+     */
+    void updateSubtree(FrameInput frame, ParallelUpdater.Batch batch) {
+
+        updateSelf(frame, batch);
 
-        // Notify to children
         for (Entity child : children) {
-            child.update(frame);
+            child.updateSubtree(frame, batch);
+        }
+    }
+
+    /**
+     * Update this entity on GL thread and queue subtrees of children which can be updated in parallel.
+     * Called from {@link Scene#update(FrameInput)} in parallel update mode.
+     */
+    void updateParallel(FrameInput frame, ParallelUpdater updater) {
+
+        // Updates which may affect other entities must be done in same order as serial update
+        if (unsafeComponentCount > 0) {
+            updater.flush();
+        }
+        updateSelf(frame, null);
+
+        for (Entity child : children) {
+            if (child.unsafeCount == 0 && child.subtreeSize <= updater.getMaxSubtreeSize()) {
+                updater.enqueue(child);
+            } else if (child.customUpdate) {
+                updater.flush();
+                child.update(frame);
+            } else {
+                child.updateParallel(frame, updater);
+            }
+        }
+    }
+
+    void uploadWorldModelMatrix() {
+
+        final MatrixArena arena = app != null ? app.getMatrixArena() : null;
+        if (matrixSlot >= 0) {
+            matrixArena.write(matrixSlot, worldModelMatrix);
+        } else if (arena != null) {
+            arena.bind(this, worldModelMatrix);
+        } else {
+            setWorldModelMatrix(nativePointer.get(), matrixValues);
+        }
+    }
+
+    /**
+     * Let native side read world model matrix from slot of arena. Called from {@link MatrixArena}.
+     */
+    void bindWorldMatrixSlot(MatrixArena arena, int slot) {
+        matrixArena = arena;
+        matrixSlot = slot;
+        setSharedWorldModelMatrix(nativePointer.get(), arena.getBuffer(), slot * MatrixArena.SLOT_SIZE);
+    }
+
+    /**
+     * Stop sharing world model matrix and upload it. Called from {@link MatrixArena}.
+     */
+    void unbindWorldMatrixSlot() {
+        matrixArena = null;
+        matrixSlot = -1;
+        setSharedWorldModelMatrix(nativePointer.get(), null, 0);
+        worldModelMatrix.get(matrixValues);
+        setWorldModelMatrix(nativePointer.get(), matrixValues);
+    }
+
+    /**
+     * Upload matrix which is computed outside of entity. Used for late latching in pipelined mode.
+     *
+     * @param values Column-major world model matrix.
+     */
+    void uploadWorldModelMatrix(float[] values) {
+        setWorldModelMatrix(nativePointer.get(), values);
+    }
+
+    /**
+     * @return Latest world model matrix uploaded or to be uploaded to native side.
+     */
+    float[] getWorldModelMatrixValues() {
+        return matrixValues;
+    }
+
+    void uploadOpacity() {
+        SurfaceRendererComponent surfaceRendererComponent = (SurfaceRendererComponent) getComponent(SURFACE_RENDERER_TYPE);
+        if (surfaceRendererComponent != null) {
+            surfaceRendererComponent.setOpacity(renderingOpacity);
+        }
+    }
+
+    /**
+     * @return Number of entities in subtree including this.
+     */
+    int getSubtreeSize() {
+        return subtreeSize;
+    }
+
+    /**
+     * Entity which overrides {@link #update(FrameInput)} and its descendants are updated on GL thread.
+     */
+    private static boolean hasCustomUpdate(Class<?> clazz) {
+
+        Boolean custom = customUpdateClasses.get(clazz);
+        if (custom == null) {
+            try {
+                custom = clazz.getMethod("update", FrameInput.class).getDeclaringClass() != Entity.class;
+            } catch (NoSuchMethodException e) {
+                custom = true;
+            }
+            customUpdateClasses.put(clazz, custom);
+        }
+        return custom;
+    }
+
+    /**
+     * Add to counts of this and ancestors.
+     */
+    private void addCounts(int unsafe, int size) {
+        for (Entity e = this; e != null; e = e.parent) {
+            e.unsafeCount += unsafe;
+            e.subtreeSize += size;
+        }
+    }
+
+    /**
+     * Create a copy of this entity and its descendants. Id, transform, opacity and visibility are copied.
+     * Components are copied with {@link Component#copy()}, so geometry and surface are shared with this entity.
+     * Components which return {@code null} from {@link Component#copy()} are not copied.
+     * Subclasses must have public default constructor or override this.
+     * Content which is waiting for {@link #inflate()} is created before copying.
+     *
+     * @return New entity which is not attached to any parent.
+     */
+    public Entity copy() {
+
+        inflate();
+
+        Entity copy;
+        try {
+            copy = getClass().newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot copy " + getClass().getName(), e);
+        }
+
+        copy.id = id;
+        copy.position.set(position);
+        copy.scale.set(scale);
+        copy.rotation.set(rotation);
+        copy.setOpacity(opacity);
+        copy.visible = visible;
+
+        for (Component component : components) {
+            if (component == null) continue;
+            Component componentCopy = component.copy();
+            if (componentCopy != null) {
+                copy.add(componentCopy);
+            }
+        }
+
+        for (Entity child : children) {
+            copy.add(child.copy());
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return Copy of components array indexed by type id. Used for {@link EntityPool}.
+     */
+    Component[] copyComponents() {
+        return Arrays.copyOf(components, components.length);
+    }
+
+    /**
+     * @return State when created by {@link EntityPool}, or {@code null} if this is not created by pool.
+     */
+    EntityPool.Creation getPoolCreation() {
+        return poolCreation;
+    }
+
+    void setPoolCreation(EntityPool.Creation poolCreation) {
+        this.poolCreation = poolCreation;
+    }
+
+    /**
+     * Reset to state when entity was created by {@link EntityPool}. Id, transform, opacity and visibility are
+     * restored. Components and children which are added later are removed, and removed ones are added again.
+     *
+     * @param creation State when created.
+     */
+    void reset(EntityPool.Creation creation) {
+
+        this.id = creation.id;
+        position.set(creation.position);
+        scale.set(creation.scale);
+        rotation.set(creation.rotation);
+        localMatrixUpdateRequired = true;
+        setOpacity(creation.opacity);
+
+        // Don't inflate pending content of recycled entity
+        contentInflater = null;
+        setVisible(creation.visible);
+
+        final Component[] creationComponents = creation.components;
+        final Entity[] creationChildren = creation.children;
+
+        for (int i = 0; i < components.length; ++i) {
+            final Component component = components[i];
+            if (component != null && (i >= creationComponents.length || creationComponents[i] != component)) {
+                remove(component);
+            }
+        }
+        for (Component component : creationComponents) {
+            if (component != null && component.getEntity() == null) {
+                add(component);
+            }
+        }
+
+        for (Entity child : children) {
+            if (!contains(creationChildren, child)) {
+                remove(child);
+            }
+        }
+        for (Entity child : creationChildren) {
+            if (child.parent == null) {
+                add(child);
+            }
         }
     }
 
+    private static boolean contains(Entity[] entities, Entity entity) {
+        for (Entity e : entities) {
+            if (e == entity) return true;
+        }
+        return false;
+    }
+
     /**
      * Update local matrix.
      */
@@ -210,11 +556,20 @@ public class Entity {
      * @return {@code true} if Successfully added. Otherwise {@code false}.
      */
     public boolean add(Component component) {
-        final Class<? extends Component> componentClass = component.getClass();
-        if (!components.containsKey(componentClass)) {
+        final int typeId = component.getTypeId();
+        if (typeId >= components.length) {
+            components = Arrays.copyOf(components, Math.max(typeId + 1, components.length * 2));
+        }
+        if (components[typeId] == null) {
             component.setEntity(this);
             component.onAttach(this);
-            components.put(componentClass, component);
+            components[typeId] = component;
+            if (typeId < 64) componentMask |= 1L << typeId;
+            if (!component.isThreadSafe()) {
+                ++unsafeComponentCount;
+                addCounts(1, 0);
+            }
+            if (scene != null) scene.onComponentsChanged(this);
             return true;
         }
         return false;
@@ -237,11 +592,18 @@ public class Entity {
      * @return {@code true} if Successfully removed. Otherwise {@code false}.
      */
     public <T extends Component> boolean remove(Class<T> clazz) {
-        if (components.containsKey(clazz)) {
-            Component component = components.get(clazz);
+        final int typeId = Component.getTypeId(clazz);
+        final Component component = getComponent(typeId);
+        if (component != null) {
             component.onDetach(this);
             component.setEntity(null);
-            components.remove(clazz);
+            components[typeId] = null;
+            if (typeId < 64) componentMask &= ~(1L << typeId);
+            if (!component.isThreadSafe()) {
+                --unsafeComponentCount;
+                addCounts(-1, 0);
+            }
+            if (scene != null) scene.onComponentsChanged(this);
             return true;
         }
         return false;
@@ -249,7 +611,38 @@ public class Entity {
 
     @SuppressWarnings("unchecked")
     public <T extends Component> T getComponent(Class<T> clazz) {
-        return (T) components.get(clazz);
+        return (T) getComponent(Component.getTypeId(clazz));
+    }
+
+    /**
+     * Get {@link Component} with type id. This is faster than {@link #getComponent(Class)}.
+     * <pre>
+     * private static final int GEOMETRY = Component.getTypeId(GeometryComponent.class);
+     * ...
+     * GeometryComponent geometry = (GeometryComponent) entity.getComponent(GEOMETRY);
+     * </pre>
+     *
+     * @param typeId Type id from {@link Component#getTypeId(Class)}.
+     * @return Component or {@code null}.
+     */
+    @Nullable
+    public Component getComponent(int typeId) {
+        return typeId < components.length ? components[typeId] : null;
+    }
+
+    /**
+     * Get bit set of type ids of attached components. Only type ids smaller than 64 are included.
+     * <pre>
+     * long mask = Component.getTypeMask(GeometryComponent.class) | Component.getTypeMask(SurfaceRendererComponent.class);
+     * if ((entity.getComponentMask() &amp; mask) == mask) {
+     *     // entity has both components
+     * }
+     * </pre>
+     *
+     * @return Bit mask
+     */
+    public long getComponentMask() {
+        return componentMask;
     }
 
     /**
@@ -262,7 +655,10 @@ public class Entity {
         final boolean added = children.add(child);
         if (added) {
             child.parent = this;
+            addCounts(child.unsafeCount, child.subtreeSize);
             child.setApp(app);
+            child.setScene(scene);
+            child.invalidateInheritedValues();
         }
         return added;
     }
@@ -277,6 +673,9 @@ public class Entity {
         final boolean removed = children.remove(child);
         if (removed) {
             child.parent = null;
+            addCounts(-child.unsafeCount, -child.subtreeSize);
+            child.setScene(null);
+            child.invalidateInheritedValues();
         }
         return removed;
     }
@@ -300,14 +699,34 @@ public class Entity {
     }
 
     /**
-     * For internal use only.
+     * For internal use only. Native instance is created at first call.
      *
      * @return native pointer value.
      */
     public long getNativePointer() {
+
+        if (nativePointer == null) {
+            ParallelUpdater.checkGlThreadWork("Creating native entity");
+            nativePointer = NativePointer.getInstance(newInstance());
+            setWorldModelMatrix(nativePointer.get(), matrixValues);
+        }
         return nativePointer.get();
     }
 
+    /**
+     * @return {@code true} if native instance is created. Entity without native instance has nothing to render.
+     */
+    boolean hasNativeInstance() {
+        return nativePointer != null;
+    }
+
+    /**
+     * @return {@code true} if this has native instance or it will be created for attached components.
+     */
+    boolean hasRenderingComponent() {
+        return nativePointer != null || getComponent(SURFACE_RENDERER_TYPE) != null || getComponent(GEOMETRY_TYPE) != null;
+    }
+
     /**
      * For internal use only.
      *
@@ -318,13 +737,25 @@ public class Entity {
         // Not visible
         if (!visible) return;
 
-        addSurfaceDef(nativePointer.get(), surfacesPointer);
+        if (nativePointer != null) {
+            addSurfaceDef(surfacesPointer);
+        }
 
         for (Entity child : children) {
             child.collectSurfaceDefs(surfacesPointer);
         }
     }
 
+    /**
+     * Add only this entity. Used for snapshot in pipelined mode.
+     *
+     * @param surfacesPointer {@code &res.Surfaces}
+     */
+    void addSurfaceDef(long surfacesPointer) {
+        if (nativePointer == null) return;
+        addSurfaceDef(nativePointer.get(), surfacesPointer);
+    }
+
     private void invalidateWorldModelMatrix() {
 
         worldMatrixUpdateRequired = true;
@@ -514,7 +945,7 @@ public class Entity {
      * @return View
      */
     public View view() {
-        SurfaceRendererComponent surfaceRendererComponent = getComponent(SurfaceRendererComponent.class);
+        SurfaceRendererComponent surfaceRendererComponent = (SurfaceRendererComponent) getComponent(SURFACE_RENDERER_TYPE);
         if (surfaceRendererComponent == null) {
             return null;
         }
@@ -561,31 +992,52 @@ public class Entity {
         updateOpacityRequired = true;
     }
 
-    private void updateOpacity() {
+    /**
+     * @return {@code true} if rendering opacity is changed.
+     */
+    private boolean updateOpacity() {
 
-        SurfaceRendererComponent surfaceRendererComponent = getComponent(SurfaceRendererComponent.class);
-        if (surfaceRendererComponent != null) {
-            surfaceRendererComponent.setOpacity(getRenderingOpacity());
+        parentRenderingOpacity = parent != null ? parent.renderingOpacity : 1.0f;
+
+        // Notify only if actual value is changed
+        final float value = opacity * parentRenderingOpacity;
+        if (value == renderingOpacity) return false;
+        renderingOpacity = value;
+
+        for (Entity child : children) {
+            child.updateOpacityRequired = true;
         }
+        return true;
+    }
+
+    private void updateVisibility() {
+
+        final boolean value = parent == null || parent.isShown();
+        if (value == parentShown) return;
+        parentShown = value;
 
         for (Entity child : children) {
-            child.updateOpacity();
+            child.updateVisibilityRequired = true;
         }
     }
 
-    private float parentOpacity() {
-        Entity parent = getParent();
-        return parent != null ? parent.getOpacity() : 1.0f;
+    /**
+     * Called when parent is changed.
+     */
+    private void invalidateInheritedValues() {
+        updateOpacityRequired = true;
+        updateVisibilityRequired = true;
     }
 
     /**
-     * Get actual opacity used in rendering.
+     * Get actual opacity used in rendering. This is product of opacities of this entity and all ancestors.
      * This value can be different with value returned from {@link #getOpacity()}.
+     * Changes of ancestors' opacity are reflected on next {@link #update(FrameInput)}.
      *
      * @return Rendering opacity
      */
     public float getRenderingOpacity() {
-        return opacity * parentOpacity();
+        return opacity * parentRenderingOpacity;
     }
 
     /**
@@ -605,7 +1057,91 @@ public class Entity {
      * @param visible visibility
      */
     public void setVisible(boolean visible) {
-        this.visible = visible;
+
+        if (this.visible != visible) {
+            this.visible = visible;
+
+            for (Entity child : children) {
+                child.updateVisibilityRequired = true;
+            }
+        }
+
+        if (visible && contentInflater != null) {
+            inflateOnGlThread();
+        }
+    }
+
+    /**
+     * Inflate now if current thread is GL thread. Otherwise, inflation is posted to GL thread because
+     * {@link ContentInflater} creates GL objects.
+     */
+    private void inflateOnGlThread() {
+
+        final Runnable inflation = new Runnable() {
+            @Override
+            public void run() {
+                if (visible) {
+                    inflate();
+                }
+            }
+        };
+
+        if (ParallelUpdater.recordNativeCall(inflation)) return;
+
+        MeganekkoApp app = this.app;
+        if (app != null && !app.isGlThread()) {
+            app.runOnGlThread(inflation);
+            return;
+        }
+
+        inflate();
+    }
+
+    /**
+     * Set {@link ContentInflater} which creates content of this entity later.
+     * Content is created on first {@link #setVisible(boolean) setVisible(true)} or {@link #inflate()}.
+     * When {@code setVisible(true)} is called off GL thread, content is created on GL thread later.
+     * This is used for XML elements with {@code lazy="true"} attribute.
+     *
+     * @param contentInflater ContentInflater or {@code null}.
+     */
+    public void setContentInflater(@Nullable ContentInflater contentInflater) {
+        this.contentInflater = contentInflater;
+    }
+
+    /**
+     * Create content which is not created yet. This does nothing if there is no {@link ContentInflater}.
+     */
+    public void inflate() {
+        inflate(Long.MAX_VALUE);
+    }
+
+    /**
+     * Create content within time budget. Used for pre-warming.
+     *
+     * @param budgetNanos Maximum time to spend in nanoseconds.
+     * @return {@code true} if all content is created.
+     */
+    boolean inflate(long budgetNanos) {
+
+        ContentInflater inflater = contentInflater;
+        if (inflater == null) return true;
+
+        if (inflater.inflate(this, budgetNanos)) {
+            if (contentInflater == inflater) {
+                contentInflater = null;
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return {@code true} if content is not waiting for {@link #inflate()}.
+     */
+    public boolean isInflated() {
+        return contentInflater == null;
     }
 
     /**
@@ -618,16 +1154,12 @@ public class Entity {
     }
 
     /**
+     * Changes of ancestors' visibility are reflected on next {@link #update(FrameInput)}.
+     * Ancestors are updated before descendants, so this is always valid in {@link Component#update(FrameInput)}.
+     *
      * @return {@code true} if this entity and ancestors are all visible. Otherwise {@code false}.
      */
     public boolean isShown() {
-
-        if (!visible) return false;
-
-        // Check parent visibility
-        Entity parent = getParent();
-        if (parent == null) return true;
-
-        return parent.isShown();
+        return visible && parentShown;
     }
 }
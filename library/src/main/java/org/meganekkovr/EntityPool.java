@@ -0,0 +1,250 @@
+package org.meganekkovr;
+
+import android.support.annotation.NonNull;
+
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Reuses short-lived {@link Entity}s such as bullets, notifications and particles. Recycled entity keeps
+ * its native object and components, so obtaining it again doesn't make native allocation and garbage.
+ * <pre>
+ * EntityPool bullets = new EntityPool(new EntityPool.Factory() {
+ *     public Entity create() {
+ *         return Entity.from(bulletDrawable);
+ *     }
+ *
+ *     public void reset(Entity bullet) {
+ *     }
+ * }, 64);
+ * bullets.prewarm(32);
+ * ...
+ * Entity bullet = bullets.obtain();
+ * scene.add(bullet);
+ * ...
+ * bullets.recycle(bullet);
+ * </pre>
+ * Recycled entity is removed from its parent and reset to state when it was created: transform, opacity,
+ * visibility, id, components and children. Other state such as values of components is reset with
+ * {@link Factory#reset(Entity)}. Stop animations of entity before recycling it.
+ * Pool doesn't keep references to entities in use, so entity which is not recycled is garbage collected
+ * as usual, but it is still counted in {@link #getActiveCount()}.
+ * This class is not thread-safe. Use it on thread which updates scene.
+ */
+public class EntityPool {
+
+    /**
+     * Creates entities of {@link EntityPool}.
+     */
+    public interface Factory {
+
+        /**
+         * @return New entity. Components and children added here are kept while entity is pooled.
+         */
+        @NonNull
+        Entity create();
+
+        /**
+         * Reset state which is not reset by pool. Called when entity is recycled.
+         *
+         * @param entity Recycled entity.
+         */
+        void reset(Entity entity);
+    }
+
+    /**
+     * State of entity when it was created. Held by entity.
+     */
+    static final class Creation {
+        final EntityPool pool;
+        final int id;
+        final Vector3f position;
+        final Vector3f scale;
+        final Quaternionf rotation;
+        final float opacity;
+        final boolean visible;
+        final Component[] components;
+        final Entity[] children;
+        boolean pooled;
+
+        Creation(EntityPool pool, Entity entity) {
+            this.pool = pool;
+            this.id = entity.getId();
+            this.position = new Vector3f(entity.getPosition());
+            this.scale = new Vector3f(entity.getScale());
+            this.rotation = new Quaternionf(entity.getRotation());
+            this.opacity = entity.getOpacity();
+            this.visible = entity.isVisible();
+            this.components = entity.copyComponents();
+            this.children = entity.getChildren().toArray(new Entity[0]);
+        }
+    }
+
+    private final Factory factory;
+    private final int maxSize;
+    private final Deque<Entity> pool = new ArrayDeque<>();
+    private int activeCount;
+    private int highWaterMark;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Create pool which doesn't limit number of pooled entities.
+     *
+     * @param factory Factory
+     */
+    public EntityPool(@NonNull Factory factory) {
+        this(factory, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param factory Factory
+     * @param maxSize Maximum number of pooled entities. Entities recycled over this are released.
+     */
+    public EntityPool(@NonNull Factory factory, int maxSize) {
+        this.factory = factory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Create entities beforehand until pool has {@code count} entities.
+     *
+     * @param count Number of pooled entities.
+     */
+    public void prewarm(int count) {
+
+        count = Math.min(count, maxSize);
+        while (pool.size() < count) {
+            Entity entity = create();
+            entity.getPoolCreation().pooled = true;
+            pool.push(entity);
+        }
+    }
+
+    /**
+     * Get pooled entity, or create new one if pool is empty.
+     *
+     * @return Entity which is not attached to any parent.
+     */
+    @NonNull
+    public Entity obtain() {
+
+        Entity entity = pool.poll();
+        if (entity != null) {
+            entity.getPoolCreation().pooled = false;
+            ++hitCount;
+        } else {
+            entity = create();
+            ++missCount;
+        }
+
+        ++activeCount;
+        highWaterMark = Math.max(highWaterMark, activeCount);
+        return entity;
+    }
+
+    /**
+     * Return entity to pool. Entity is removed from its parent and reset.
+     *
+     * @param entity Entity returned from {@link #obtain()}.
+     */
+    public void recycle(@NonNull Entity entity) {
+
+        final Creation creation = entity.getPoolCreation();
+        if (creation == null || creation.pool != this) {
+            throw new IllegalArgumentException("Entity is not obtained from this pool.");
+        }
+        if (creation.pooled) {
+            throw new IllegalStateException("Entity is already recycled.");
+        }
+
+        final Entity parent = entity.getParent();
+        if (parent != null) {
+            parent.remove(entity);
+        }
+        --activeCount;
+
+        if (pool.size() >= maxSize) {
+
+            // Release to GC. Native object is deleted later.
+            entity.setPoolCreation(null);
+            return;
+        }
+
+        entity.reset(creation);
+        factory.reset(entity);
+        creation.pooled = true;
+        pool.push(entity);
+    }
+
+    /**
+     * Release all pooled entities. Entities in use are still able to be recycled.
+     */
+    public void clear() {
+        for (Entity entity : pool) {
+            entity.setPoolCreation(null);
+        }
+        pool.clear();
+    }
+
+    /**
+     * @return Number of entities which are waiting in pool.
+     */
+    public int getPooledCount() {
+        return pool.size();
+    }
+
+    /**
+     * @return Number of entities obtained and not recycled yet.
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return Maximum number of entities in use at the same time. Use this to decide count of {@link #prewarm(int)}.
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return Number of {@link #obtain()} calls which reused pooled entity.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Number of {@link #obtain()} calls which created new entity.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return Ratio of {@link #obtain()} calls which reused pooled entity, or 1 if it is never called.
+     */
+    public float getHitRate() {
+        final long total = hitCount + missCount;
+        return total > 0 ? (float) hitCount / total : 1;
+    }
+
+    /**
+     * Reset hit counts and high-water mark.
+     */
+    public void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        highWaterMark = activeCount;
+    }
+
+    private Entity create() {
+        Entity entity = factory.create();
+        entity.setPoolCreation(new Creation(this, entity));
+        return entity;
+    }
+}
@@ -0,0 +1,72 @@
+package org.meganekkovr;
+
+/**
+ * Copy of {@link FrameInput} values which stays valid after native frame.
+ * Used for simulation thread in pipelined mode. See {@link MeganekkoApp#setPipelined(boolean)}.
+ */
+final class FrameInputSnapshot extends FrameInput {
+
+    private double predictedDisplayTime;
+    private float deltaSeconds;
+    private int frameNumber;
+    private float swipeFraction;
+    private int buttonState;
+    private int buttonPressed;
+    private int buttonReleased;
+
+    FrameInputSnapshot() {
+        super(0);
+    }
+
+    /**
+     * @param frame                Current frame.
+     * @param predictedDisplayTime Predicted display time of simulated frame.
+     * @param deltaSeconds         Time since last simulated frame.
+     * @param buttonPressed        Buttons pressed since last simulated frame.
+     * @param buttonReleased       Buttons released since last simulated frame.
+     */
+    void set(FrameInput frame, double predictedDisplayTime, float deltaSeconds, int buttonPressed, int buttonReleased) {
+        this.predictedDisplayTime = predictedDisplayTime;
+        this.deltaSeconds = deltaSeconds;
+        this.frameNumber = frame.getFrameNumber() + 1;
+        this.swipeFraction = frame.getSwipeFraction();
+        this.buttonState = frame.getButtonState();
+        this.buttonPressed = buttonPressed;
+        this.buttonReleased = buttonReleased;
+    }
+
+    @Override
+    public double getPredictedDisplayTimeInSeconds() {
+        return predictedDisplayTime;
+    }
+
+    @Override
+    public float getDeltaSeconds() {
+        return deltaSeconds;
+    }
+
+    @Override
+    public int getFrameNumber() {
+        return frameNumber;
+    }
+
+    @Override
+    public float getSwipeFraction() {
+        return swipeFraction;
+    }
+
+    @Override
+    public int getButtonState() {
+        return buttonState;
+    }
+
+    @Override
+    public int getButtonPressed() {
+        return buttonPressed;
+    }
+
+    @Override
+    public int getButtonReleased() {
+        return buttonReleased;
+    }
+}
@@ -16,6 +16,7 @@ public class GearVRActivity extends VrActivity implements MeganekkoContext {
 
     private static final float[] tmpValues = new float[4];
     private static final String TAG = "GearVRActivity";
+    private static final int GEOMETRY_TYPE = Component.getTypeId(GeometryComponent.class);
     private final Quaternionf centerViewRotation = new Quaternionf();
     private MeganekkoApp app;
     private FrameInput frame;
@@ -95,6 +96,10 @@ public class GearVRActivity extends VrActivity implements MeganekkoContext {
      * Called from native thread.
      */
     protected void init() {
+
+        // GL context is created for this activity. Geometries cached in previous context are invalid.
+        GeometryComponent.clearPrimitiveCache();
+
         app.setMeganekkoContext(this);
         app.init();
     }
@@ -189,12 +194,12 @@ public class GearVRActivity extends VrActivity implements MeganekkoContext {
     @Override
     public boolean isLookingAt(Entity entity) {
 
-        if (!entity.isShown()) {
+        if (!entity.isShown() || !entity.hasNativeInstance()) {
             return false;
         }
 
         // Check if entity has geometry
-        GeometryComponent geometryComponent = entity.getComponent(GeometryComponent.class);
+        GeometryComponent geometryComponent = (GeometryComponent) entity.getComponent(GEOMETRY_TYPE);
         if (geometryComponent == null) return false;
 
         return isLookingAt(getAppPtr(), entity.getNativePointer(), geometryComponent.getNativePointer());
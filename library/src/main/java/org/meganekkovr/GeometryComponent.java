@@ -2,8 +2,22 @@ package org.meganekkovr;
 
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.opengl.EGL14;
+import android.opengl.EGLContext;
+import android.support.annotation.Nullable;
 import android.view.View;
 
+import org.joml.Vector3f;
+import org.meganekkovr.mesh.BinaryMesh;
+import org.meganekkovr.mesh.Mesh;
+import org.meganekkovr.mesh.Primitives;
+import org.meganekkovr.mesh.VertexLayout;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This gives geometry to {@link Entity} for rendering.
  */
@@ -15,30 +29,195 @@ public class GeometryComponent extends Component {
 
     private static native void setEntityGeometry(long entityPtr, long nativePtr);
 
+    private static native void removeEntityGeometry(long entityPtr);
+
     private static native void build(long nativePtr, float[] positions, float[] colors, float[] uvs, int[] triangles);
 
+    private static native void buildBuffers(long nativePtr, int vertexCount,
+                                            ByteBuffer positions, int positionOffset, int positionStride,
+                                            ByteBuffer normals, int normalOffset, int normalStride,
+                                            ByteBuffer colors, int colorOffset, int colorStride,
+                                            ByteBuffer uvs, int uvOffset, int uvStride,
+                                            ByteBuffer indices, int indexOffset, int indexCount, float[] bounds);
+
+    private static native void buildDynamic(long nativePtr, int vertexCount, ByteBuffer vertices, int vertexOffset, int vertexSize,
+                                            int[] offsets, int[] strides, ByteBuffer indices, int indexOffset, int indexCount,
+                                            int bufferCount);
+
+    private static native void updateVertices(long nativePtr, int offset, ByteBuffer data, int dataOffset, int size);
+
+    private static native void updateVerticesFloat(long nativePtr, int offset, float[] values, int start, int count);
+
+    private static native int flush(long nativePtr);
+
+    private static native void releaseRetired(long nativePtr);
+
+    private static native boolean collectRetired(long nativePtr);
+
     private static native void buildGlobe(long nativePtr);
 
+    /**
+     * State shared with copies.
+     */
+    private static class SharedState {
+        int dynamicVertexSize;
+        int generation;
+
+        // Entities bound to native geometry, and ones still bound to previous geometries
+        int boundCount;
+        int staleCount;
+        boolean retiredPending;
+    }
+
+    // Cached geometries are valid only in GL context where they are built
+    private static final Map<String, GeometryComponent> primitiveCache = new HashMap<>();
+    private static EGLContext primitiveCacheContext;
+
+    private final SharedState sharedState;
+    private int slot;
+    private int generation;
+    private boolean bound;
+
     public GeometryComponent() {
         nativePointer = NativePointer.getInstance(newInstance());
+        sharedState = new SharedState();
+    }
+
+    /**
+     * Create component which shares native geometry with other component.
+     *
+     * @param source Source component
+     */
+    protected GeometryComponent(GeometryComponent source) {
+        nativePointer = source.nativePointer;
+        sharedState = source.sharedState;
     }
 
     @Override
-    public void onAttach(Entity entity) {
+    public void onAttach(final Entity entity) {
         super.onAttach(entity);
+
+        // Native entity may be rendered now on GL thread
+        boolean recorded = ParallelUpdater.recordNativeCall(new Runnable() {
+            @Override
+            public void run() {
+                bind(entity);
+            }
+        });
+        if (!recorded) bind(entity);
+    }
+
+    @Override
+    public void onDetach(final Entity entity) {
+        super.onDetach(entity);
+
+        boolean recorded = ParallelUpdater.recordNativeCall(new Runnable() {
+            @Override
+            public void run() {
+                unbind(entity);
+            }
+        });
+        if (!recorded) unbind(entity);
+    }
+
+    private void bind(Entity entity) {
+
+        // Detached before recorded call is made
+        if (getEntity() != entity) return;
+
+        if (bound && generation != sharedState.generation) {
+            onRebound();
+        } else if (!bound) {
+            ++sharedState.boundCount;
+        }
+        bound = true;
+        generation = sharedState.generation;
+
         setEntityGeometry(entity.getNativePointer(), nativePointer.get());
     }
 
+    private void unbind(Entity entity) {
+
+        if (!bound) return;
+        bound = false;
+
+        // Entity may still have surface to draw. Don't let it draw geometry which will be freed.
+        removeEntityGeometry(entity.getNativePointer());
+        --sharedState.boundCount;
+
+        if (generation != sharedState.generation) {
+            onRebound();
+        }
+    }
+
+    /**
+     * Called when entity stops drawing previous geometry.
+     * Previous geometries are freed after all entities stop drawing them.
+     */
+    private void onRebound() {
+        if (--sharedState.staleCount == 0) {
+            releaseRetired(nativePointer.get());
+        }
+    }
+
+    /**
+     * Work for GL thread is deferred in parallel update.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Uploads vertices updated by {@code updateVertices} for dynamic geometry,
+     * and binds geometry rebuilt on other copy.
+     */
+    @Override
+    public void update(FrameInput frame) {
+
+        if (deferToGlThread()) return;
+
+        // Copies share native geometry. Only first one uploads vertices in a frame.
+        final int current = sharedState.dynamicVertexSize > 0 ? flush(nativePointer.get()) : 0;
+        if (current != slot || generation != sharedState.generation) {
+
+            final boolean stale = bound && generation != sharedState.generation;
+            slot = current;
+            generation = sharedState.generation;
+            if (isAttached()) {
+                setEntityGeometry(getEntity().getNativePointer(), nativePointer.get());
+            }
+            if (stale) {
+                onRebound();
+            }
+        }
+
+        // Free previous geometries which GPU has finished reading
+        if (sharedState.retiredPending) {
+            sharedState.retiredPending = collectRetired(nativePointer.get());
+        }
+
+        super.update(frame);
+    }
+
+    /**
+     * Copy shares native geometry with this component. Building geometry on either of them
+     * affects both. Other attached copies switch to new geometry in their next update,
+     * and previous geometry is freed after that.
+     */
+    @Override
+    public Component copy() {
+        return new GeometryComponent(this);
+    }
+
     /**
      * Build big sphere with inverted normals.
      * This is often used for a projecting equirectangular photo or video.
      */
     public void buildGlobe() {
+        ParallelUpdater.checkGlThreadWork("Building geometry");
         buildGlobe(nativePointer.get());
-
-        if (isAttached()) {
-            setEntityGeometry(getEntity().getNativePointer(), nativePointer.get());
-        }
+        onGeometryChanged(0);
     }
 
     public void build(float[] positions, float[] colors, float[] uvs, int[] triangles) {
@@ -63,7 +242,266 @@ public class GeometryComponent extends Component {
             throw new IllegalArgumentException("color elements are " + colorSize + " but uv elements are " + uvSize + ".");
         }
 
+        ParallelUpdater.checkGlThreadWork("Building geometry");
         build(nativePointer.get(), positions, colors, uvs, triangles);
+        onGeometryChanged(0);
+    }
+
+    /**
+     * Build geometry from {@link Mesh}. Vertex colors are white.
+     * Note that vertex count must not exceed 65536 because indices are 16-bit in rendering.
+     *
+     * @param mesh Mesh
+     */
+    public void build(Mesh mesh) {
+
+        if (mesh.getVertexCount() > 65536) {
+            throw new IllegalArgumentException("Mesh has " + mesh.getVertexCount() + " vertices but up to 65536 vertices are supported.");
+        }
+
+        float[] colors = new float[mesh.getVertexCount() * 4];
+        Arrays.fill(colors, 1.0f);
+
+        build(mesh.getPositions(), colors, mesh.getUvs(), mesh.getTriangles());
+    }
+
+    /**
+     * Build geometry from {@link BinaryMesh}. Vertex and index buffers are uploaded to GPU
+     * directly from mapped memory.
+     *
+     * @param mesh Binary mesh. This must have 16-bit indices.
+     */
+    public void build(BinaryMesh mesh) {
+
+        if (mesh.isIndex32()) {
+            throw new IllegalArgumentException("Mesh has 32-bit indices but only 16-bit indices are supported.");
+        }
+
+        Vector3f min = mesh.getBoundsMin(new Vector3f());
+        Vector3f max = mesh.getBoundsMax(new Vector3f());
+        float[] bounds = {min.x, min.y, min.z, max.x, max.y, max.z};
+
+        build(mesh.getVertices(), mesh.getLayout(), mesh.getVertexCount(), mesh.getIndices(), bounds);
+    }
+
+    /**
+     * Build geometry from direct buffers. Buffers are read in place by native code, so no copy is
+     * made on Java heap. Buffers can be prepared on any thread, but this must be called on GL thread.
+     *
+     * @param vertices    Direct buffer which has vertex attributes from its position.
+     *                    Values must be in {@link java.nio.ByteOrder#nativeOrder() native byte order}.
+     * @param layout      Layout of vertices
+     * @param vertexCount Number of vertices. Must not exceed 65536.
+     * @param indices     Direct buffer which has 16-bit triangle indices in native byte order
+     *                    from its position to its limit.
+     */
+    public void build(ByteBuffer vertices, VertexLayout layout, int vertexCount, ByteBuffer indices) {
+        build(vertices, layout, vertexCount, indices, null);
+    }
+
+    /**
+     * Build geometry from planar direct buffers. Each buffer has values of an attribute from its position
+     * in native byte order. See {@link #build(ByteBuffer, VertexLayout, int, ByteBuffer)}.
+     *
+     * @param positions Positions. {x, y, z} per vertex.
+     * @param normals   Normals. {x, y, z} per vertex. Can be {@code null}.
+     * @param colors    Colors. {r, g, b, a} per vertex. Can be {@code null}.
+     * @param uvs       UVs. {u, v} per vertex.
+     * @param indices   16-bit triangle indices.
+     */
+    public void build(ByteBuffer positions, @Nullable ByteBuffer normals, @Nullable ByteBuffer colors,
+                      ByteBuffer uvs, ByteBuffer indices) {
+
+        final int vertexCount = positions.remaining() / 12;
+        checkBuffer("positions", positions, 12, vertexCount);
+        checkBuffer("normals", normals, 12, vertexCount);
+        checkBuffer("colors", colors, 16, vertexCount);
+        checkBuffer("uvs", uvs, 8, vertexCount);
+        checkIndices(indices, vertexCount);
+
+        ParallelUpdater.checkGlThreadWork("Building geometry");
+        buildBuffers(nativePointer.get(), vertexCount,
+                positions, positions.position(), 12,
+                normals, normals != null ? normals.position() : -1, 12,
+                colors, colors != null ? colors.position() : -1, 16,
+                uvs, uvs.position(), 8,
+                indices, indices.position(), indices.remaining() / 2, null);
+
+        onGeometryChanged(0);
+    }
+
+    private void build(ByteBuffer vertices, VertexLayout layout, int vertexCount, ByteBuffer indices, @Nullable float[] bounds) {
+
+        final int[] offsets = new int[4];
+        final int[] strides = new int[4];
+        for (int attribute = VertexLayout.POSITION; attribute <= VertexLayout.UV; ++attribute) {
+            if (layout.hasAttribute(attribute)) {
+                offsets[attribute] = vertices.position() + layout.getOffset(attribute, vertexCount);
+                strides[attribute] = layout.getStride(attribute);
+            } else {
+                offsets[attribute] = -1;
+            }
+        }
+
+        checkBuffer("vertices", vertices, layout.getVertexSize(), vertexCount);
+        checkIndices(indices, vertexCount);
+
+        final ByteBuffer normals = layout.hasNormals() ? vertices : null;
+        final ByteBuffer colors = layout.hasColors() ? vertices : null;
+        ParallelUpdater.checkGlThreadWork("Building geometry");
+        buildBuffers(nativePointer.get(), vertexCount,
+                vertices, offsets[VertexLayout.POSITION], strides[VertexLayout.POSITION],
+                normals, offsets[VertexLayout.NORMAL], strides[VertexLayout.NORMAL],
+                colors, offsets[VertexLayout.COLOR], strides[VertexLayout.COLOR],
+                vertices, offsets[VertexLayout.UV], strides[VertexLayout.UV],
+                indices, indices.position(), indices.remaining() / 2, bounds);
+
+        onGeometryChanged(0);
+    }
+
+    private static void checkBuffer(String name, @Nullable ByteBuffer buffer, int elementSize, int vertexCount) {
+
+        if (buffer == null) return;
+
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException(name + " must be direct buffer.");
+        } else if (buffer.remaining() < (long) elementSize * vertexCount) {
+            throw new IllegalArgumentException(name + " has " + buffer.remaining() + " bytes but " + (long) elementSize * vertexCount + " bytes are required.");
+        }
+    }
+
+    private static void checkIndices(ByteBuffer indices, int vertexCount) {
+
+        if (!indices.isDirect()) {
+            throw new IllegalArgumentException("indices must be direct buffer.");
+        } else if (indices.remaining() % 6 != 0) {
+            throw new IllegalArgumentException("indices element count must be multiple of 3.");
+        } else if (vertexCount > 65536) {
+            throw new IllegalArgumentException("Geometry has " + vertexCount + " vertices but up to 65536 vertices are supported.");
+        }
+    }
+
+    private void onGeometryChanged(int dynamicVertexSize) {
+
+        sharedState.dynamicVertexSize = dynamicVertexSize;
+        ++sharedState.generation;
+        generation = sharedState.generation;
+        slot = 0;
+
+        if (isAttached()) {
+            setEntityGeometry(getEntity().getNativePointer(), nativePointer.get());
+        }
+
+        // Previous geometry is retired. Other bound copies draw it until they are updated.
+        sharedState.staleCount = sharedState.boundCount - (bound ? 1 : 0);
+        if (sharedState.staleCount == 0) {
+            releaseRetired(nativePointer.get());
+        }
+        sharedState.retiredPending = collectRetired(nativePointer.get());
+    }
+
+    /**
+     * Build dynamic geometry with triple buffering. See {@link #buildDynamic(ByteBuffer, VertexLayout, int, ByteBuffer, int)}.
+     */
+    public void buildDynamic(ByteBuffer vertices, VertexLayout layout, int vertexCount, ByteBuffer indices) {
+        buildDynamic(vertices, layout, vertexCount, indices, 3);
+    }
+
+    /**
+     * Build dynamic geometry whose vertices can be partially updated every frame with
+     * {@code updateVertices} methods. Updates are uploaded in next {@link #update(FrameInput)} to
+     * one of ring buffers which GPU has finished reading, so rendering is never stalled.
+     * If GPU is still reading next buffer, upload is retried in next frame.
+     * Indices and bounds are fixed. Must be called on GL thread.
+     *
+     * @param vertices    Initial vertices. See {@link #build(ByteBuffer, VertexLayout, int, ByteBuffer)}.
+     * @param layout      Layout of vertices. Offsets of {@code updateVertices} are based on this.
+     * @param vertexCount Number of vertices
+     * @param indices     16-bit triangle indices
+     * @param bufferCount Number of vertex buffers. 2 for double buffering and 3 for triple buffering.
+     *                    With 1, upload is synchronized with GPU by driver and may stall.
+     */
+    public void buildDynamic(ByteBuffer vertices, VertexLayout layout, int vertexCount, ByteBuffer indices, int bufferCount) {
+
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("bufferCount must be positive.");
+        }
+
+        checkBuffer("vertices", vertices, layout.getVertexSize(), vertexCount);
+        checkIndices(indices, vertexCount);
+
+        final int[] offsets = new int[4];
+        final int[] strides = new int[4];
+        for (int attribute = VertexLayout.POSITION; attribute <= VertexLayout.UV; ++attribute) {
+            offsets[attribute] = layout.getOffset(attribute, vertexCount);
+            strides[attribute] = layout.getStride(attribute);
+        }
+
+        final int vertexSize = layout.getBufferSize(vertexCount);
+        ParallelUpdater.checkGlThreadWork("Building geometry");
+        buildDynamic(nativePointer.get(), vertexCount, vertices, vertices.position(), vertexSize,
+                offsets, strides, indices, indices.position(), indices.remaining() / 2, bufferCount);
+        onGeometryChanged(vertexSize);
+    }
+
+    /**
+     * @return {@code true} if geometry is built with {@code buildDynamic}.
+     */
+    public boolean isDynamic() {
+        return sharedState.dynamicVertexSize > 0;
+    }
+
+    /**
+     * Update part of dynamic geometry's vertices. Must be called on GL thread.
+     *
+     * @param offset Byte offset in vertices
+     * @param data   Direct buffer which has new values from its position to its limit in native byte order.
+     */
+    public void updateVertices(int offset, ByteBuffer data) {
+
+        if (!data.isDirect()) {
+            throw new IllegalArgumentException("data must be direct buffer.");
+        }
+        checkVertexRange(offset, data.remaining());
+
+        updateVertices(nativePointer.get(), offset, data, data.position(), data.remaining());
+    }
+
+    /**
+     * Update part of dynamic geometry's vertices. Must be called on GL thread.
+     *
+     * @param offset Byte offset in vertices
+     * @param values New values
+     */
+    public void updateVertices(int offset, float[] values) {
+        updateVertices(offset, values, 0, values.length);
+    }
+
+    /**
+     * Update part of dynamic geometry's vertices. Must be called on GL thread.
+     *
+     * @param offset Byte offset in vertices
+     * @param values New values
+     * @param start  Start index of values
+     * @param count  Number of values
+     */
+    public void updateVertices(int offset, float[] values, int start, int count) {
+
+        if (start < 0 || count < 0 || start + count > values.length) {
+            throw new ArrayIndexOutOfBoundsException("start " + start + " and count " + count + " are out of values.");
+        }
+        checkVertexRange(offset, count * 4);
+
+        updateVerticesFloat(nativePointer.get(), offset, values, start, count);
+    }
+
+    private void checkVertexRange(int offset, int size) {
+
+        if (!isDynamic()) {
+            throw new IllegalStateException("Geometry is not dynamic. Call buildDynamic first.");
+        } else if (offset < 0 || offset % 4 != 0 || (long) offset + size > sharedState.dynamicVertexSize) {
+            throw new IndexOutOfBoundsException("Range " + offset + " - " + ((long) offset + size) + " is out of vertices.");
+        }
     }
 
     /**
@@ -159,6 +597,110 @@ public class GeometryComponent extends Component {
         return geometryComponent;
     }
 
+    /**
+     * Get sphere for equirectangular image, which is seen from inside.
+     * Geometry is shared among components with same parameters. Do not build other geometry on returned component.
+     * Must be called on GL thread.
+     *
+     * @param radius         Radius
+     * @param segmentsWidth  Number of horizontal segments
+     * @param segmentsHeight Number of vertical segments
+     * @return new instance
+     */
+    public static GeometryComponent sphere(float radius, int segmentsWidth, int segmentsHeight) {
+
+        String key = "sphere:" + radius + ":" + segmentsWidth + ":" + segmentsHeight;
+        GeometryComponent template = getCachedPrimitive(key);
+        if (template == null) {
+            template = cachePrimitive(key, Primitives.sphere(radius, segmentsWidth, segmentsHeight));
+        }
+        return new GeometryComponent(template);
+    }
+
+    /**
+     * Get open ended cylinder, which is seen from inside.
+     * Geometry is shared among components with same parameters. Do not build other geometry on returned component.
+     * Must be called on GL thread.
+     *
+     * @param radius         Radius
+     * @param height         Height
+     * @param segmentsRadial Number of horizontal segments
+     * @param segmentsHeight Number of vertical segments
+     * @return new instance
+     */
+    public static GeometryComponent cylinder(float radius, float height, int segmentsRadial, int segmentsHeight) {
+        return curvedImage(radius, height, 360, segmentsRadial, segmentsHeight);
+    }
+
+    /**
+     * Get curved screen which is a part of cylinder centered at front.
+     * Geometry is shared among components with same parameters. Do not build other geometry on returned component.
+     * Must be called on GL thread.
+     *
+     * @param radius         Radius
+     * @param height         Height
+     * @param thetaLength    Central angle in degrees
+     * @param segmentsRadial Number of horizontal segments
+     * @param segmentsHeight Number of vertical segments
+     * @return new instance
+     */
+    public static GeometryComponent curvedImage(float radius, float height, float thetaLength, int segmentsRadial, int segmentsHeight) {
+
+        String key = "curvedImage:" + radius + ":" + height + ":" + thetaLength + ":" + segmentsRadial + ":" + segmentsHeight;
+        GeometryComponent template = getCachedPrimitive(key);
+        if (template == null) {
+            template = cachePrimitive(key, Primitives.curvedImage(radius, height, thetaLength, segmentsRadial, segmentsHeight));
+        }
+        return new GeometryComponent(template);
+    }
+
+    /**
+     * Get cube for cube map image, which is seen from inside. See {@link Primitives#skybox(float, int)} for texture layout.
+     * Geometry is shared among components with same parameters. Do not build other geometry on returned component.
+     * Must be called on GL thread.
+     *
+     * @param size     Length of edges
+     * @param segments Number of segments of an edge
+     * @return new instance
+     */
+    public static GeometryComponent skybox(float size, int segments) {
+
+        String key = "skybox:" + size + ":" + segments;
+        GeometryComponent template = getCachedPrimitive(key);
+        if (template == null) {
+            template = cachePrimitive(key, Primitives.skybox(size, segments));
+        }
+        return new GeometryComponent(template);
+    }
+
+    /**
+     * Release cached procedural geometries. Geometries are freed after components using them are gone.
+     * Cache is also cleared when GL context is created again.
+     */
+    public static void clearPrimitiveCache() {
+        primitiveCache.clear();
+        primitiveCacheContext = null;
+    }
+
+    @Nullable
+    private static GeometryComponent getCachedPrimitive(String key) {
+
+        // Geometries of destroyed context can't be used
+        final EGLContext context = EGL14.eglGetCurrentContext();
+        if (!context.equals(primitiveCacheContext)) {
+            primitiveCache.clear();
+            primitiveCacheContext = context;
+        }
+        return primitiveCache.get(key);
+    }
+
+    private static GeometryComponent cachePrimitive(String key, Mesh mesh) {
+        GeometryComponent template = new GeometryComponent();
+        template.build(mesh);
+        primitiveCache.put(key, template);
+        return template;
+    }
+
     public final long getNativePointer() {
         return nativePointer.get();
     }
@@ -0,0 +1,211 @@
+package org.meganekkovr;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.meganekkovr.xml.XmlContentInflater;
+import org.meganekkovr.xml.XmlNode;
+import org.meganekkovr.xml.XmlParser;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads {@link Scene} from XML over multiple frames.
+ * XML is parsed on background thread and entities are created on GL thread
+ * within {@link #setBudgetMillis(float) time budget} per frame.
+ * Current scene, or loading scene if specified, is rendered until new scene is ready.
+ * Then new scene is set with {@link MeganekkoApp#setScene(Scene)}.
+ * Use {@code MeganekkoApp.loadSceneFrom*} methods to start loading.
+ */
+public class IncrementalSceneLoader {
+
+    /**
+     * All methods are called on GL thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called on every frame while loading.
+         *
+         * @param loader   Loader
+         * @param progress Progress in the range of 0.0 - 1.0.
+         */
+        void onProgress(IncrementalSceneLoader loader, float progress);
+
+        /**
+         * Called after loaded scene is set to {@link MeganekkoApp}.
+         *
+         * @param loader Loader
+         * @param scene  Loaded scene
+         */
+        void onLoaded(IncrementalSceneLoader loader, Scene scene);
+
+        /**
+         * Called when XML cannot be parsed or its first element is not &lt;scene&gt;.
+         *
+         * @param loader Loader
+         * @param e      Cause
+         */
+        void onFailed(IncrementalSceneLoader loader, Throwable e);
+    }
+
+    private static ExecutorService executor;
+
+    private final MeganekkoApp app;
+    private final XmlParser xmlParser;
+    private final Scene loadingScene;
+    private final Listener listener;
+    private final Future<XmlNode> parseTask;
+    private volatile boolean cancelled;
+    private volatile float progress;
+    private long budgetNanos = 2000000;
+    private boolean started;
+    private boolean finished;
+    private Scene scene;
+    private XmlContentInflater contentInflater;
+    private int totalCount;
+
+    IncrementalSceneLoader(@NonNull MeganekkoApp app, @NonNull Callable<XmlNode> source,
+                           @Nullable Scene loadingScene, @Nullable Listener listener) {
+        this.app = app;
+        this.xmlParser = app.getXmlParser();
+        this.loadingScene = loadingScene;
+        this.listener = listener;
+        this.parseTask = getExecutor().submit(source);
+    }
+
+    /**
+     * Set maximum time used for creating entities in a frame. At least one entity is created per frame.
+     *
+     * @param budgetMillis Time in milliseconds. Default is 2 ms.
+     */
+    public void setBudgetMillis(float budgetMillis) {
+        this.budgetNanos = (long) (budgetMillis * 1000000);
+    }
+
+    public float getBudgetMillis() {
+        return budgetNanos / 1000000f;
+    }
+
+    /**
+     * Stop loading. Entities created so far are discarded. Loading scene remains if it is shown.
+     * Listener is not called after this.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return Progress in the range of 0.0 - 1.0. This is 0 while XML is being parsed.
+     */
+    public float getProgress() {
+        return progress;
+    }
+
+    /**
+     * Called from {@link MeganekkoApp#update(FrameInput)}.
+     *
+     * @return {@code true} if loading is finished, failed, or cancelled.
+     */
+    boolean update() {
+
+        if (finished) return true;
+
+        if (cancelled) {
+            parseTask.cancel(false);
+            return finish();
+        }
+
+        if (!started) {
+            started = true;
+            if (loadingScene != null) {
+                app.setScene(loadingScene);
+            }
+        }
+
+        // XML is being parsed
+        if (!parseTask.isDone()) return false;
+
+        if (scene == null) {
+            try {
+                if (!createScene(parseTask.get())) return finish();
+            } catch (ExecutionException e) {
+                return fail(e.getCause());
+            } catch (InterruptedException e) {
+                return fail(e);
+            }
+        }
+
+        // Create entities until time runs out
+        boolean completed = contentInflater.inflate(scene, budgetNanos);
+
+        progress = (1 + contentInflater.getProgress() * (totalCount - 1)) / totalCount;
+        if (listener != null) {
+            listener.onProgress(this, progress);
+        }
+
+        if (!completed) return false;
+
+        app.setScene(scene);
+        if (listener != null) {
+            listener.onLoaded(this, scene);
+        }
+        return finish();
+    }
+
+    /**
+     * Create root entity.
+     *
+     * @return {@code false} if failed.
+     */
+    private boolean createScene(XmlNode root) {
+
+        Entity entity = xmlParser.createEntity(root);
+        if (!(entity instanceof Scene)) {
+            fail(new IllegalArgumentException("XML first element must be <scene>."));
+            return false;
+        }
+
+        scene = (Scene) entity;
+        totalCount = root.size();
+        contentInflater = new XmlContentInflater(xmlParser, root.getChildren());
+        return true;
+    }
+
+    private boolean fail(Throwable e) {
+        if (listener != null && !cancelled) {
+            listener.onFailed(this, e);
+        }
+        return finish();
+    }
+
+    private boolean finish() {
+        finished = true;
+        scene = null;
+        contentInflater = null;
+        return true;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "IncrementalSceneLoader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
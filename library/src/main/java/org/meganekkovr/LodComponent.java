@@ -0,0 +1,362 @@
+package org.meganekkovr;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Level of detail. This switches {@link GeometryComponent} and {@link SurfaceRendererComponent} of
+ * {@link Entity} depending on distance from head or projected size on screen.
+ * Levels are added from the highest detail to the lowest.
+ * <pre>
+ * LodComponent lod = new LodComponent(LodComponent.Metric.DISTANCE);
+ * lod.addLevel(5, highGeometry, highSurface);    // closer than 5
+ * lod.addLevel(20, middleGeometry, null);        // closer than 20, surface is kept
+ * lod.addLevel(Float.MAX_VALUE, lowGeometry, lowSurface);
+ * entity.add(lod);
+ * </pre>
+ * Levels of all entities in {@link Scene} are selected in one pass per frame before entities are updated.
+ * Variants created by {@link VariantFactory} are unloaded if they are not used for
+ * {@link #setUnloadTimeout(float) timeout}. Selected levels are counted in {@link Scene#getStatistics()}.
+ */
+public class LodComponent extends Component {
+
+    public enum Metric {
+
+        /**
+         * Threshold of level is maximum distance from head.
+         */
+        DISTANCE,
+
+        /**
+         * Threshold of level is minimum projected size of bounding sphere's diameter
+         * relative to height of field of view.
+         */
+        SCREEN_SIZE
+    }
+
+    /**
+     * Creates variant on demand. Called on GL thread. In pipelined mode, level is switched when variant is
+     * created on GL thread after simulation of the frame.
+     */
+    public interface VariantFactory {
+
+        @NonNull
+        GeometryComponent createGeometry();
+
+        /**
+         * @return Surface renderer or {@code null} to keep current one.
+         */
+        @Nullable
+        SurfaceRendererComponent createSurfaceRenderer();
+    }
+
+    private static class Level {
+        final float threshold;
+        final VariantFactory factory;
+        GeometryComponent geometry;
+        SurfaceRendererComponent surfaceRenderer;
+        double lastUsedTime;
+
+        Level(float threshold, VariantFactory factory, GeometryComponent geometry, SurfaceRendererComponent surfaceRenderer) {
+            this.threshold = threshold;
+            this.factory = factory;
+            this.geometry = geometry;
+            this.surfaceRenderer = surfaceRenderer;
+        }
+
+        boolean isLoaded() {
+            return geometry != null;
+        }
+    }
+
+    private final Metric metric;
+    private final List<Level> levels = new ArrayList<>();
+    private float hysteresis = 0.1f;
+    private float unloadTimeout = 10;
+    private float boundingRadius = 1;
+    private float tanHalfFov = 1;
+    private int level = -1;
+    private int loadingLevel = -1;
+    LodSelector selector;
+    int updatedFrame;
+
+    public LodComponent(Metric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Add level which is always loaded.
+     *
+     * @param threshold       Maximum distance for {@link Metric#DISTANCE}, or minimum screen size for {@link Metric#SCREEN_SIZE}.
+     * @param geometry        Geometry
+     * @param surfaceRenderer Surface renderer or {@code null} to keep current one.
+     */
+    public void addLevel(float threshold, @NonNull GeometryComponent geometry, @Nullable SurfaceRendererComponent surfaceRenderer) {
+        levels.add(new Level(threshold, null, geometry, surfaceRenderer));
+    }
+
+    /**
+     * Add level which is created when it is needed and unloaded after timeout.
+     *
+     * @param threshold Maximum distance for {@link Metric#DISTANCE}, or minimum screen size for {@link Metric#SCREEN_SIZE}.
+     * @param factory   Creates variant
+     */
+    public void addLevel(float threshold, @NonNull VariantFactory factory) {
+        levels.add(new Level(threshold, factory, null, null));
+    }
+
+    @Override
+    public void onDetach(Entity entity) {
+        super.onDetach(entity);
+
+        if (selector != null) {
+            selector.unregister(this);
+            selector = null;
+        }
+    }
+
+    @Override
+    public void update(FrameInput frame) {
+
+        updatedFrame = frame.getFrameNumber();
+
+        // Join selection of current scene
+        if (selector == null) {
+            Scene scene = getEntity().getApp().getScene();
+            if (scene != null) {
+                selector = scene.getLodSelector();
+                selector.register(this);
+            }
+        }
+
+        super.update(frame);
+    }
+
+    /**
+     * Called from {@link LodSelector}.
+     *
+     * @return {@code true} if level is switched.
+     */
+    boolean select(boolean shown, float distance, float scale, double time, SceneStatistics statistics) {
+
+        if (levels.isEmpty()) return false;
+
+        boolean switched = false;
+        if (shown || level < 0) {
+
+            // Larger value means less detail. Hidden entity starts with the lowest detail.
+            float value;
+            if (!shown) {
+                value = Float.MAX_VALUE;
+            } else if (metric == Metric.DISTANCE) {
+                value = distance;
+            } else {
+                float screenSize = distance > 0 ? boundingRadius * scale / (distance * tanHalfFov) : Float.MAX_VALUE;
+                value = screenSize > 0 ? 1 / screenSize : Float.MAX_VALUE;
+            }
+
+            int newLevel = selectLevel(value, shown);
+            if (newLevel == level) {
+
+                // Cancel switching which waits for loading
+                loadingLevel = -1;
+            } else if (newLevel != loadingLevel) {
+                switched = setLevel(newLevel);
+            }
+        }
+
+        // Unload unused variants
+        if (level >= 0) {
+            levels.get(level).lastUsedTime = time;
+        }
+        for (int i = 0, size = levels.size(); i < size; ++i) {
+            Level l = levels.get(i);
+            if (i == level || l.factory == null || !l.isLoaded() || unloadTimeout < 0) continue;
+            if (time - l.lastUsedTime > unloadTimeout) {
+                l.geometry = null;
+                l.surfaceRenderer = null;
+                statistics.addUnloadedLodVariant();
+            }
+        }
+
+        return switched;
+    }
+
+    /**
+     * @param useHysteresis {@code false} to select level without margin, such as for hidden entity.
+     */
+    private int selectLevel(float value, boolean useHysteresis) {
+
+        final int last = levels.size() - 1;
+        int candidate = last;
+        for (int i = 0; i < last; ++i) {
+            if (value <= limit(i)) {
+                candidate = i;
+                break;
+            }
+        }
+
+        // First selection doesn't need hysteresis
+        if (!useHysteresis || level < 0 || candidate == level) return candidate;
+
+        // Hysteresis. Value has to pass each threshold by some margin to step over it.
+        // Threshold between level i and i + 1 is limit(i).
+        if (candidate > level) {
+            int result = level;
+            for (int i = level; i < candidate && value > limit(i) * (1 + hysteresis); ++i) {
+                result = i + 1;
+            }
+            return result;
+        } else {
+            for (int i = candidate; i < level; ++i) {
+                if (value < limit(i) * (1 - hysteresis)) return i;
+            }
+            return level;
+        }
+    }
+
+    /**
+     * Upper limit of value for level.
+     */
+    private float limit(int index) {
+        float threshold = levels.get(index).threshold;
+        if (metric == Metric.DISTANCE) return threshold;
+        return threshold > 0 ? 1 / threshold : Float.MAX_VALUE;
+    }
+
+    /**
+     * @return {@code true} if level is switched now. {@code false} if it is switched later on GL thread.
+     */
+    private boolean setLevel(final int newLevel) {
+
+        final Level next = levels.get(newLevel);
+
+        if (!next.isLoaded()) {
+
+            // Factory makes GL calls. Load on GL thread and switch there.
+            loadingLevel = newLevel;
+            boolean recorded = ParallelUpdater.recordNativeCall(new Runnable() {
+                @Override
+                public void run() {
+                    if (loadingLevel != newLevel) return;
+                    loadingLevel = -1;
+                    if (isAttached()) {
+                        load(next);
+                        switchLevel(newLevel);
+                    }
+                }
+            });
+            if (recorded) return false;
+
+            loadingLevel = -1;
+            load(next);
+        }
+
+        switchLevel(newLevel);
+        return true;
+    }
+
+    private static void load(Level level) {
+        if (!level.isLoaded()) {
+            level.geometry = level.factory.createGeometry();
+            level.surfaceRenderer = level.factory.createSurfaceRenderer();
+        }
+    }
+
+    private void switchLevel(int newLevel) {
+
+        final Entity entity = getEntity();
+        final Level next = levels.get(newLevel);
+
+        final Level current = level >= 0 ? levels.get(level) : null;
+        if (current == null || current.geometry != next.geometry) {
+            if (current != null) entity.remove(current.geometry);
+            entity.remove(next.geometry.getClass());
+            entity.add(next.geometry);
+        }
+        if (next.surfaceRenderer != null && (current == null || current.surfaceRenderer != next.surfaceRenderer)) {
+            SurfaceRendererComponent shown = entity.getComponent(SurfaceRendererComponent.class);
+            if (shown != null) entity.remove(shown);
+            entity.add(next.surfaceRenderer);
+        }
+
+        level = newLevel;
+    }
+
+    /**
+     * @return Current level or -1 if not selected yet.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    /**
+     * @return Number of variants created by {@link VariantFactory} and not unloaded.
+     */
+    public int getLoadedVariantCount() {
+        int count = 0;
+        for (Level l : levels) {
+            if (l.factory != null && l.isLoaded()) ++count;
+        }
+        return count;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Set margin to avoid switching levels back and forth near threshold.
+     *
+     * @param hysteresis Ratio of threshold. Default is 0.1.
+     */
+    public void setHysteresis(float hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    public float getHysteresis() {
+        return hysteresis;
+    }
+
+    /**
+     * Set time to keep unused variant created by {@link VariantFactory}.
+     *
+     * @param unloadTimeout Time in seconds. Negative value to keep variants. Default is 10 seconds.
+     */
+    public void setUnloadTimeout(float unloadTimeout) {
+        this.unloadTimeout = unloadTimeout;
+    }
+
+    public float getUnloadTimeout() {
+        return unloadTimeout;
+    }
+
+    /**
+     * Set radius of bounding sphere in local space for {@link Metric#SCREEN_SIZE}.
+     *
+     * @param boundingRadius Radius. Default is 1.
+     */
+    public void setBoundingRadius(float boundingRadius) {
+        this.boundingRadius = boundingRadius;
+    }
+
+    public float getBoundingRadius() {
+        return boundingRadius;
+    }
+
+    /**
+     * Set vertical field of view for {@link Metric#SCREEN_SIZE}.
+     *
+     * @param fov Angle in radians. Default is 90 degrees.
+     */
+    public void setFieldOfView(float fov) {
+        this.tanHalfFov = (float) Math.tan(fov * 0.5);
+    }
+}
@@ -0,0 +1,64 @@
+package org.meganekkovr;
+
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects levels of all {@link LodComponent}s in a {@link Scene} in one pass per frame.
+ * This runs before entities are updated, so components can be switched safely.
+ */
+class LodSelector {
+
+    private final List<LodComponent> components = new ArrayList<>();
+    private final Vector3f position = new Vector3f();
+    private final Vector3f scale = new Vector3f();
+
+    void register(LodComponent component) {
+        components.add(component);
+    }
+
+    void unregister(LodComponent component) {
+        components.remove(component);
+    }
+
+    /**
+     * Called from {@link Scene#update(FrameInput)}. World matrices are from previous frame.
+     */
+    void select(FrameInput frame, SceneStatistics statistics) {
+
+        statistics.resetLod();
+
+        final int frameNumber = frame.getFrameNumber();
+        final double time = frame.getPredictedDisplayTimeInSeconds();
+
+        for (int i = components.size() - 1; i >= 0; --i) {
+
+            final LodComponent component = components.get(i);
+
+            // Entity was removed from scene
+            if (!component.isAttached() || frameNumber - component.updatedFrame > 1) {
+                component.selector = null;
+                components.remove(i);
+                continue;
+            }
+
+            final Entity entity = component.getEntity();
+            final boolean shown = entity.isShown();
+            float distance = 0;
+            float maxScale = 0;
+            if (shown) {
+
+                // Head is at origin
+                entity.getWorldModelMatrix().getTranslation(position);
+                entity.getWorldModelMatrix().getScale(scale);
+                distance = position.length();
+                maxScale = Math.max(scale.x, Math.max(scale.y, scale.z));
+            }
+
+            final boolean switched = component.select(shown, distance, maxScale, time, statistics);
+            statistics.addLodEntity(component.getLevel(), switched, component.getLoadedVariantCount());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.meganekkovr;
 
 /**
  * This notifies whether user is looking at {@link Entity} or not.
+ * Looking is detected by a system of {@link Scene}, so this works only in a scene.
  */
 public class LookDetectorComponent extends Component {
 
@@ -39,11 +40,20 @@ public class LookDetectorComponent extends Component {
         this.lookListener = lookListener;
     }
 
+    /**
+     * Updated by system of {@link Scene}.
+     */
     @Override
-    public void update(FrameInput frame) {
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    /**
+     * Called from {@link LookDetectorSystem} after entities are updated.
+     */
+    void detect(boolean isLookingNow, FrameInput frame) {
 
         Entity entity = getEntity();
-        boolean isLookingNow = entity.getApp().isLookingAt(entity);
 
         if (isLookingNow) {
 
@@ -63,6 +73,13 @@ public class LookDetectorComponent extends Component {
         }
 
         this.looking = isLookingNow;
-        super.update(frame);
+    }
+
+    /**
+     * Copy shares {@link LookListener} with this component.
+     */
+    @Override
+    public Component copy() {
+        return new LookDetectorComponent(lookListener);
     }
 }
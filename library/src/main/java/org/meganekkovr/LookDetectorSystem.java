@@ -0,0 +1,28 @@
+package org.meganekkovr;
+
+/**
+ * Notifies {@link LookDetectorComponent.LookListener}s. This runs after entities are updated,
+ * so looking is detected with world matrices of current frame.
+ */
+class LookDetectorSystem extends ComponentSystem {
+
+    LookDetectorSystem() {
+        super(Phase.AFTER_UPDATE, 0, LookDetectorComponent.class);
+    }
+
+    @Override
+    protected void update(FrameInput frame) {
+
+        final MeganekkoApp app = getScene().getApp();
+        for (int i = 0, count = getEntityCount(); i < count; ++i) {
+
+            final Entity entity = getEntity(i);
+            final LookDetectorComponent component = (LookDetectorComponent) getComponent(i, 0);
+
+            // Removed by other listener in this frame
+            if (component.getEntity() != entity) continue;
+
+            component.detect(app.isLookingAt(entity), frame);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.meganekkovr;
+
+import org.joml.Matrix4f;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * World model matrices shared with native side. See {@link MeganekkoApp#setSharedWorldMatrices(boolean)}.
+ * <p>
+ * Each {@link Entity} which has native instance gets a slot of direct {@link ByteBuffer}, and native
+ * {@code mgn::Entity} reads its matrix from the slot. Matrices are written in row-major order of
+ * {@code OVR::Matrix4f}, so native side uses them without conversion. Native side is told address of slot
+ * only when slot is assigned or moved. Slots of entities which are garbage collected are reclaimed
+ * periodically, and arena is shrunk when most of slots are unused.
+ * <p>
+ * Slots are assigned on GL thread. Assigned slots can be written from worker threads of parallel update.
+ */
+final class MatrixArena {
+
+    static final int SLOT_SIZE = 16 * 4;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int RECLAIM_INTERVAL_FRAMES = 120;
+
+    private ByteBuffer buffer;
+    private WeakReference<Entity>[] owners;
+    private int[] freeSlots;
+    private int freeCount;
+    private int liveCount;
+    private int frameCount;
+
+    MatrixArena() {
+        allocate(INITIAL_CAPACITY);
+        for (int slot = INITIAL_CAPACITY - 1; slot >= 0; --slot) {
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    /**
+     * Assign slot to entity and write current matrix. Entity must have native instance.
+     */
+    void bind(Entity entity, Matrix4f matrix) {
+
+        if (freeCount == 0) {
+            reclaim();
+            if (freeCount == 0) {
+                resize(owners.length * 2);
+            }
+        }
+
+        final int slot = freeSlots[--freeCount];
+        owners[slot] = new WeakReference<>(entity);
+        ++liveCount;
+
+        write(slot, matrix);
+        entity.bindWorldMatrixSlot(this, slot);
+    }
+
+    void write(int slot, Matrix4f matrix) {
+        matrix.getTransposed(slot * SLOT_SIZE, buffer);
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Reclaim and compact periodically. Called on GL thread at every frame.
+     */
+    void maintain() {
+
+        if (++frameCount < RECLAIM_INTERVAL_FRAMES) return;
+        frameCount = 0;
+
+        reclaim();
+
+        // Shrink if most of slots are unused
+        final int capacity = owners.length;
+        if (capacity > INITIAL_CAPACITY && liveCount < capacity / 4) {
+            resize(Math.max(capacity / 2, INITIAL_CAPACITY));
+        }
+    }
+
+    /**
+     * Stop sharing matrices. Entities upload their matrices again.
+     */
+    void release() {
+
+        for (int slot = 0; slot < owners.length; ++slot) {
+            final Entity entity = owners[slot] != null ? owners[slot].get() : null;
+            if (entity != null) {
+                entity.unbindWorldMatrixSlot();
+            }
+        }
+
+        Arrays.fill(owners, null);
+        freeCount = 0;
+        liveCount = 0;
+    }
+
+    /**
+     * Free slots of entities which are garbage collected. Their native instances are not rendered anymore.
+     */
+    private void reclaim() {
+
+        for (int slot = 0; slot < owners.length; ++slot) {
+            final WeakReference<Entity> owner = owners[slot];
+            if (owner != null && owner.get() == null) {
+                owners[slot] = null;
+                freeSlots[freeCount++] = slot;
+                --liveCount;
+            }
+        }
+    }
+
+    /**
+     * Move live slots to start of new buffer, and tell new addresses to native side.
+     */
+    private void resize(int capacity) {
+
+        final ByteBuffer oldBuffer = buffer;
+        final WeakReference<Entity>[] oldOwners = owners;
+
+        allocate(capacity);
+
+        int slot = 0;
+        for (int oldSlot = 0; oldSlot < oldOwners.length; ++oldSlot) {
+
+            final Entity entity = oldOwners[oldSlot] != null ? oldOwners[oldSlot].get() : null;
+            if (entity == null) continue;
+
+            for (int i = 0; i < SLOT_SIZE; i += 4) {
+                buffer.putFloat(slot * SLOT_SIZE + i, oldBuffer.getFloat(oldSlot * SLOT_SIZE + i));
+            }
+            owners[slot] = oldOwners[oldSlot];
+            entity.bindWorldMatrixSlot(this, slot);
+            ++slot;
+        }
+
+        liveCount = slot;
+        freeCount = 0;
+        for (int free = capacity - 1; free >= slot; --free) {
+            freeSlots[freeCount++] = free;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void allocate(int capacity) {
+        buffer = ByteBuffer.allocateDirect(capacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+        owners = new WeakReference[capacity];
+        freeSlots = new int[capacity];
+    }
+}
@@ -6,23 +6,38 @@ import android.animation.AnimatorSet;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.XmlRes;
 
 import org.joml.Quaternionf;
+import org.meganekkovr.animation.TweenEngine;
+import org.meganekkovr.xml.XmlNode;
 import org.meganekkovr.xml.XmlParser;
 import org.meganekkovr.xml.XmlParserException;
 
 import java.io.File;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 
 public class MeganekkoApp {
 
     private static final String TAG = "MeganekkoApp";
     private final Queue<Runnable> commands = new LinkedBlockingQueue<>();
+    private final List<IncrementalSceneLoader> sceneLoaders = new CopyOnWriteArrayList<>();
+    private final List<Entity> prewarmingEntities = new CopyOnWriteArrayList<>();
+    private long prewarmBudgetNanos = 1000000;
+    private final TweenEngine tweenEngine = new TweenEngine();
     private Scene scene;
     private MeganekkoContext context;
     private long glThreadId;
     private XmlParser xmlParser;
+    private volatile boolean pipelined;
+    private boolean frameBoundary;
+    private SimulationPipeline pipeline;
+    private volatile boolean sharedWorldMatrices;
+    private MatrixArena matrixArena;
 
     /**
      * Called at app is launching. Override this to implement custom initialization.
@@ -35,15 +50,91 @@ public class MeganekkoApp {
     /**
      * Called at every frame update. It will be called about 60 times per frame.
      * If you override this method, you must call {@code super.update(frame)}.
+     * In {@link #setPipelined(boolean) pipelined mode}, scene is updated on simulation thread
+     * while this is called.
      *
      * @param frame Frame information
      */
     public void update(FrameInput frame) {
 
-        // runOnGlThread handling
-        while (!commands.isEmpty()) {
-            commands.poll().run();
+        // Switch mode at frame boundary. Shared matrices are not used in pipelined mode
+        // because they are written while rendering.
+        final boolean usePipeline = pipelined;
+        final boolean shareMatrices = sharedWorldMatrices && !usePipeline;
+        if (!shareMatrices && matrixArena != null) {
+            matrixArena.release();
+            matrixArena = null;
         }
+        if (usePipeline != (pipeline != null)) {
+            if (usePipeline) {
+                pipeline = new SimulationPipeline(this);
+            } else {
+                pipeline.stop();
+                pipeline = null;
+            }
+        }
+        if (shareMatrices) {
+            if (matrixArena == null) {
+                matrixArena = new MatrixArena();
+            }
+            matrixArena.maintain();
+        }
+
+        if (pipeline != null) {
+            pipeline.update(frame);
+            return;
+        }
+
+        runFrameBoundaryTasks();
+        simulate(frame);
+    }
+
+    /**
+     * Run tasks which must not run while scene is updated.
+     */
+    void runFrameBoundaryTasks() {
+
+        // Scene can be modified on GL thread here even in pipelined mode
+        frameBoundary = true;
+        try {
+            runFrameBoundaryTasksInternal();
+        } finally {
+            frameBoundary = false;
+        }
+    }
+
+    private void runFrameBoundaryTasksInternal() {
+
+        // runOnGlThread handling. Commands added while running are executed at next update.
+        for (int count = commands.size(); count > 0; --count) {
+            Runnable command = commands.poll();
+            if (command == null) break;
+            command.run();
+        }
+
+        // Incremental scene loading
+        for (IncrementalSceneLoader sceneLoader : sceneLoaders) {
+            if (sceneLoader.update()) {
+                sceneLoaders.remove(sceneLoader);
+            }
+        }
+
+        // Pre-warm lazy entities one by one
+        if (!prewarmingEntities.isEmpty()) {
+            Entity entity = prewarmingEntities.get(0);
+            if (entity.inflate(prewarmBudgetNanos)) {
+                prewarmingEntities.remove(entity);
+            }
+        }
+    }
+
+    /**
+     * Update animations and scene. Called on GL thread, or simulation thread in pipelined mode.
+     */
+    void simulate(FrameInput frame) {
+
+        // Animations
+        tweenEngine.update(frame);
 
         if (scene != null) {
             scene.update(frame);
@@ -56,7 +147,9 @@ public class MeganekkoApp {
      * @param surfacesPointer &res.Surfaces
      */
     void collectSurfaceDefs(long surfacesPointer) {
-        if (scene != null) {
+        if (pipeline != null) {
+            pipeline.collectSurfaceDefs(surfacesPointer);
+        } else if (scene != null) {
             scene.collectSurfaceDefs(surfacesPointer);
         }
     }
@@ -112,8 +205,91 @@ public class MeganekkoApp {
         context.runOnUiThread(command);
     }
 
+    /**
+     * @return {@code true} if current thread is GL thread.
+     */
+    public boolean isGlThread() {
+        return Thread.currentThread().getId() == glThreadId;
+    }
+
+    /**
+     * @return {@code true} if current thread can modify scene now. It is GL thread, or in
+     * {@link #setPipelined(boolean) pipelined mode}, simulation thread and GL thread running commands of
+     * {@link #runOnGlThread(Runnable)} between simulations.
+     */
+    public boolean isUpdateThread() {
+        if (isGlThread()) {
+            return pipeline == null || frameBoundary;
+        }
+        return pipeline != null && ParallelUpdater.currentBatch() != null;
+    }
+
+    /**
+     * Update scene of next frame on simulation thread while GL thread submits current frame.
+     * Frame rate is kept when update takes most of frame time, instead of one frame of latency
+     * which can be checked with {@link #getPipelineLatencySeconds()}. If update takes more than a frame,
+     * last frame is submitted again. Head rotation is applied to entities under {@link CameraComponent}
+     * just before submitting, so viewport-fixed entities have no additional latency.
+     * <p>
+     * In pipelined mode, {@link Component#update(FrameInput)}, {@link ComponentSystem}s and animations run on
+     * simulation thread. Changes of native state made there, such as attaching components, are applied on
+     * GL thread after simulation. Work which requires GL context, such as creating
+     * {@link SurfaceRendererComponent} or building {@link GeometryComponent}, throws {@link IllegalStateException}
+     * on simulation thread. Use {@link #runOnGlThread(Runnable)} for it.
+     * {@link #update(FrameInput)} and key events are called on GL thread at the same time as simulation,
+     * so they must not modify scene directly either. Commands of {@link #runOnGlThread(Runnable)} run between
+     * simulations. Mode is switched at next frame. Default is {@code false}.
+     *
+     * @param pipelined {@code true} to enable pipelined mode.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Share world model matrices of entities with native renderer. Matrices are written to direct buffer
+     * which native side reads, instead of being copied to native side with JNI call for each entity.
+     * Memory of entities which are garbage collected is reclaimed periodically.
+     * This has no effect in {@link #setPipelined(boolean) pipelined mode}. Mode is switched at next frame.
+     * Default is {@code false}.
+     *
+     * @param sharedWorldMatrices {@code true} to share matrices.
+     */
+    public void setSharedWorldMatrices(boolean sharedWorldMatrices) {
+        this.sharedWorldMatrices = sharedWorldMatrices;
+    }
+
+    public boolean isSharedWorldMatrices() {
+        return sharedWorldMatrices;
+    }
+
+    /**
+     * @return Arena of shared matrices, or {@code null} if matrices are not shared now.
+     */
+    MatrixArena getMatrixArena() {
+        return matrixArena;
+    }
+
+    /**
+     * @return Time in seconds from input of simulation to display of it in pipelined mode. Otherwise 0.
+     */
+    public float getPipelineLatencySeconds() {
+        return pipeline != null ? pipeline.getLatencySeconds() : 0;
+    }
+
+    /**
+     * @return Number of frames which submitted last snapshot again because simulation was not completed.
+     */
+    public int getDroppedSimulationFrameCount() {
+        return pipeline != null ? pipeline.getDroppedFrameCount() : 0;
+    }
+
     private void assertGlThread() {
-        if (Thread.currentThread().getId() != glThreadId) {
+        if (!isGlThread()) {
             throw new IllegalStateException("This operation must be in GL Thread");
         }
     }
@@ -160,6 +336,11 @@ public class MeganekkoApp {
      * @return center view rotation
      */
     public Quaternionf getCenterViewRotation() {
+
+        // Head rotation at start of simulation
+        if (pipeline != null && !isGlThread()) {
+            return pipeline.getHeadRotation();
+        }
         return context.getCenterViewRotation();
     }
 
@@ -245,6 +426,111 @@ public class MeganekkoApp {
         }
     }
 
+    /**
+     * Load scene from XML asset over multiple frames. See {@link IncrementalSceneLoader}.
+     *
+     * @param assetName    Asset name
+     * @param loadingScene Scene shown while loading or {@code null} to keep current scene.
+     * @param listener     Listener or {@code null}.
+     * @return Loader which can report progress and cancel loading.
+     */
+    public IncrementalSceneLoader loadSceneFromXmlAsset(final String assetName, @Nullable Scene loadingScene, @Nullable IncrementalSceneLoader.Listener listener) {
+        return loadScene(new Callable<XmlNode>() {
+            @Override
+            public XmlNode call() throws Exception {
+                return getXmlParser().parseAssetNode(assetName);
+            }
+        }, loadingScene, listener);
+    }
+
+    /**
+     * Load scene from XML over multiple frames. See {@link IncrementalSceneLoader}.
+     *
+     * @param uri          URI
+     * @param loadingScene Scene shown while loading or {@code null} to keep current scene.
+     * @param listener     Listener or {@code null}.
+     * @return Loader which can report progress and cancel loading.
+     */
+    public IncrementalSceneLoader loadSceneFromXml(final String uri, @Nullable Scene loadingScene, @Nullable IncrementalSceneLoader.Listener listener) {
+        return loadScene(new Callable<XmlNode>() {
+            @Override
+            public XmlNode call() throws Exception {
+                return getXmlParser().parseUriNode(uri);
+            }
+        }, loadingScene, listener);
+    }
+
+    /**
+     * Load scene from XML resource over multiple frames. See {@link IncrementalSceneLoader}.
+     *
+     * @param xmlRes       XML resource ID
+     * @param loadingScene Scene shown while loading or {@code null} to keep current scene.
+     * @param listener     Listener or {@code null}.
+     * @return Loader which can report progress and cancel loading.
+     */
+    public IncrementalSceneLoader loadSceneFromXml(@XmlRes final int xmlRes, @Nullable Scene loadingScene, @Nullable IncrementalSceneLoader.Listener listener) {
+        return loadScene(new Callable<XmlNode>() {
+            @Override
+            public XmlNode call() throws Exception {
+                return getXmlParser().parseXmlResourceNode(xmlRes);
+            }
+        }, loadingScene, listener);
+    }
+
+    /**
+     * Load scene from XML file over multiple frames. See {@link IncrementalSceneLoader}.
+     *
+     * @param file         File
+     * @param loadingScene Scene shown while loading or {@code null} to keep current scene.
+     * @param listener     Listener or {@code null}.
+     * @return Loader which can report progress and cancel loading.
+     */
+    public IncrementalSceneLoader loadSceneFromXml(final File file, @Nullable Scene loadingScene, @Nullable IncrementalSceneLoader.Listener listener) {
+        return loadScene(new Callable<XmlNode>() {
+            @Override
+            public XmlNode call() throws Exception {
+                return getXmlParser().parseFileNode(file);
+            }
+        }, loadingScene, listener);
+    }
+
+    private IncrementalSceneLoader loadScene(Callable<XmlNode> source, @Nullable Scene loadingScene, @Nullable IncrementalSceneLoader.Listener listener) {
+        IncrementalSceneLoader sceneLoader = new IncrementalSceneLoader(this, source, loadingScene, listener);
+        sceneLoaders.add(sceneLoader);
+        return sceneLoader;
+    }
+
+    /**
+     * Create content of lazy entity in the background of rendering. Content is created over multiple frames
+     * within {@link #setPrewarmBudgetMillis(float) time budget} while entity stays invisible.
+     * See {@link Entity#setContentInflater(Entity.ContentInflater)}.
+     *
+     * @param entity Entity which is created from XML element with {@code lazy="true"}.
+     */
+    public void prewarm(Entity entity) {
+        if (!entity.isInflated() && !prewarmingEntities.contains(entity)) {
+            prewarmingEntities.add(entity);
+        }
+    }
+
+    /**
+     * Set maximum time used for {@link #prewarm(Entity)} in a frame.
+     *
+     * @param budgetMillis Time in milliseconds. Default is 1 ms.
+     */
+    public void setPrewarmBudgetMillis(float budgetMillis) {
+        this.prewarmBudgetNanos = (long) (budgetMillis * 1000000);
+    }
+
+    /**
+     * Get engine which runs {@link org.meganekkovr.animation.EntityAnimator} on {@link #isUpdateThread() update thread}.
+     *
+     * @return Tween engine
+     */
+    public TweenEngine getTweenEngine() {
+        return tweenEngine;
+    }
+
     /**
      * Run {@link Animator} on UI thread and notify end callback on GL thread.
      *
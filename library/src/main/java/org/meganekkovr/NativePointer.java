@@ -30,7 +30,7 @@ class NativePointer {
         return mPtr;
     }
 
-    public static NativePointer getInstance(long ptr) {
+    public static synchronized NativePointer getInstance(long ptr) {
 
         // Find existing instance for ptr
         for (WeakReference<NativePointer> instanceRef : sInstances) {
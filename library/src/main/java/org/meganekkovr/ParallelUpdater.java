@@ -0,0 +1,204 @@
+package org.meganekkovr;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Updates subtrees of {@link Scene} on worker threads. See {@link Scene#setParallelUpdate(boolean)}.
+ * <p>
+ * Subtrees which have only thread-safe components are queued while {@link Entity}s are visited in order.
+ * Queue is flushed before non-thread-safe component is updated, so the order of updates which can affect
+ * other entities is same as serial update. Native calls made while updating on worker threads are
+ * recorded in {@link Batch} and made on GL thread after the queue is flushed.
+ * Simulation thread of {@link SimulationPipeline} records native calls in same way.
+ */
+final class ParallelUpdater {
+
+    private static final ThreadLocal<Batch> currentBatch = new ThreadLocal<>();
+
+    /**
+     * Subtrees updated by one worker, and work to be done on GL thread after that.
+     */
+    static final class Batch implements Callable<Void> {
+
+        final List<Entity> roots = new ArrayList<>();
+        final List<Entity> matrixUploads = new ArrayList<>();
+        final List<Entity> opacityUploads = new ArrayList<>();
+        final List<Component> deferredComponents = new ArrayList<>();
+        final List<Runnable> nativeCalls = new ArrayList<>();
+        FrameInput frame;
+
+        @Override
+        public Void call() {
+            currentBatch.set(this);
+            try {
+                for (int i = 0, size = roots.size(); i < size; ++i) {
+                    roots.get(i).updateSubtree(frame, this);
+                }
+            } finally {
+                currentBatch.remove();
+            }
+            return null;
+        }
+
+        /**
+         * Called on GL thread.
+         */
+        void finish() {
+
+            // Attaching components may create native entities, so they come first
+            for (int i = 0, size = nativeCalls.size(); i < size; ++i) {
+                nativeCalls.get(i).run();
+            }
+            for (int i = 0, size = matrixUploads.size(); i < size; ++i) {
+                matrixUploads.get(i).uploadWorldModelMatrix();
+            }
+            for (int i = 0, size = opacityUploads.size(); i < size; ++i) {
+                opacityUploads.get(i).uploadOpacity();
+            }
+            for (int i = 0, size = deferredComponents.size(); i < size; ++i) {
+                deferredComponents.get(i).update(frame);
+            }
+
+            roots.clear();
+            matrixUploads.clear();
+            opacityUploads.clear();
+            deferredComponents.clear();
+            nativeCalls.clear();
+            frame = null;
+        }
+    }
+
+    private final List<Entity> queue = new ArrayList<>();
+    private final List<Batch> batches = new ArrayList<>();
+    private final List<Batch> running = new ArrayList<>();
+    private int queuedSize;
+    private int minParallelSize;
+    private FrameInput frame;
+
+    /**
+     * @return Batch of current thread or {@code null} if this is not a worker thread of parallel update.
+     */
+    static Batch currentBatch() {
+        return currentBatch.get();
+    }
+
+    /**
+     * Record native call which changes state shared with rendering, such as attaching component to native entity.
+     *
+     * @param call Native call
+     * @return {@code true} if call is recorded to be made on GL thread. {@code false} if caller should make it now.
+     */
+    static boolean recordNativeCall(Runnable call) {
+        final Batch batch = currentBatch.get();
+        if (batch == null) return false;
+        batch.nativeCalls.add(call);
+        return true;
+    }
+
+    /**
+     * Throw if current thread records native calls. Used for work which requires GL context.
+     *
+     * @param operation Name of operation for message.
+     */
+    static void checkGlThreadWork(String operation) {
+        if (currentBatch.get() != null) {
+            throw new IllegalStateException(operation + " requires GL thread. Use MeganekkoApp#runOnGlThread.");
+        }
+    }
+
+    /**
+     * Record native calls of current thread to batch. Used for simulation thread in pipelined mode.
+     *
+     * @param batch Batch or {@code null} to stop recording.
+     */
+    static void setCurrentBatch(@Nullable Batch batch) {
+        if (batch != null) {
+            currentBatch.set(batch);
+        } else {
+            currentBatch.remove();
+        }
+    }
+
+    void begin(FrameInput frame) {
+        this.frame = frame;
+    }
+
+    void enqueue(Entity subtree) {
+        queue.add(subtree);
+        queuedSize += subtree.getSubtreeSize();
+    }
+
+    /**
+     * Update queued subtrees and wait for them.
+     */
+    void flush() {
+
+        if (queue.isEmpty()) return;
+
+        if (queuedSize < minParallelSize) {
+
+            // Not worth to dispatch
+            for (int i = 0, size = queue.size(); i < size; ++i) {
+                queue.get(i).update(frame);
+            }
+
+        } else {
+
+            // Split queue into batches of similar size keeping order
+            final int batchCount = Math.min(queue.size(), (UpdateExecutor.getThreadCount() + 1) * 2);
+            final int batchSize = (queuedSize + batchCount - 1) / batchCount;
+
+            Batch batch = null;
+            int size = 0;
+            for (int i = 0, queueSize = queue.size(); i < queueSize; ++i) {
+                if (batch == null || size >= batchSize) {
+                    batch = obtainBatch(running.size());
+                    batch.frame = frame;
+                    running.add(batch);
+                    size = 0;
+                }
+                batch.roots.add(queue.get(i));
+                size += queue.get(i).getSubtreeSize();
+            }
+
+            try {
+                UpdateExecutor.invokeAll(running);
+            } finally {
+                for (int i = 0, count = running.size(); i < count; ++i) {
+                    running.get(i).finish();
+                }
+                running.clear();
+            }
+        }
+
+        queue.clear();
+        queuedSize = 0;
+    }
+
+    /**
+     * Larger subtree is split into children to be spread across workers.
+     *
+     * @return Maximum number of entities in queued subtree.
+     */
+    int getMaxSubtreeSize() {
+        return Math.max(minParallelSize, 64);
+    }
+
+    /**
+     * @param minParallelSize Minimum number of queued entities to use worker threads.
+     */
+    void setMinParallelSize(int minParallelSize) {
+        this.minParallelSize = minParallelSize;
+    }
+
+    private Batch obtainBatch(int index) {
+        while (batches.size() <= index) {
+            batches.add(new Batch());
+        }
+        return batches.get(index);
+    }
+}
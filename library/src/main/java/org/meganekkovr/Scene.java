@@ -1,15 +1,202 @@
 package org.meganekkovr;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 public class Scene extends Entity {
     private static final String TAG = "Scene";
+    private final LodSelector lodSelector = new LodSelector();
+    private final SceneStatistics statistics = new SceneStatistics();
+    private final List<ComponentSystem> systems = new ArrayList<>();
+    private final List<Callable<Void>> parallelTasks = new ArrayList<>();
+    private ParallelUpdater parallelUpdater;
+    private int minParallelSize = 256;
     private boolean initialized;
 
+    public Scene() {
+        setScene(this);
+
+        // Built-in systems
+        addSystem(new CameraSystem());
+        addSystem(new LookDetectorSystem());
+    }
+
     /**
      * Called before first rendering.
      */
     public void init() {
     }
 
+    @Override
+    public void update(FrameInput frame) {
+
+        // Batched level of detail selection
+        lodSelector.select(frame, statistics);
+
+        runSystems(ComponentSystem.Phase.BEFORE_UPDATE, frame);
+        // Simulation thread of pipelined mode records all native calls, so update serially there
+        if (parallelUpdater != null && ParallelUpdater.currentBatch() == null) {
+            parallelUpdater.begin(frame);
+            updateParallel(frame, parallelUpdater);
+            parallelUpdater.flush();
+        } else {
+            super.update(frame);
+        }
+        runSystems(ComponentSystem.Phase.AFTER_UPDATE, frame);
+    }
+
+    /**
+     * Update subtrees on worker threads. Subtrees which have only {@link Component#isThreadSafe() thread-safe}
+     * components are updated in parallel, and others are updated on GL thread in same order as serial update.
+     * Entities whose class overrides {@link Entity#update(FrameInput)} and their descendants are
+     * always updated on GL thread. Native matrices and opacities are uploaded on GL thread.
+     * This has no effect while {@link MeganekkoApp#setPipelined(boolean) pipelined mode} is enabled.
+     * Default is {@code false}.
+     *
+     * @param parallelUpdate {@code true} to enable parallel update.
+     */
+    public void setParallelUpdate(boolean parallelUpdate) {
+        if (parallelUpdate == (parallelUpdater != null)) return;
+        if (parallelUpdate) {
+            parallelUpdater = new ParallelUpdater();
+            parallelUpdater.setMinParallelSize(minParallelSize);
+        } else {
+            parallelUpdater = null;
+        }
+    }
+
+    public boolean isParallelUpdate() {
+        return parallelUpdater != null;
+    }
+
+    /**
+     * Set minimum number of entities to use worker threads. Smaller subtrees are updated on GL thread
+     * because dispatching costs more than updating.
+     *
+     * @param minParallelSize Number of entities. Default is 256.
+     */
+    public void setMinParallelSize(int minParallelSize) {
+        this.minParallelSize = minParallelSize;
+        if (parallelUpdater != null) {
+            parallelUpdater.setMinParallelSize(minParallelSize);
+        }
+    }
+
+    /**
+     * Add {@link ComponentSystem}. Entities which are already in this scene are matched immediately.
+     *
+     * @param system System
+     */
+    public void addSystem(ComponentSystem system) {
+
+        if (system.scene != null) {
+            throw new IllegalStateException("System is already added to a scene.");
+        }
+
+        // Keep order of phase and order value. Systems with same values run in added order.
+        int index = systems.size();
+        while (index > 0 && compare(systems.get(index - 1), system) > 0) {
+            --index;
+        }
+        systems.add(index, system);
+
+        system.scene = this;
+        system.refreshTree(this);
+    }
+
+    /**
+     * Remove {@link ComponentSystem}.
+     *
+     * @param system System
+     */
+    public void removeSystem(ComponentSystem system) {
+        if (system.scene != this) return;
+        systems.remove(system);
+        system.scene = null;
+        system.refreshTree(this);
+    }
+
+    /**
+     * Find system which is added to this scene.
+     *
+     * @param clazz Class of system
+     * @return System or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ComponentSystem> T getSystem(Class<T> clazz) {
+        for (ComponentSystem system : systems) {
+            if (system.getClass() == clazz) return (T) system;
+        }
+        return null;
+    }
+
+    /**
+     * Called from {@link Entity} when its components or scene is changed.
+     */
+    void onComponentsChanged(Entity entity) {
+        for (int i = 0, size = systems.size(); i < size; ++i) {
+            systems.get(i).refresh(entity);
+        }
+    }
+
+    private void runSystems(ComponentSystem.Phase phase, final FrameInput frame) {
+
+        for (int i = 0, size = systems.size(); i < size; ) {
+
+            final ComponentSystem system = systems.get(i);
+            if (system.getPhase() != phase) {
+                ++i;
+                continue;
+            }
+
+            // Collect parallel systems which have same phase and order
+            int end = i + 1;
+            if (system.isParallel()) {
+                while (end < size && systems.get(end).isParallel() && compare(systems.get(end), system) == 0) {
+                    ++end;
+                }
+            }
+
+            if (end - i == 1) {
+                system.run(frame);
+            } else {
+                parallelTasks.clear();
+                for (int j = i; j < end; ++j) {
+                    final ComponentSystem parallelSystem = systems.get(j);
+                    parallelTasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            parallelSystem.run(frame);
+                            return null;
+                        }
+                    });
+                }
+                UpdateExecutor.invokeAll(parallelTasks);
+                parallelTasks.clear();
+            }
+
+            i = end;
+        }
+    }
+
+    private static int compare(ComponentSystem a, ComponentSystem b) {
+        final int phase = a.getPhase().compareTo(b.getPhase());
+        if (phase != 0) return phase;
+        return a.getOrder() < b.getOrder() ? -1 : (a.getOrder() == b.getOrder() ? 0 : 1);
+    }
+
+    /**
+     * @return Statistics which are updated every frame.
+     */
+    public SceneStatistics getStatistics() {
+        return statistics;
+    }
+
+    LodSelector getLodSelector() {
+        return lodSelector;
+    }
+
     /**
      * Called when this Scene is activated by {@link MeganekkoApp#setScene(Scene)}.
      * If you override this method, you must call {@code super.onStartRendering()}.
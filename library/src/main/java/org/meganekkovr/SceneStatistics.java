@@ -0,0 +1,89 @@
+package org.meganekkovr;
+
+import java.util.Arrays;
+
+/**
+ * Per frame statistics of {@link Scene}. Get it with {@link Scene#getStatistics()}.
+ * Values are updated once per frame before entities are updated.
+ */
+public class SceneStatistics {
+
+    private int lodEntityCount;
+    private int[] lodLevelCounts = new int[4];
+    private int lodSwitchCount;
+    private int loadedLodVariantCount;
+    private int unloadedLodVariantCount;
+
+    /**
+     * @return Number of entities which have {@link LodComponent}.
+     */
+    public int getLodEntityCount() {
+        return lodEntityCount;
+    }
+
+    /**
+     * @param level Level of detail. 0 is the highest detail.
+     * @return Number of entities which currently show the level.
+     */
+    public int getLodLevelCount(int level) {
+        return level >= 0 && level < lodLevelCounts.length ? lodLevelCounts[level] : 0;
+    }
+
+    /**
+     * @return Number of entities which switched level in last frame.
+     */
+    public int getLodSwitchCount() {
+        return lodSwitchCount;
+    }
+
+    /**
+     * @return Number of variants which are created by {@link LodComponent.VariantFactory} and loaded now.
+     */
+    public int getLoadedLodVariantCount() {
+        return loadedLodVariantCount;
+    }
+
+    /**
+     * @return Total number of variants unloaded after timeout.
+     */
+    public int getUnloadedLodVariantCount() {
+        return unloadedLodVariantCount;
+    }
+
+    void resetLod() {
+        lodEntityCount = 0;
+        Arrays.fill(lodLevelCounts, 0);
+        lodSwitchCount = 0;
+        loadedLodVariantCount = 0;
+    }
+
+    void addLodEntity(int level, boolean switched, int loadedVariants) {
+
+        ++lodEntityCount;
+        if (switched) ++lodSwitchCount;
+        loadedLodVariantCount += loadedVariants;
+
+        if (level < 0) return;
+        if (level >= lodLevelCounts.length) {
+            lodLevelCounts = Arrays.copyOf(lodLevelCounts, level + 1);
+        }
+        ++lodLevelCounts[level];
+    }
+
+    void addUnloadedLodVariant() {
+        ++unloadedLodVariantCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SceneStatistics{lodEntities=").append(lodEntityCount).append(", lodLevels=[");
+        for (int i = 0; i < lodLevelCounts.length; ++i) {
+            if (i > 0) sb.append(", ");
+            sb.append(lodLevelCounts[i]);
+        }
+        return sb.append("], lodSwitches=").append(lodSwitchCount)
+                .append(", loadedLodVariants=").append(loadedLodVariantCount)
+                .append(", unloadedLodVariants=").append(unloadedLodVariantCount)
+                .append('}').toString();
+    }
+}
@@ -0,0 +1,359 @@
+package org.meganekkovr;
+
+import android.util.Log;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs animations and scene update of frame N+1 on simulation thread while GL thread submits frame N.
+ * See {@link MeganekkoApp#setPipelined(boolean)}.
+ * <p>
+ * Native calls which change state shared with rendering are recorded in {@link ParallelUpdater.Batch} of
+ * {@link Snapshot} while simulating: matrix and opacity uploads, attaching and detaching components,
+ * creating native entities, switching levels of detail and updates of components which defer to GL thread.
+ * Work which requires GL context, such as creating {@link SurfaceRendererComponent} or building geometry,
+ * throws {@link IllegalStateException} on simulation thread. Shown entities are collected at the end. Completed snapshot is handed to GL thread with
+ * {@link AtomicReference} and applied at frame boundary, where simulation thread is idle.
+ * If simulation is not completed in time, previous snapshot is submitted again.
+ * Entities under {@link CameraComponent} are corrected with latest head rotation on every frame.
+ */
+final class SimulationPipeline {
+
+    private static final String TAG = "SimulationPipeline";
+    private static final int CAMERA_TYPE = Component.getTypeId(CameraComponent.class);
+    private static final float MAX_DELTA_SECONDS = 0.1f;
+
+    /**
+     * Result of one simulated frame. Two instances are used in turn.
+     */
+    static final class Snapshot {
+
+        final ParallelUpdater.Batch batch = new ParallelUpdater.Batch();
+        Entity[] entities = new Entity[64];
+        int entityCount;
+
+        // Ranges of entities under camera, and transforms of camera when simulated.
+        // Matrices of entities in ranges are kept to be corrected on every frame.
+        int[] cameraRanges = new int[2];
+        float[] cameraTransforms = new float[CAMERA_STRIDE];
+        int cameraCount;
+        float[] matrices = new float[16 * 16];
+        int matrixCount;
+
+        double captureTime;
+        Throwable error;
+
+        private static final int CAMERA_STRIDE = 16 + 3 + 4;
+
+        void capture(Entity entity, boolean underCamera) {
+
+            // Not visible
+            if (!entity.isVisible()) return;
+
+            final boolean camera = !underCamera && entity.getComponent(CAMERA_TYPE) != null;
+            if (camera) {
+                beginCamera(entity);
+            }
+
+            // Entity without native instance has nothing to render. Native instance of entity whose
+            // components are attached while simulating is created when snapshot is applied.
+            if (entity.hasRenderingComponent()) {
+
+                if (entityCount == entities.length) {
+                    entities = Arrays.copyOf(entities, entityCount * 2);
+                }
+                entities[entityCount++] = entity;
+
+                if (underCamera || camera) {
+                    if ((matrixCount + 1) * 16 > matrices.length) {
+                        matrices = Arrays.copyOf(matrices, matrices.length * 2);
+                    }
+                    System.arraycopy(entity.getWorldModelMatrixValues(), 0, matrices, matrixCount * 16, 16);
+                    ++matrixCount;
+                }
+            }
+
+            for (Entity child : entity.getChildren()) {
+                capture(child, underCamera || camera);
+            }
+
+            if (camera) {
+                cameraRanges[cameraCount * 2 + 1] = entityCount;
+                ++cameraCount;
+            }
+        }
+
+        private void beginCamera(Entity entity) {
+
+            if ((cameraCount + 1) * 2 > cameraRanges.length) {
+                cameraRanges = Arrays.copyOf(cameraRanges, cameraRanges.length * 2);
+                cameraTransforms = Arrays.copyOf(cameraTransforms, cameraTransforms.length * 2);
+            }
+            cameraRanges[cameraCount * 2] = entityCount;
+
+            final int o = cameraCount * CAMERA_STRIDE;
+            System.arraycopy(entity.getWorldModelMatrixValues(), 0, cameraTransforms, o, 16);
+            final Vector3f scale = entity.getScale();
+            cameraTransforms[o + 16] = scale.x;
+            cameraTransforms[o + 17] = scale.y;
+            cameraTransforms[o + 18] = scale.z;
+            final Quaternionf rotation = entity.getRotation();
+            cameraTransforms[o + 19] = rotation.x;
+            cameraTransforms[o + 20] = rotation.y;
+            cameraTransforms[o + 21] = rotation.z;
+            cameraTransforms[o + 22] = rotation.w;
+        }
+
+        void clear() {
+            Arrays.fill(entities, 0, entityCount, null);
+            entityCount = 0;
+            cameraCount = 0;
+            matrixCount = 0;
+            error = null;
+        }
+    }
+
+    private final MeganekkoApp app;
+    private final ExecutorService executor;
+    private final AtomicReference<Snapshot> ready = new AtomicReference<>();
+    private final Snapshot[] buffers = {new Snapshot(), new Snapshot()};
+    private final FrameInputSnapshot simulationFrame = new FrameInputSnapshot();
+    private final Quaternionf headRotation = new Quaternionf();
+    private Snapshot front;
+    private Future<?> running;
+    private double lastSimulationTime;
+    private int buttonPressed;
+    private int buttonReleased;
+    private float latencySeconds;
+    private int droppedFrameCount;
+
+    // For late latching
+    private final Matrix4f cameraMatrix = new Matrix4f();
+    private final Matrix4f correction = new Matrix4f();
+    private final Matrix4f matrix = new Matrix4f();
+    private final Quaternionf rotation = new Quaternionf();
+    private final float[] matrixValues = new float[16];
+
+    SimulationPipeline(MeganekkoApp app) {
+        this.app = app;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Meganekko Simulation");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Called on GL thread at every frame.
+     *
+     * @param frame Frame information
+     */
+    void update(FrameInput frame) {
+
+        // Buttons are accumulated until next simulation starts
+        buttonPressed |= frame.getButtonPressed();
+        buttonReleased |= frame.getButtonReleased();
+
+        // Nothing to draw yet. Wait for first simulation.
+        if (front == null) {
+            startSimulation(frame);
+            await();
+        }
+
+        final Snapshot next = ready.getAndSet(null);
+        if (next != null) {
+            swap(next);
+            startSimulation(frame);
+        } else {
+            ++droppedFrameCount;
+        }
+
+        latencySeconds = (float) (frame.getPredictedDisplayTimeInSeconds() - front.captureTime);
+        lateLatch();
+    }
+
+    /**
+     * Called on GL thread.
+     *
+     * @param surfacesPointer {@code &res.Surfaces}
+     */
+    void collectSurfaceDefs(long surfacesPointer) {
+
+        if (front == null) return;
+
+        final Entity[] entities = front.entities;
+        for (int i = 0, count = front.entityCount; i < count; ++i) {
+            entities[i].addSurfaceDef(surfacesPointer);
+        }
+    }
+
+    /**
+     * Wait for running simulation and apply it. Called on GL thread.
+     */
+    void stop() {
+
+        await();
+        try {
+            final Snapshot next = ready.getAndSet(null);
+            if (next != null) {
+                swap(next);
+            }
+        } finally {
+            executor.shutdown();
+            for (Snapshot snapshot : buffers) {
+                snapshot.clear();
+            }
+            front = null;
+        }
+    }
+
+    /**
+     * @return Head rotation at start of current simulation. Used on simulation thread.
+     */
+    Quaternionf getHeadRotation() {
+        return headRotation;
+    }
+
+    float getLatencySeconds() {
+        return latencySeconds;
+    }
+
+    int getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    private void swap(Snapshot next) {
+
+        running = null;
+
+        // Make native calls recorded while simulating
+        next.batch.finish();
+        front = next;
+
+        if (next.error != null) {
+            final Throwable error = next.error;
+            next.error = null;
+            if (error instanceof RuntimeException) throw (RuntimeException) error;
+            if (error instanceof Error) throw (Error) error;
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private void startSimulation(FrameInput frame) {
+
+        // Simulation thread is idle here, so tasks which touch scene can run
+        app.runFrameBoundaryTasks();
+
+        // Simulate frame which will be displayed next
+        final double time = frame.getPredictedDisplayTimeInSeconds() + frame.getDeltaSeconds();
+        final float delta = lastSimulationTime > 0
+                ? (float) Math.max(0, Math.min(time - lastSimulationTime, MAX_DELTA_SECONDS))
+                : frame.getDeltaSeconds();
+        lastSimulationTime = time;
+        simulationFrame.set(frame, time, delta, buttonPressed, buttonReleased);
+        buttonPressed = 0;
+        buttonReleased = 0;
+        headRotation.set(app.getCenterViewRotation());
+
+        final Snapshot back = front == buffers[0] ? buffers[1] : buffers[0];
+        back.clear();
+        back.captureTime = frame.getPredictedDisplayTimeInSeconds();
+
+        running = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                simulate(back);
+            }
+        });
+    }
+
+    /**
+     * Called on simulation thread.
+     */
+    private void simulate(Snapshot snapshot) {
+
+        snapshot.batch.frame = simulationFrame;
+        ParallelUpdater.setCurrentBatch(snapshot.batch);
+        try {
+            app.simulate(simulationFrame);
+
+            final Scene scene = app.getScene();
+            if (scene != null) {
+                snapshot.capture(scene, false);
+            }
+        } catch (Throwable e) {
+            snapshot.error = e;
+        } finally {
+            ParallelUpdater.setCurrentBatch(null);
+        }
+
+        ready.set(snapshot);
+    }
+
+    private void await() {
+
+        final Future<?> future = running;
+        if (future == null) return;
+
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.e(TAG, "Simulation failed", e);
+        }
+    }
+
+    /**
+     * Rotate entities under cameras by difference between head rotation at simulation and now.
+     */
+    private void lateLatch() {
+
+        final Snapshot snapshot = front;
+        if (snapshot.cameraCount == 0) return;
+
+        final Quaternionf current = app.getCenterViewRotation();
+        final float[] transforms = snapshot.cameraTransforms;
+        final float[] matrices = snapshot.matrices;
+        int matrixIndex = 0;
+
+        for (int c = 0; c < snapshot.cameraCount; ++c) {
+
+            final int o = c * Snapshot.CAMERA_STRIDE;
+            final float sx = transforms[o + 16];
+            final float sy = transforms[o + 17];
+            final float sz = transforms[o + 18];
+
+            // correction = W * S^-1 * R^-1 * R' * S * W^-1
+            cameraMatrix.set(transforms, o);
+            rotation.set(transforms[o + 19], transforms[o + 20], transforms[o + 21], transforms[o + 22])
+                    .invert().mul(current);
+            correction.set(cameraMatrix)
+                    .scale(1 / sx, 1 / sy, 1 / sz)
+                    .rotate(rotation)
+                    .scale(sx, sy, sz)
+                    .mul(cameraMatrix.invertAffine());
+
+            final int start = snapshot.cameraRanges[c * 2];
+            final int end = snapshot.cameraRanges[c * 2 + 1];
+            for (int i = start; i < end; ++i, ++matrixIndex) {
+                matrix.set(matrices, matrixIndex * 16);
+                correction.mul(matrix, matrix);
+                matrix.get(matrixValues);
+                snapshot.entities[i].uploadWorldModelMatrix(matrixValues);
+            }
+        }
+    }
+}
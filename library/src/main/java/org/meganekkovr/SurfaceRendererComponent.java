@@ -4,10 +4,18 @@ import android.graphics.Canvas;
 import android.graphics.PorterDuff;
 import android.graphics.SurfaceTexture;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.Log;
 import android.view.Surface;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * This gives appearance to {@link Entity} for rendering.
  * Surface can be defined with {@link Drawable}, {@link View}, or {@link android.graphics.Bitmap}.
@@ -29,11 +37,22 @@ public class SurfaceRendererComponent extends Component {
         RIGHT_ONLY   // 8
     }
 
+    private static final String TAG = "SurfaceRendererComponent";
     private final NativePointer nativePointer;
     private CanvasRenderer canvasRenderer;
-    private boolean continuousUpdate;
+    private volatile boolean continuousUpdate;
     private float opacity = 1.0f;
     private StereoMode stereoMode = StereoMode.NORMAL;
+    private boolean asyncRendering;
+    private boolean hardwareCanvas;
+    private Future<?> asyncRenderingTask;
+    private final AtomicBoolean asyncFrameReady = new AtomicBoolean();
+    private final AtomicInteger availableFrames = new AtomicInteger();
+    private boolean frameAvailableListenerRegistered;
+    private SurfaceTexture.OnFrameAvailableListener onFrameAvailableListener;
+    private boolean latchNearestToDisplayTime;
+    private long timestamp;
+    private long frameInterval;
 
     protected native long newInstance();
 
@@ -45,32 +64,93 @@ public class SurfaceRendererComponent extends Component {
 
     private static native void removeEntityTexture(long entityPtr, long nativePtr);
 
-    private static native void setOpacity(long nativePtr, float opacity);
+    private static native void setOpacity(long entityPtr, float opacity);
 
     private static native void setStereoMode(long nativePtr, int stereoMode);
 
     public SurfaceRendererComponent() {
+
+        // Native instance creates GL texture
+        ParallelUpdater.checkGlThreadWork("Creating SurfaceRendererComponent");
         nativePointer = NativePointer.getInstance(newInstance());
     }
 
+    /**
+     * Create component which shares native texture and {@link CanvasRenderer} with other component.
+     *
+     * @param source Source component
+     */
+    protected SurfaceRendererComponent(SurfaceRendererComponent source) {
+        nativePointer = source.nativePointer;
+        canvasRenderer = source.canvasRenderer;
+        stereoMode = source.stereoMode;
+        asyncRendering = source.asyncRendering;
+        hardwareCanvas = source.hardwareCanvas;
+        latchNearestToDisplayTime = source.latchNearestToDisplayTime;
+    }
+
     @Override
-    public void onAttach(Entity entity) {
+    public void onAttach(final Entity entity) {
         super.onAttach(entity);
+
+        // Native entity may be rendered now on GL thread
+        boolean recorded = ParallelUpdater.recordNativeCall(new Runnable() {
+            @Override
+            public void run() {
+                attachNative(entity);
+            }
+        });
+        if (!recorded) attachNative(entity);
+    }
+
+    private void attachNative(Entity entity) {
         setEntityTexture(entity.getNativePointer(), nativePointer.get());
+
+        // Entity notifies only changes of opacity. Native entity may keep opacity of previous component.
+        opacity = entity.getRenderingOpacity();
+        setOpacity(entity.getNativePointer(), opacity);
     }
 
     @Override
-    public void onDetach(Entity entity) {
+    public void onDetach(final Entity entity) {
         super.onDetach(entity);
+
+        boolean recorded = ParallelUpdater.recordNativeCall(new Runnable() {
+            @Override
+            public void run() {
+                detachNative(entity);
+            }
+        });
+        if (!recorded) detachNative(entity);
+    }
+
+    private void detachNative(Entity entity) {
+
+        // Don't let worker thread draw on surface which is no longer used by entity
+        finishAsyncRendering();
+
         removeEntityTexture(entity.getNativePointer(), nativePointer.get());
     }
 
+    /**
+     * Work for GL thread is deferred in parallel update.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void update(FrameInput frame) {
 
+        if (deferToGlThread()) return;
+
         if (canvasRenderer != null) {
-            if (canvasRenderer.isDirty()) {
+            if (asyncRendering) {
+                updateAsync();
+            } else if (canvasRenderer.isDirty()) {
                 Surface surface = getSurface(nativePointer.get());
+                final long startTime = System.nanoTime();
                 Canvas canvas = surface.lockCanvas(null);
 
                 // One time draw if return true
@@ -79,6 +159,7 @@ public class SurfaceRendererComponent extends Component {
                 }
 
                 surface.unlockCanvasAndPost(canvas);
+                canvasRenderer.renderTimeNanos = System.nanoTime() - startTime;
 
                 // One time update texture
                 if (!continuousUpdate) getSurfaceTexture().updateTexImage();
@@ -87,12 +168,196 @@ public class SurfaceRendererComponent extends Component {
 
         // Continuous update texture
         if (continuousUpdate) {
-            getSurfaceTexture().updateTexImage();
+            latchAvailableFrames(frame);
         }
 
         super.update(frame);
     }
 
+    /**
+     * Update texture only if producer has delivered new frames since last update.
+     *
+     * @param frame Frame information
+     */
+    private void latchAvailableFrames(FrameInput frame) {
+
+        int frames = availableFrames.get();
+        if (frames == 0) return;
+
+        SurfaceTexture surfaceTexture = getSurfaceTexture();
+
+        if (!latchNearestToDisplayTime) {
+            surfaceTexture.updateTexImage();
+            availableFrames.decrementAndGet();
+            timestamp = surfaceTexture.getTimestamp();
+            return;
+        }
+
+        // Consume queued frames while next frame is expected to be nearer to predicted display time
+        final long displayTime = (long) (frame.getPredictedDisplayTimeInSeconds() * 1e9);
+        while (frames > 0) {
+            surfaceTexture.updateTexImage();
+            availableFrames.decrementAndGet();
+            --frames;
+
+            final long previous = timestamp;
+            timestamp = surfaceTexture.getTimestamp();
+            if (previous > 0 && timestamp > previous) {
+                frameInterval = timestamp - previous;
+            }
+
+            // Producer does not use System.nanoTime() based timestamp. Only one frame is latched.
+            if (Math.abs(timestamp - displayTime) > 1000000000L) break;
+
+            // Next frame comes one interval later. Stop if it is not nearer than this frame.
+            if (timestamp + frameInterval / 2 >= displayTime) break;
+        }
+    }
+
+    /**
+     * Forget frames of previous producer. Called when pooled surface is given to new producer.
+     * Frames queued by previous producer are discarded when it disconnects from surface.
+     */
+    void resetFrames() {
+        availableFrames.set(0);
+        timestamp = 0;
+        frameInterval = 0;
+    }
+
+    /**
+     * Count frames while continuous update is enabled. Listener is registered only while it is used.
+     */
+    private void updateFrameAvailableListener() {
+
+        final boolean required = continuousUpdate || onFrameAvailableListener != null;
+        if (required == frameAvailableListenerRegistered) return;
+
+        if (required) {
+            getSurfaceTexture().setOnFrameAvailableListener(new SurfaceTexture.OnFrameAvailableListener() {
+                @Override
+                public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+                    if (continuousUpdate) {
+                        availableFrames.incrementAndGet();
+                    }
+
+                    SurfaceTexture.OnFrameAvailableListener listener = onFrameAvailableListener;
+                    if (listener != null) {
+                        listener.onFrameAvailable(surfaceTexture);
+                    }
+                }
+            });
+        } else {
+            getSurfaceTexture().setOnFrameAvailableListener(null);
+        }
+        frameAvailableListenerRegistered = required;
+    }
+
+    /**
+     * Called on GL thread instead of drawing {@link CanvasRenderer} directly
+     * when {@link #setAsyncRendering(boolean)} is enabled.
+     */
+    private void updateAsync() {
+
+        // Latch buffer only if worker thread has finished rendering.
+        // Otherwise previous content is kept on surface.
+        if (asyncFrameReady.compareAndSet(true, false)) {
+            if (!continuousUpdate) getSurfaceTexture().updateTexImage();
+        }
+
+        // Previous rendering is still in progress
+        if (asyncRenderingTask != null) {
+            if (!asyncRenderingTask.isDone()) return;
+
+            // Throw exception of rendering on GL thread as synchronous rendering does
+            final Future<?> task = asyncRenderingTask;
+            asyncRenderingTask = null;
+            rethrowAsyncRenderingError(task);
+        }
+
+        if (canvasRenderer.isDirty()) {
+
+            final CanvasRenderer renderer = canvasRenderer;
+            final Surface surface = getSurface(nativePointer.get());
+            final boolean useHardwareCanvas = hardwareCanvas;
+
+            asyncRenderingTask = CanvasRenderingPool.submit(new Runnable() {
+                @Override
+                public void run() {
+
+                    // Clear before rendering not to lose invalidate() while rendering.
+                    // Renderer stays dirty if task is cancelled before running.
+                    renderer.dirty = false;
+
+                    final long startTime = System.nanoTime();
+                    Canvas canvas = useHardwareCanvas && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                            ? surface.lockHardwareCanvas()
+                            : surface.lockCanvas(null);
+
+                    try {
+                        // Continues draw if return false
+                        if (!renderer.render(canvas)) {
+                            renderer.dirty = true;
+                        }
+                    } finally {
+                        surface.unlockCanvasAndPost(canvas);
+                    }
+
+                    renderer.renderTimeNanos = System.nanoTime() - startTime;
+                    asyncFrameReady.set(true);
+                }
+            });
+        }
+    }
+
+    private static void rethrowAsyncRenderingError(Future<?> task) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // Not rendered
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Cancel asynchronous rendering which is not started yet, or wait for it.
+     */
+    private void finishAsyncRendering() {
+
+        final Future<?> task = asyncRenderingTask;
+        if (task == null) return;
+        asyncRenderingTask = null;
+
+        if (task.cancel(false)) return;
+
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // Not rendered
+        } catch (ExecutionException e) {
+
+            // Nobody renders this any more. Just report.
+            Log.e(TAG, "Async rendering failed", e.getCause());
+        }
+    }
+
+    /**
+     * Copy shares texture with this component. {@link CanvasRenderer} is rendered only once for all copies.
+     * Note that stereo mode is also shared because it is stored with texture. Opacity is kept by each entity.
+     * {@link #setContinuousUpdate(boolean) Continuous update} is not copied, so this is not for video surfaces.
+     */
+    @Override
+    public Component copy() {
+        return new SurfaceRendererComponent(this);
+    }
+
     public SurfaceTexture getSurfaceTexture() {
         return getSurfaceTexture(nativePointer.get());
     }
@@ -137,17 +402,89 @@ public class SurfaceRendererComponent extends Component {
     }
 
     /**
-     * Call this to update internal {@link SurfaceTexture} on every frame update.
+     * Call this to update internal {@link SurfaceTexture} automatically when producer delivers new frame.
      * Typically used when rendering video with {@link android.media.MediaPlayer}.
+     * Texture is updated only on frame update which a new frame is available.
+     * Don't call {@link SurfaceTexture#setOnFrameAvailableListener(SurfaceTexture.OnFrameAvailableListener)}
+     * directly. Use {@link #setOnFrameAvailableListener(SurfaceTexture.OnFrameAvailableListener)} instead.
      *
      * @param continuousUpdate {@code true} to update texture automatically on frame update. default is {@code false}.
      */
     public void setContinuousUpdate(boolean continuousUpdate) {
         this.continuousUpdate = continuousUpdate;
+
+        // Forget counted frames. Caller latches frames with updateTexImage() in this mode.
+        if (!continuousUpdate) {
+            availableFrames.set(0);
+        }
+        updateFrameAvailableListener();
+    }
+
+    /**
+     * Latch the queued frame nearest to {@link FrameInput#getPredictedDisplayTimeInSeconds()}
+     * instead of one frame per frame update. Timestamp of next frame is estimated from interval of
+     * previous frames, because frames can be latched only in order. This works with producers which queue frames
+     * with {@link System#nanoTime()} based timestamp such as {@code MediaCodec.releaseOutputBuffer(int, long)}.
+     *
+     * @param latchNearestToDisplayTime {@code true} to pick frame by timestamp. default is {@code false}.
+     */
+    public void setLatchNearestToDisplayTime(boolean latchNearestToDisplayTime) {
+        this.latchNearestToDisplayTime = latchNearestToDisplayTime;
+    }
+
+    /**
+     * Set listener which is called when producer delivers new frame.
+     * Note that it is called on arbitrary thread.
+     *
+     * @param listener Listener or {@code null} to remove.
+     */
+    public void setOnFrameAvailableListener(SurfaceTexture.OnFrameAvailableListener listener) {
+        this.onFrameAvailableListener = listener;
+        updateFrameAvailableListener();
+    }
+
+    /**
+     * @return Timestamp of latched frame in nanoseconds. This is valid only in {@link #setContinuousUpdate(boolean) continuous update mode}.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Render {@link CanvasRenderer} on worker thread instead of GL thread.
+     * Rendered content is shown on the first frame after rendering is finished.
+     * While rendering is not finished, previous content is shown.
+     * Note that {@link CanvasRenderer#render(Canvas)} will be called from worker thread.
+     * Exception thrown from it is rethrown on GL thread at next frame update.
+     * Rendering in progress is awaited when component is detached.
+     *
+     * @param asyncRendering {@code true} to render asynchronously. default is {@code false}.
+     */
+    public void setAsyncRendering(boolean asyncRendering) {
+        this.asyncRendering = asyncRendering;
+    }
+
+    public boolean isAsyncRendering() {
+        return asyncRendering;
+    }
+
+    /**
+     * Use hardware accelerated {@link Canvas} for asynchronous rendering.
+     * This is used only on Android 6.0 or later and {@link #setAsyncRendering(boolean)} is enabled.
+     *
+     * @param hardwareCanvas {@code true} to use hardware canvas. default is {@code false}.
+     */
+    public void setHardwareCanvas(boolean hardwareCanvas) {
+        this.hardwareCanvas = hardwareCanvas;
+    }
+
+    public boolean isHardwareCanvas() {
+        return hardwareCanvas;
     }
 
     public static abstract class CanvasRenderer {
-        private boolean dirty = true;
+        private volatile boolean dirty = true;
+        private volatile long renderTimeNanos;
         public final int width;
         public final int height;
 
@@ -170,6 +507,13 @@ public class SurfaceRendererComponent extends Component {
         public void invalidate() {
             dirty = true;
         }
+
+        /**
+         * @return Time taken by last {@link #render(Canvas)} in nanoseconds.
+         */
+        public long getRenderTimeNanos() {
+            return renderTimeNanos;
+        }
     }
 
     public static class DrawableRenderer extends CanvasRenderer {
@@ -251,7 +595,11 @@ public class SurfaceRendererComponent extends Component {
         }
 
         this.opacity = opacity;
-        setOpacity(nativePointer.get(), opacity);
+
+        final Entity entity = getEntity();
+        if (entity != null) {
+            setOpacity(entity.getNativePointer(), opacity);
+        }
     }
 
     /**
@@ -263,9 +611,16 @@ public class SurfaceRendererComponent extends Component {
         return opacity;
     }
 
-    public void setStereoMode(StereoMode stereoMode) {
+    public void setStereoMode(final StereoMode stereoMode) {
         this.stereoMode = stereoMode;
-        setStereoMode(nativePointer.get(), stereoMode.ordinal());
+
+        boolean recorded = ParallelUpdater.recordNativeCall(new Runnable() {
+            @Override
+            public void run() {
+                setStereoMode(nativePointer.get(), stereoMode.ordinal());
+            }
+        });
+        if (!recorded) setStereoMode(nativePointer.get(), stereoMode.ordinal());
     }
 
     public StereoMode getStereoMode() {
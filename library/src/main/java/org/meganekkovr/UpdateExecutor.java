@@ -0,0 +1,65 @@
+package org.meganekkovr;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker threads for parallel update. Created at first use and shared by all scenes.
+ * Tasks must not wait for other tasks of this executor.
+ */
+final class UpdateExecutor {
+
+    private static final int THREAD_COUNT = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+    private static ExecutorService executor;
+
+    private UpdateExecutor() {
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Meganekko Update " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * @return Number of worker threads.
+     */
+    static int getThreadCount() {
+        return THREAD_COUNT;
+    }
+
+    /**
+     * Run tasks on worker threads and wait for all of them.
+     * Exception thrown in task is rethrown on calling thread.
+     */
+    static void invokeAll(List<? extends Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : getExecutor().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
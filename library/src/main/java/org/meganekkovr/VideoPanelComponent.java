@@ -0,0 +1,173 @@
+package org.meganekkovr;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+/**
+ * This renders video from {@link VideoSurfacePool.Decoder} to {@link Entity} with pooled surface.
+ * When this is attached, {@link SurfaceRendererComponent} is taken from {@link VideoSurfacePool}
+ * and added to the entity, so the entity must not have other {@link SurfaceRendererComponent}.
+ * It is returned to pool when this is detached.
+ * Decoder is played or paused by pool depending on whether user is looking at the entity
+ * or the entity is in view.
+ */
+public class VideoPanelComponent extends Component {
+
+    private static final float GAZE_PRIORITY = 2.0f;
+
+    private final VideoSurfacePool pool;
+    private final Vector3f direction = new Vector3f();
+    private final Vector3f forward = new Vector3f();
+    private VideoSurfacePool.Decoder decoder;
+    private SurfaceRendererComponent surfaceRenderer;
+    private float viewAngle = (float) Math.toRadians(60);
+    private float priority = -1;
+    private boolean inView;
+    private boolean playing;
+    int scheduledFrame = -1;
+
+    public VideoPanelComponent(VideoSurfacePool pool, VideoSurfacePool.Decoder decoder) {
+        this.pool = pool;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public void onAttach(Entity entity) {
+        super.onAttach(entity);
+
+        // Entity can have only one SurfaceRendererComponent
+        if (entity.getComponent(SurfaceRendererComponent.class) != null) {
+            throw new IllegalStateException("Entity already has SurfaceRendererComponent. VideoPanelComponent adds its own.");
+        }
+
+        surfaceRenderer = pool.acquire();
+        entity.add(surfaceRenderer);
+        decoder.setSurface(surfaceRenderer.getSurface());
+        pool.register(this);
+    }
+
+    @Override
+    public void onDetach(Entity entity) {
+        super.onDetach(entity);
+
+        pool.unregister(this);
+        setPlaying(false);
+        decoder.setSurface(null);
+        entity.remove(surfaceRenderer);
+        pool.release(surfaceRenderer);
+        surfaceRenderer = null;
+    }
+
+    @Override
+    public void update(FrameInput frame) {
+
+        updatePriority();
+        pool.schedule(frame.getFrameNumber());
+
+        super.update(frame);
+    }
+
+    private void updatePriority() {
+
+        Entity entity = getEntity();
+        if (!entity.isShown()) {
+            priority = -1;
+            inView = false;
+            return;
+        }
+
+        MeganekkoApp app = entity.getApp();
+
+        // Direction from head to entity
+        Matrix4f m = entity.getWorldModelMatrix();
+        direction.set(m.m30(), m.m31(), m.m32());
+        if (direction.lengthSquared() == 0) {
+            direction.set(0, 0, -1);
+        } else {
+            direction.normalize();
+        }
+
+        // Head forward direction
+        forward.set(0, 0, -1);
+        app.getCenterViewRotation().transform(forward);
+
+        float cos = forward.dot(direction);
+        inView = cos >= Math.cos(viewAngle);
+        priority = cos;
+
+        if (inView && app.isLookingAt(entity)) {
+            priority += GAZE_PRIORITY;
+        }
+    }
+
+    /**
+     * Switch video. Pooled surface is handed from current decoder to new one.
+     *
+     * @param decoder New decoder
+     */
+    public void setDecoder(VideoSurfacePool.Decoder decoder) {
+
+        if (this.decoder == decoder) return;
+
+        boolean wasPlaying = playing;
+        setPlaying(false);
+
+        if (surfaceRenderer != null) {
+            this.decoder.setSurface(null);
+            decoder.setSurface(surfaceRenderer.getSurface());
+        }
+
+        this.decoder = decoder;
+        setPlaying(wasPlaying);
+    }
+
+    public VideoSurfacePool.Decoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Set angle from center of view to entity in which decoding is allowed.
+     *
+     * @param viewAngle Angle in radians. Default is 60 degrees.
+     */
+    public void setViewAngle(float viewAngle) {
+        this.viewAngle = viewAngle;
+    }
+
+    public float getViewAngle() {
+        return viewAngle;
+    }
+
+    /**
+     * @return Decoding priority. Higher value means higher priority.
+     */
+    public float getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return {@code true} if entity is in view.
+     */
+    public boolean isInView() {
+        return inView;
+    }
+
+    /**
+     * @return {@code true} if decoder is playing.
+     */
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    void setPlaying(boolean playing) {
+
+        if (this.playing == playing) return;
+        this.playing = playing;
+
+        if (playing) {
+            decoder.play();
+        } else {
+            decoder.pause();
+        }
+    }
+}
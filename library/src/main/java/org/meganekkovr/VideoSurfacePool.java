@@ -0,0 +1,218 @@
+package org.meganekkovr;
+
+import android.view.Surface;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Pool of {@link SurfaceRendererComponent}s for scenes with many video panels.
+ * Surfaces are recycled across {@link VideoPanelComponent}s instead of creating
+ * new {@link android.graphics.SurfaceTexture} and {@link Surface} for each panel.
+ * Only limited number of {@link Decoder}s are played at the same time.
+ * Panels which user is looking at or which are in view are played first, and the rest are paused.
+ */
+public class VideoSurfacePool {
+
+    /**
+     * Video decoder which renders to {@link Surface}.
+     * Typically this wraps {@link android.media.MediaPlayer} or ExoPlayer.
+     */
+    public interface Decoder {
+
+        /**
+         * Set output surface.
+         *
+         * @param surface Surface or {@code null} to detach output.
+         */
+        void setSurface(Surface surface);
+
+        /**
+         * Start or resume decoding.
+         */
+        void play();
+
+        /**
+         * Pause decoding.
+         */
+        void pause();
+    }
+
+    private final Deque<SurfaceRendererComponent> freeSurfaces = new ArrayDeque<>();
+    private final List<VideoPanelComponent> panels = new ArrayList<>();
+    private int maxActiveDecoders;
+    private int lastScheduledFrame = -1;
+
+    // Statistics
+    private int createdSurfaceCount;
+    private int reusedSurfaceCount;
+    private int surfacesInUse;
+    private int peakSurfacesInUse;
+    private int activeDecoderCount;
+
+    /**
+     * @param maxActiveDecoders Maximum number of decoders which are played at the same time.
+     */
+    public VideoSurfacePool(int maxActiveDecoders) {
+        setMaxActiveDecoders(maxActiveDecoders);
+    }
+
+    /**
+     * Get {@link SurfaceRendererComponent} from pool. New one is created if pool is empty.
+     * Returned component is in {@link SurfaceRendererComponent#setContinuousUpdate(boolean) continuous update mode}.
+     *
+     * @return SurfaceRendererComponent
+     */
+    public SurfaceRendererComponent acquire() {
+
+        SurfaceRendererComponent surface = freeSurfaces.pollFirst();
+        if (surface != null) {
+
+            // Forget frames of previous decoder
+            surface.resetFrames();
+            ++reusedSurfaceCount;
+        } else {
+            surface = new SurfaceRendererComponent();
+            surface.setContinuousUpdate(true);
+            ++createdSurfaceCount;
+        }
+
+        ++surfacesInUse;
+        peakSurfacesInUse = Math.max(peakSurfacesInUse, surfacesInUse);
+
+        return surface;
+    }
+
+    /**
+     * Return {@link SurfaceRendererComponent} to pool. It must be detached from {@link Entity}.
+     *
+     * @param surface SurfaceRendererComponent which was returned from {@link #acquire()}.
+     */
+    public void release(SurfaceRendererComponent surface) {
+
+        if (surface.isAttached()) {
+            throw new IllegalStateException("SurfaceRendererComponent must be detached before release.");
+        }
+
+        freeSurfaces.addFirst(surface);
+        --surfacesInUse;
+    }
+
+    /**
+     * Discard unused surfaces. Discarded surfaces will be deleted at garbage collection.
+     *
+     * @param maxFreeSurfaces Maximum number of unused surfaces to keep.
+     */
+    public void trim(int maxFreeSurfaces) {
+        while (freeSurfaces.size() > maxFreeSurfaces) {
+            freeSurfaces.pollLast();
+        }
+    }
+
+    public void setMaxActiveDecoders(int maxActiveDecoders) {
+        if (maxActiveDecoders < 0) {
+            throw new IllegalArgumentException("maxActiveDecoders must not be negative.");
+        }
+        this.maxActiveDecoders = maxActiveDecoders;
+    }
+
+    public int getMaxActiveDecoders() {
+        return maxActiveDecoders;
+    }
+
+    void register(VideoPanelComponent panel) {
+        panels.add(panel);
+    }
+
+    void unregister(VideoPanelComponent panel) {
+        if (panels.remove(panel) && panel.isPlaying()) {
+            --activeDecoderCount;
+        }
+    }
+
+    /**
+     * Called from {@link VideoPanelComponent#update(FrameInput)}. Decides which decoders are played.
+     * This runs once per frame with priorities computed in previous frame.
+     *
+     * @param frameNumber Current frame number
+     */
+    void schedule(int frameNumber) {
+
+        if (frameNumber == lastScheduledFrame) return;
+        lastScheduledFrame = frameNumber;
+
+        final int size = panels.size();
+        int active = 0;
+
+        // Select panels which have the highest priority
+        for (int rank = 0; rank < size; ++rank) {
+
+            VideoPanelComponent best = null;
+            for (int i = 0; i < size; ++i) {
+                VideoPanelComponent panel = panels.get(i);
+                if (panel.scheduledFrame == frameNumber) continue;
+                if (best == null || panel.getPriority() > best.getPriority()) {
+                    best = panel;
+                }
+            }
+
+            best.scheduledFrame = frameNumber;
+            boolean play = active < maxActiveDecoders && best.isInView();
+            if (play) ++active;
+            best.setPlaying(play);
+        }
+
+        activeDecoderCount = active;
+    }
+
+    /**
+     * @return Number of {@link SurfaceRendererComponent}s created by this pool.
+     */
+    public int getCreatedSurfaceCount() {
+        return createdSurfaceCount;
+    }
+
+    /**
+     * @return Number of times {@link #acquire()} reused pooled surface.
+     */
+    public int getReusedSurfaceCount() {
+        return reusedSurfaceCount;
+    }
+
+    /**
+     * @return Number of surfaces which are acquired and not released yet.
+     */
+    public int getSurfacesInUse() {
+        return surfacesInUse;
+    }
+
+    /**
+     * @return Maximum of {@link #getSurfacesInUse()} ever.
+     */
+    public int getPeakSurfacesInUse() {
+        return peakSurfacesInUse;
+    }
+
+    /**
+     * @return Number of unused surfaces in pool.
+     */
+    public int getFreeSurfaceCount() {
+        return freeSurfaces.size();
+    }
+
+    /**
+     * @return Number of decoders which are playing.
+     */
+    public int getActiveDecoderCount() {
+        return activeDecoderCount;
+    }
+
+    /**
+     * @return Number of panels which are paused by this pool.
+     */
+    public int getPausedPanelCount() {
+        return panels.size() - activeDecoderCount;
+    }
+}
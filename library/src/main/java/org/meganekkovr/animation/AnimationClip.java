@@ -0,0 +1,468 @@
+package org.meganekkovr.animation;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RawRes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Baked keyframe animation for an {@link org.meganekkovr.Entity} hierarchy. A clip has tracks and each track
+ * animates position, scale, rotation or opacity of an entity found by id. Keyframes are linearly interpolated
+ * and stored in quantized 16 bit values. Clip is immutable and can be shared by many entities.
+ * Play it with {@link AnimationClipComponent}.
+ * <p/>
+ * Format (little endian):
+ * <pre>
+ * header: int magic "MGNA", u16 version, u16 track count, float duration, int key count, int value count
+ * track : int target id, u8 property, u8 reserved, u16 key count, float min[4], float extent[4]
+ * times : u16 time * key count
+ * values: u16 value * value count
+ * </pre>
+ * Target id is {@code 0} for entity which plays the clip. Property is one of {@link TweenEngine#POSITION},
+ * {@link TweenEngine#SCALE}, {@link TweenEngine#ROTATION} and {@link TweenEngine#OPACITY}.
+ * Time is quantized in range of duration, and value is quantized in range of {@code min} to {@code min + extent}.
+ * Keys and values are ordered by track.
+ */
+public final class AnimationClip {
+
+    public static final String EXTENSION = ".mgna";
+    static final int MAGIC = 0x4D474E41;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int TRACK_SIZE = 40;
+    private static final float QUANTIZE = 65535;
+
+    private final float duration;
+    private final int[] targets;
+    private final int[] properties;
+    private final int[] keyStarts;
+    private final int[] keyCounts;
+    private final int[] valueStarts;
+    private final float[] ranges;
+    private final short[] times;
+    private final short[] values;
+
+    private AnimationClip(float duration, int[] targets, int[] properties, int[] keyCounts, float[] ranges, short[] times, short[] values) {
+        this.duration = duration;
+        this.targets = targets;
+        this.properties = properties;
+        this.keyCounts = keyCounts;
+        this.ranges = ranges;
+        this.times = times;
+        this.values = values;
+
+        this.keyStarts = new int[targets.length];
+        this.valueStarts = new int[targets.length];
+        int keyStart = 0;
+        int valueStart = 0;
+        for (int i = 0; i < targets.length; ++i) {
+            keyStarts[i] = keyStart;
+            valueStarts[i] = valueStart;
+            keyStart += keyCounts[i];
+            valueStart += keyCounts[i] * components(properties[i]);
+        }
+        if (keyStart != times.length || valueStart != values.length) {
+            throw new IllegalArgumentException("Wrong number of keys or values.");
+        }
+    }
+
+    /**
+     * Load clip. Keys are copied to arrays for fast sampling.
+     *
+     * @param buffer Clip data
+     * @return Clip
+     * @throws IOException if data is not valid.
+     */
+    @NonNull
+    public static AnimationClip load(@NonNull ByteBuffer buffer) throws IOException {
+
+        final ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (data.getInt() != MAGIC) {
+                throw new IOException("Not an animation clip.");
+            }
+            final int version = data.getShort() & 0xFFFF;
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version);
+            }
+
+            final int trackCount = data.getShort() & 0xFFFF;
+            final float duration = data.getFloat();
+            final short[] times = new short[data.getInt()];
+            final short[] values = new short[data.getInt()];
+
+            final int[] targets = new int[trackCount];
+            final int[] properties = new int[trackCount];
+            final int[] keyCounts = new int[trackCount];
+            final float[] ranges = new float[trackCount * 8];
+            for (int i = 0; i < trackCount; ++i) {
+                targets[i] = data.getInt();
+                properties[i] = data.get() & 0xFF;
+                data.get();
+                keyCounts[i] = data.getShort() & 0xFFFF;
+                for (int j = 0; j < 8; ++j) {
+                    ranges[i * 8 + j] = data.getFloat();
+                }
+                if (properties[i] > TweenEngine.OPACITY || keyCounts[i] == 0) {
+                    throw new IOException("Invalid track " + i);
+                }
+            }
+
+            data.asShortBuffer().get(times);
+            data.position(data.position() + times.length * 2);
+            data.asShortBuffer().get(values);
+
+            return new AnimationClip(duration, targets, properties, keyCounts, ranges, times, values);
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Animation clip is broken.", e);
+        }
+    }
+
+    /**
+     * Load clip from stream.
+     *
+     * @param stream Stream of clip data. This is not closed.
+     * @return Clip
+     * @throws IOException if reading failed or data is not valid.
+     */
+    @NonNull
+    public static AnimationClip load(@NonNull InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[16 * 1024];
+        int len;
+        while ((len = stream.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        return load(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Load clip from assets.
+     *
+     * @param context   Context
+     * @param assetName Asset name
+     * @return Clip
+     * @throws IOException if reading failed or data is not valid.
+     */
+    @NonNull
+    public static AnimationClip loadAsset(@NonNull Context context, @NonNull String assetName) throws IOException {
+        try (InputStream stream = context.getAssets().open(assetName)) {
+            return load(stream);
+        }
+    }
+
+    /**
+     * Load clip from raw resource.
+     *
+     * @param context Context
+     * @param resId   Raw resource ID
+     * @return Clip
+     * @throws IOException if reading failed or data is not valid.
+     */
+    @NonNull
+    public static AnimationClip loadResource(@NonNull Context context, @RawRes int resId) throws IOException {
+        try (InputStream stream = context.getResources().openRawResource(resId)) {
+            return load(stream);
+        }
+    }
+
+    /**
+     * Write clip in binary format.
+     *
+     * @param out Output stream. This is not closed.
+     * @throws IOException if writing failed.
+     */
+    public void write(@NonNull OutputStream out) throws IOException {
+
+        final ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + targets.length * TRACK_SIZE + (times.length + values.length) * 2)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(MAGIC);
+        data.putShort((short) VERSION);
+        data.putShort((short) targets.length);
+        data.putFloat(duration);
+        data.putInt(times.length);
+        data.putInt(values.length);
+
+        for (int i = 0; i < targets.length; ++i) {
+            data.putInt(targets[i]);
+            data.put((byte) properties[i]);
+            data.put((byte) 0);
+            data.putShort((short) keyCounts[i]);
+            for (int j = 0; j < 8; ++j) {
+                data.putFloat(ranges[i * 8 + j]);
+            }
+        }
+        for (short time : times) {
+            data.putShort(time);
+        }
+        for (short value : values) {
+            data.putShort(value);
+        }
+
+        out.write(data.array());
+    }
+
+    /**
+     * @return Duration in seconds.
+     */
+    public float getDuration() {
+        return duration;
+    }
+
+    public int getTrackCount() {
+        return targets.length;
+    }
+
+    /**
+     * @param track Track index
+     * @return Id of target entity or {@code 0} for entity which plays the clip.
+     */
+    public int getTrackTarget(int track) {
+        return targets[track];
+    }
+
+    /**
+     * @param track Track index
+     * @return One of {@link TweenEngine#POSITION}, {@link TweenEngine#SCALE}, {@link TweenEngine#ROTATION}
+     * and {@link TweenEngine#OPACITY}.
+     */
+    public int getTrackProperty(int track) {
+        return properties[track];
+    }
+
+    /**
+     * Evaluate all tracks at time in one pass. This doesn't allocate any objects.
+     * Keys are searched from previous position, so sampling forward is fast.
+     *
+     * @param time    Time in seconds. Clamped to range of clip.
+     * @param cursors Array of {@link #getTrackCount()} length to remember key positions. Initially zeros.
+     * @param out     Array of {@code 4 * }{@link #getTrackCount()} length. Values of track {@code i} are written
+     *                from {@code out[i * 4]}. Rotation is normalized quaternion x, y, z, w.
+     */
+    public void sample(float time, @NonNull int[] cursors, @NonNull float[] out) {
+
+        // Quantized time. Interpolation is done in quantized space.
+        final float t = duration > 0 ? Math.max(0, Math.min(time / duration, 1)) * QUANTIZE : 0;
+        final short[] times = this.times;
+        final short[] values = this.values;
+        final float[] ranges = this.ranges;
+
+        for (int track = 0, trackCount = targets.length; track < trackCount; ++track) {
+
+            final int keyStart = keyStarts[track];
+            final int last = keyCounts[track] - 1;
+
+            // Find key k which satisfies times[k] <= t < times[k + 1]
+            int k = cursors[track];
+            if (k > last || (times[keyStart + k] & 0xFFFF) > t) {
+                k = 0;
+            }
+            while (k < last && (times[keyStart + k + 1] & 0xFFFF) <= t) {
+                ++k;
+            }
+            cursors[track] = k;
+
+            final int next = k < last ? k + 1 : k;
+            final float t0 = times[keyStart + k] & 0xFFFF;
+            final float t1 = times[keyStart + next] & 0xFFFF;
+            final float f = t1 > t0 ? Math.min((t - t0) / (t1 - t0), 1) : 0;
+
+            final int components = components(properties[track]);
+            final int v0 = valueStarts[track] + k * components;
+            final int v1 = valueStarts[track] + next * components;
+            final int range = track * 8;
+            final int o = track * 4;
+
+            for (int c = 0; c < components; ++c) {
+                final float a = values[v0 + c] & 0xFFFF;
+                final float b = values[v1 + c] & 0xFFFF;
+                out[o + c] = ranges[range + c] + (a + (b - a) * f) / QUANTIZE * ranges[range + 4 + c];
+            }
+
+            if (components == 4) {
+                normalize(out, o);
+            }
+        }
+    }
+
+    static int components(int property) {
+        switch (property) {
+            case TweenEngine.ROTATION:
+                return 4;
+            case TweenEngine.OPACITY:
+                return 1;
+            default:
+                return 3;
+        }
+    }
+
+    static void normalize(float[] q, int offset) {
+        final float x = q[offset], y = q[offset + 1], z = q[offset + 2], w = q[offset + 3];
+        final float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        if (length > 0) {
+            final float inv = 1 / length;
+            q[offset] = x * inv;
+            q[offset + 1] = y * inv;
+            q[offset + 2] = z * inv;
+            q[offset + 3] = w * inv;
+        }
+    }
+
+    /**
+     * Bakes keyframes into {@link AnimationClip}.
+     * <pre>
+     * AnimationClip clip = new AnimationClip.Builder()
+     *         .addTrack("logo", TweenEngine.POSITION, new float[]{0, 1}, new float[]{0, 0, -10, 0, 0, -3})
+     *         .addTrack("logo", TweenEngine.OPACITY, new float[]{0, 1}, new float[]{0, 1})
+     *         .build();
+     * </pre>
+     */
+    public static class Builder {
+
+        private static class Track {
+            final int target;
+            final int property;
+            final float[] times;
+            final float[] values;
+
+            Track(int target, int property, float[] times, float[] values) {
+                this.target = target;
+                this.property = property;
+                this.times = times;
+                this.values = values;
+            }
+        }
+
+        private final List<Track> tracks = new ArrayList<>();
+
+        /**
+         * Add track for entity which has string id.
+         *
+         * @param target   String id of target entity or {@code null} for entity which plays the clip.
+         * @param property One of {@link TweenEngine#POSITION}, {@link TweenEngine#SCALE}, {@link TweenEngine#ROTATION}
+         *                 and {@link TweenEngine#OPACITY}.
+         * @param times    Times of keys in seconds in ascending order.
+         * @param values   Values of keys. 3 floats for position and scale, quaternion x, y, z, w for rotation
+         *                 and a float for opacity per key.
+         * @return This object
+         */
+        public Builder addTrack(@Nullable String target, int property, @NonNull float[] times, @NonNull float[] values) {
+            return addTrack(target != null ? target.hashCode() : 0, property, times, values);
+        }
+
+        /**
+         * Add track for entity which has id.
+         *
+         * @param target   ID of target entity or {@code 0} for entity which plays the clip.
+         * @param property One of {@link TweenEngine#POSITION}, {@link TweenEngine#SCALE}, {@link TweenEngine#ROTATION}
+         *                 and {@link TweenEngine#OPACITY}.
+         * @param times    Times of keys in seconds in ascending order.
+         * @param values   Values of keys.
+         * @return This object
+         */
+        public Builder addTrack(int target, int property, @NonNull float[] times, @NonNull float[] values) {
+
+            if (property < TweenEngine.POSITION || property > TweenEngine.OPACITY) {
+                throw new IllegalArgumentException("Invalid property " + property);
+            } else if (times.length == 0 || times.length > 65535) {
+                throw new IllegalArgumentException("Invalid number of keys " + times.length);
+            } else if (values.length != times.length * components(property)) {
+                throw new IllegalArgumentException("Wrong number of values " + values.length);
+            }
+            for (int i = 1; i < times.length; ++i) {
+                if (times[i] < times[i - 1]) {
+                    throw new IllegalArgumentException("Times must be in ascending order.");
+                }
+            }
+
+            tracks.add(new Track(target, property, times.clone(), values.clone()));
+            return this;
+        }
+
+        @NonNull
+        public AnimationClip build() {
+
+            float duration = 0;
+            int keyCount = 0;
+            int valueCount = 0;
+            for (Track track : tracks) {
+                duration = Math.max(duration, track.times[track.times.length - 1]);
+                keyCount += track.times.length;
+                valueCount += track.values.length;
+            }
+
+            final int[] targets = new int[tracks.size()];
+            final int[] properties = new int[tracks.size()];
+            final int[] keyCounts = new int[tracks.size()];
+            final float[] ranges = new float[tracks.size() * 8];
+            final short[] times = new short[keyCount];
+            final short[] values = new short[valueCount];
+
+            int key = 0;
+            int value = 0;
+            for (int i = 0; i < tracks.size(); ++i) {
+
+                final Track track = tracks.get(i);
+                final int components = components(track.property);
+                targets[i] = track.target;
+                properties[i] = track.property;
+                keyCounts[i] = track.times.length;
+
+                for (float time : track.times) {
+                    times[key++] = quantize(duration > 0 ? time / duration : 0);
+                }
+
+                // Range of each component
+                final float[] min = new float[4];
+                final float[] max = new float[4];
+                Arrays.fill(min, Float.MAX_VALUE);
+                Arrays.fill(max, -Float.MAX_VALUE);
+                for (int j = 0; j < track.values.length; ++j) {
+                    min[j % components] = Math.min(min[j % components], track.values[j]);
+                    max[j % components] = Math.max(max[j % components], track.values[j]);
+                }
+                for (int c = 0; c < components; ++c) {
+                    ranges[i * 8 + c] = min[c];
+                    ranges[i * 8 + 4 + c] = max[c] - min[c];
+                }
+
+                // Keep rotations in same hemisphere to interpolate through shortest path
+                final float[] v = track.values;
+                if (track.property == TweenEngine.ROTATION) {
+                    for (int j = 4; j < v.length; j += 4) {
+                        if (v[j] * v[j - 4] + v[j + 1] * v[j - 3] + v[j + 2] * v[j - 2] + v[j + 3] * v[j - 1] < 0) {
+                            for (int c = 0; c < 4; ++c) v[j + c] = -v[j + c];
+                        }
+                    }
+                    for (int c = 0; c < 4; ++c) {
+                        ranges[i * 8 + c] = -1;
+                        ranges[i * 8 + 4 + c] = 2;
+                    }
+                }
+
+                for (int j = 0; j < v.length; ++j) {
+                    final float extent = ranges[i * 8 + 4 + j % components];
+                    values[value++] = quantize(extent > 0 ? (v[j] - ranges[i * 8 + j % components]) / extent : 0);
+                }
+            }
+
+            return new AnimationClip(duration, targets, properties, keyCounts, ranges, times, values);
+        }
+
+        private static short quantize(float normalized) {
+            return (short) Math.round(Math.max(0, Math.min(normalized, 1)) * QUANTIZE);
+        }
+    }
+}
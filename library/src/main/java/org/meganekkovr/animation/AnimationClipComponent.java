@@ -0,0 +1,418 @@
+package org.meganekkovr.animation;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.meganekkovr.Component;
+import org.meganekkovr.Entity;
+import org.meganekkovr.FrameInput;
+
+import java.util.Arrays;
+
+/**
+ * Plays {@link AnimationClip} on attached {@link Entity} and its descendants.
+ * Tracks are bound to entities by id when playing starts. All tracks are sampled in one pass per frame.
+ * <pre>
+ * AnimationClipComponent player = new AnimationClipComponent();
+ * entity.add(player);
+ * player.play(intro);
+ * ...
+ * player.crossFade(idle, 0.5f);
+ * </pre>
+ * Clip can be set in XML with {@code clip} attribute.
+ */
+public class AnimationClipComponent extends Component {
+
+    /**
+     * Playing state of a clip.
+     */
+    private static class Layer {
+        AnimationClip clip;
+        int[] cursors;
+        float[] samples;
+        int[] slots;
+        float time;
+
+        void set(AnimationClip clip) {
+            this.clip = clip;
+            this.time = 0;
+            if (clip == null) return;
+
+            final int trackCount = clip.getTrackCount();
+            if (cursors == null || cursors.length < trackCount) {
+                cursors = new int[trackCount];
+                samples = new float[trackCount * 4];
+                slots = new int[trackCount];
+            } else {
+                Arrays.fill(cursors, 0);
+            }
+        }
+
+        void copyFrom(Layer other) {
+            AnimationClip clip = this.clip;
+            int[] cursors = this.cursors;
+            float[] samples = this.samples;
+            int[] slots = this.slots;
+
+            // Swap arrays to reuse them
+            this.clip = other.clip;
+            this.cursors = other.cursors;
+            this.samples = other.samples;
+            this.slots = other.slots;
+            this.time = other.time;
+            other.clip = clip;
+            other.cursors = cursors;
+            other.samples = samples;
+            other.slots = slots;
+        }
+    }
+
+    private final Layer current = new Layer();
+    private final Layer previous = new Layer();
+    private boolean looping;
+    private float speed = 1;
+    private boolean playing;
+    private float fadeDuration;
+    private float fadeTime;
+    private boolean bindingRequired;
+    private Runnable callback;
+
+    // Target property of tracks. Tracks of both layers which animate same property share one slot.
+    private Entity[] slotTargets = new Entity[0];
+    private int[] slotProperties = new int[0];
+    private float[] slotValues = new float[0];
+    private float[] slotBaseValues = new float[0];
+    private int slotCount;
+
+    private final Vector3f tmpVector = new Vector3f();
+    private final Quaternionf tmpQuaternion = new Quaternionf();
+
+    /**
+     * Start playing clip from the beginning.
+     *
+     * @param clip Clip
+     */
+    public void play(@NonNull AnimationClip clip) {
+        crossFade(clip, 0);
+    }
+
+    /**
+     * Start playing clip while fading out current clip.
+     *
+     * @param clip     Clip
+     * @param duration Time of blending in seconds.
+     */
+    public void crossFade(@NonNull AnimationClip clip, float duration) {
+
+        if (current.clip != null && playing && duration > 0) {
+            previous.copyFrom(current);
+            fadeDuration = duration;
+            fadeTime = 0;
+        } else {
+            previous.set(null);
+            fadeDuration = 0;
+        }
+
+        current.set(clip);
+        playing = true;
+        bindingRequired = true;
+    }
+
+    /**
+     * Stop playing. Entities keep current values.
+     */
+    public void stop() {
+        playing = false;
+        previous.set(null);
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    @Nullable
+    public AnimationClip getClip() {
+        return current.clip;
+    }
+
+    /**
+     * @param looping {@code true} to repeat clip. Default is {@code false}.
+     */
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    public boolean isLooping() {
+        return looping;
+    }
+
+    /**
+     * @param speed Playback rate. Default is 1.
+     */
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @param time Time of current clip in seconds.
+     */
+    public void setTime(float time) {
+        current.time = time;
+    }
+
+    public float getTime() {
+        return current.time;
+    }
+
+    /**
+     * Set callback for end of clip which is not looping.
+     *
+     * @param callback Action which will be called on GL thread.
+     */
+    public void onEnd(@Nullable Runnable callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public void onDetach(Entity entity) {
+        super.onDetach(entity);
+
+        // Entities may be changed while detached
+        bindingRequired = true;
+    }
+
+    @Override
+    public void update(FrameInput frame) {
+
+        if (playing) {
+
+            if (bindingRequired) {
+                bind();
+                bindingRequired = false;
+            }
+
+            final float delta = frame.getDeltaSeconds() * speed;
+            boolean ended = advance(current, delta);
+
+            if (previous.clip != null) {
+                advance(previous, delta);
+                fadeTime += frame.getDeltaSeconds();
+                if (fadeTime >= fadeDuration) {
+                    previous.set(null);
+
+                    // Release tracks of previous clip after this frame
+                    bindingRequired = true;
+                }
+            }
+
+            evaluate();
+
+            if (ended) {
+                playing = false;
+                previous.set(null);
+                if (callback != null) callback.run();
+            }
+        }
+
+        super.update(frame);
+    }
+
+    /**
+     * @return {@code true} if clip reached the end.
+     */
+    private boolean advance(Layer layer, float delta) {
+
+        final float duration = layer.clip.getDuration();
+        layer.time += delta;
+
+        if (looping && duration > 0) {
+            layer.time %= duration;
+            if (layer.time < 0) layer.time += duration;
+            return false;
+        }
+
+        if (layer.time >= duration) {
+            layer.time = duration;
+            return speed > 0;
+        } else if (layer.time <= 0) {
+            layer.time = 0;
+            return speed < 0;
+        }
+        return false;
+    }
+
+    private void evaluate() {
+
+        final float[] values = slotValues;
+
+        // Start from values at binding for tracks which only previous clip has
+        if (previous.clip != null) {
+            System.arraycopy(slotBaseValues, 0, values, 0, slotCount * 4);
+            sample(previous, 1);
+        }
+
+        final float weight = previous.clip != null ? fadeTime / fadeDuration : 1;
+        sample(current, weight);
+
+        for (int i = 0; i < slotCount; ++i) {
+
+            final Entity target = slotTargets[i];
+            if (target == null) continue;
+
+            final int o = i * 4;
+            switch (slotProperties[i]) {
+                case TweenEngine.POSITION:
+                    target.setPosition(values[o], values[o + 1], values[o + 2]);
+                    break;
+                case TweenEngine.SCALE:
+                    target.setScale(values[o], values[o + 1], values[o + 2]);
+                    break;
+                case TweenEngine.ROTATION:
+                    target.setRotation(tmpQuaternion.set(values[o], values[o + 1], values[o + 2], values[o + 3]));
+                    break;
+                case TweenEngine.OPACITY:
+                    target.setOpacity(values[o]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Sample layer and blend samples into slot values.
+     */
+    private void sample(Layer layer, float weight) {
+
+        layer.clip.sample(layer.time, layer.cursors, layer.samples);
+
+        final float[] samples = layer.samples;
+        final float[] values = slotValues;
+        for (int track = 0, trackCount = layer.clip.getTrackCount(); track < trackCount; ++track) {
+
+            final int s = track * 4;
+            final int o = layer.slots[track] * 4;
+
+            if (weight >= 1) {
+                System.arraycopy(samples, s, values, o, 4);
+            } else if (slotProperties[layer.slots[track]] == TweenEngine.ROTATION) {
+
+                // Shortest path
+                final float dot = values[o] * samples[s] + values[o + 1] * samples[s + 1]
+                        + values[o + 2] * samples[s + 2] + values[o + 3] * samples[s + 3];
+                final float w = dot < 0 ? -weight : weight;
+                for (int c = 0; c < 4; ++c) {
+                    values[o + c] = values[o + c] * (1 - weight) + samples[s + c] * w;
+                }
+                AnimationClip.normalize(values, o);
+            } else {
+                for (int c = 0; c < 4; ++c) {
+                    values[o + c] += (samples[s + c] - values[o + c]) * weight;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read current value of slot from entity to slot values.
+     */
+    private void read(int slot) {
+
+        final Entity target = slotTargets[slot];
+        if (target == null) return;
+
+        final float[] values = slotValues;
+        final int o = slot * 4;
+        switch (slotProperties[slot]) {
+            case TweenEngine.POSITION:
+                tmpVector.set(target.getPosition());
+                values[o] = tmpVector.x;
+                values[o + 1] = tmpVector.y;
+                values[o + 2] = tmpVector.z;
+                break;
+            case TweenEngine.SCALE:
+                tmpVector.set(target.getScale());
+                values[o] = tmpVector.x;
+                values[o + 1] = tmpVector.y;
+                values[o + 2] = tmpVector.z;
+                break;
+            case TweenEngine.ROTATION:
+                tmpQuaternion.set(target.getRotation());
+                values[o] = tmpQuaternion.x;
+                values[o + 1] = tmpQuaternion.y;
+                values[o + 2] = tmpQuaternion.z;
+                values[o + 3] = tmpQuaternion.w;
+                break;
+            case TweenEngine.OPACITY:
+                values[o] = target.getOpacity();
+                break;
+        }
+    }
+
+    /**
+     * Bind tracks of both layers to slots.
+     */
+    private void bind() {
+
+        final int capacity = current.clip.getTrackCount() + (previous.clip != null ? previous.clip.getTrackCount() : 0);
+        if (slotTargets.length < capacity) {
+            slotTargets = new Entity[capacity];
+            slotProperties = new int[capacity];
+            slotValues = new float[capacity * 4];
+            slotBaseValues = new float[capacity * 4];
+        } else {
+            Arrays.fill(slotTargets, null);
+        }
+        slotCount = 0;
+
+        if (previous.clip != null) {
+            bind(previous);
+        }
+        bind(current);
+        System.arraycopy(slotValues, 0, slotBaseValues, 0, slotCount * 4);
+    }
+
+    private void bind(Layer layer) {
+
+        final Entity entity = getEntity();
+        final AnimationClip clip = layer.clip;
+
+        for (int track = 0, trackCount = clip.getTrackCount(); track < trackCount; ++track) {
+
+            final int id = clip.getTrackTarget(track);
+            final int property = clip.getTrackProperty(track);
+            final Entity target = id == 0 ? entity : entity.findById(id);
+
+            int slot = -1;
+            for (int i = 0; i < slotCount; ++i) {
+                if (slotTargets[i] == target && slotProperties[i] == property) {
+                    slot = i;
+                    break;
+                }
+            }
+
+            if (slot < 0) {
+                slot = slotCount++;
+                slotTargets[slot] = target;
+                slotProperties[slot] = property;
+                read(slot);
+            }
+            layer.slots[track] = slot;
+        }
+    }
+
+    @Override
+    public Component copy() {
+        AnimationClipComponent copy = new AnimationClipComponent();
+        copy.looping = looping;
+        copy.speed = speed;
+        if (playing && current.clip != null) {
+            copy.play(current.clip);
+        }
+        return copy;
+    }
+}
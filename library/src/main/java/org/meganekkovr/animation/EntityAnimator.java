@@ -5,23 +5,58 @@ import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.animation.TimeInterpolator;
 import android.animation.ValueAnimator;
+import android.view.animation.AccelerateDecelerateInterpolator;
 
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
 import org.meganekkovr.Entity;
+import org.meganekkovr.MeganekkoApp;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Animates {@link Entity}'s properties. Animation runs on GL thread with {@link TweenEngine}.
+ * <pre>
+ * entity.animate()
+ *         .moveTo(new Vector3f(0, 0, -5))
+ *         .opacity(0.5f)
+ *         .duration(500)
+ *         .start();
+ * </pre>
+ */
 public class EntityAnimator {
 
+    /**
+     * Same as default interpolator of {@link ValueAnimator}.
+     */
+    private static final TimeInterpolator DEFAULT_INTERPOLATOR = new AccelerateDecelerateInterpolator();
+
+    /**
+     * Same as default duration of {@link ValueAnimator}.
+     */
+    private static final long DEFAULT_DURATION = 300;
+
+    private static class Step {
+        final int property;
+        final float[] from;
+        final float[] to;
+
+        Step(int property, float[] from, float[] to) {
+            this.property = property;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
     private final Entity target;
-    private final List<Animator> animators = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
     private Runnable callback;
     private long duration = -1;
-    private TimeInterpolator interpolator;
+    private TimeInterpolator interpolator = DEFAULT_INTERPOLATOR;
     private boolean sequential;
     private long delay;
+    private long group = -1;
     private AnimatorSet animator;
 
     // For sequential animation
@@ -36,10 +71,10 @@ public class EntityAnimator {
 
     public EntityAnimator moveTo(Vector3f position) {
         Vector3f fromPos = lastPos != null ? lastPos : target.getPosition();
-        ValueAnimator animator = ValueAnimator.ofObject(new VectorEvaluator(), new Vector3f(fromPos), new Vector3f(position));
-        animator.addUpdateListener(new PositionUpdateListener(target));
-        animators.add(animator);
-        lastPos = position;
+        steps.add(new Step(TweenEngine.POSITION,
+                new float[]{fromPos.x, fromPos.y, fromPos.z},
+                new float[]{position.x, position.y, position.z}));
+        lastPos = new Vector3f(position);
         return this;
     }
 
@@ -52,10 +87,10 @@ public class EntityAnimator {
 
     public EntityAnimator scaleTo(Vector3f scale) {
         Vector3f fromScale = lastScale != null ? lastScale : target.getScale();
-        ValueAnimator animator = ValueAnimator.ofObject(new VectorEvaluator(), new Vector3f(fromScale), new Vector3f(scale));
-        animator.addUpdateListener(new ScaleUpdateListener(target));
-        animators.add(animator);
-        lastScale = scale;
+        steps.add(new Step(TweenEngine.SCALE,
+                new float[]{fromScale.x, fromScale.y, fromScale.z},
+                new float[]{scale.x, scale.y, scale.z}));
+        lastScale = new Vector3f(scale);
         return this;
     }
 
@@ -68,10 +103,10 @@ public class EntityAnimator {
 
     public EntityAnimator rotateTo(Quaternionf rotation) {
         Quaternionf fromRotation = lastRotation != null ? lastRotation : target.getRotation();
-        ValueAnimator animator = ValueAnimator.ofObject(new QuaternionEvaluator(), new Quaternionf(fromRotation), new Quaternionf(rotation));
-        animator.addUpdateListener(new RotationUpdateListener(target));
-        animators.add(animator);
-        lastRotation = rotation;
+        steps.add(new Step(TweenEngine.ROTATION,
+                new float[]{fromRotation.x, fromRotation.y, fromRotation.z, fromRotation.w},
+                new float[]{rotation.x, rotation.y, rotation.z, rotation.w}));
+        lastRotation = new Quaternionf(rotation);
         return this;
     }
 
@@ -101,8 +136,7 @@ public class EntityAnimator {
      * @return This object, allowing calls to methods in this class to be chained.
      */
     public EntityAnimator opacity(float opacity) {
-        ObjectAnimator animator = ObjectAnimator.ofFloat(target, "opacity", lastOpacity, opacity);
-        animators.add(animator);
+        steps.add(new Step(TweenEngine.OPACITY, new float[]{lastOpacity}, new float[]{opacity}));
         lastOpacity = opacity;
         return this;
     }
@@ -110,7 +144,7 @@ public class EntityAnimator {
     /**
      * Set callback for animation.
      *
-     * @param callback Action which will be called after animation.
+     * @param callback Action which will be called on GL thread after animation.
      * @return This object, allowing calls to methods in this class to be chained.
      */
     public EntityAnimator onEnd(Runnable callback) {
@@ -119,8 +153,8 @@ public class EntityAnimator {
     }
 
     /**
-     * Sets the interpolator for the underlying animator that animates the requested properties.
-     * By default, the animator uses the default interpolator for ValueAnimator.
+     * Sets the interpolator that animates the requested properties.
+     * By default, the same interpolator as ValueAnimator's default is used.
      * Calling this method will cause the declared object to be used instead.
      *
      * @param interpolator The TimeInterpolator to be used for ensuing property animations. A value of null will result in linear interpolation.
@@ -132,8 +166,8 @@ public class EntityAnimator {
     }
 
     /**
-     * Sets the duration for the underlying animator that animates the requested properties.
-     * By default, the animator uses the default value for ValueAnimator.
+     * Sets the duration for the requested properties.
+     * By default, the same value as ValueAnimator's default is used.
      * Calling this method will cause the declared value to be used instead.
      *
      * @param duration The length of ensuing property animations, in milliseconds. The value cannot be negative.
@@ -154,7 +188,7 @@ public class EntityAnimator {
     }
 
     /**
-     * Sets the startDelay for the underlying animator that animates the requested properties.
+     * Sets the startDelay for the requested properties.
      *
      * @param delay The delay of ensuing property animations, in milliseconds. The value cannot be negative.
      * @return This object, allowing calls to methods in this class to be chained.
@@ -165,30 +199,96 @@ public class EntityAnimator {
     }
 
     /**
-     * Starts animation.
+     * Starts animation. If this is already running, it is restarted from the beginning.
+     * This can be called from any thread.
      */
     public void start() {
 
-        if (animator == null) {
-            setupAnimator();
+        final MeganekkoApp app = target.getApp();
+        if (!app.isUpdateThread()) {
+            app.runOnGlThread(new Runnable() {
+                @Override
+                public void run() {
+                    start();
+                }
+            });
+            return;
         }
 
-        target.getApp().animate(animator, callback);
+        final TweenEngine engine = app.getTweenEngine();
+        engine.cancel(group);
+
+        if (steps.isEmpty()) {
+            group = -1;
+            if (callback != null) app.runOnGlThread(callback);
+            return;
+        }
+
+        final float durationSeconds = (duration >= 0 ? duration : DEFAULT_DURATION) / 1000.0f;
+        float delaySeconds = Math.max(delay, 0) / 1000.0f;
+
+        group = engine.begin(callback);
+        for (Step step : steps) {
+            engine.add(group, target, step.property, step.from, step.to, delaySeconds, durationSeconds, interpolator);
+            if (sequential) {
+                delaySeconds += durationSeconds;
+            }
+        }
     }
 
     /**
      * Cancels all property animations that are currently running or pending.
+     * This can be called from any thread.
      */
     public void cancel() {
 
-        if (animator == null) return;
+        final MeganekkoApp app = target.getApp();
+        if (!app.isUpdateThread()) {
+            app.runOnGlThread(new Runnable() {
+                @Override
+                public void run() {
+                    cancel();
+                }
+            });
+            return;
+        }
 
-        target.getApp().cancel(animator, null);
+        app.getTweenEngine().cancel(group);
+        group = -1;
+    }
+
+    /**
+     * @return {@code true} if animation is started and not finished yet. Call this on GL thread.
+     */
+    public boolean isRunning() {
+        return target.getApp().getTweenEngine().isRunning(group);
     }
 
     private void setupAnimator() {
         this.animator = new AnimatorSet();
 
+        final List<Animator> animators = new ArrayList<>();
+        for (Step step : steps) {
+            switch (step.property) {
+                case TweenEngine.POSITION:
+                    animators.add(vectorAnimator(step, new PositionUpdateListener(target)));
+                    break;
+                case TweenEngine.SCALE:
+                    animators.add(vectorAnimator(step, new ScaleUpdateListener(target)));
+                    break;
+                case TweenEngine.ROTATION:
+                    ValueAnimator rotation = ValueAnimator.ofObject(new QuaternionEvaluator(),
+                            new Quaternionf(step.from[0], step.from[1], step.from[2], step.from[3]),
+                            new Quaternionf(step.to[0], step.to[1], step.to[2], step.to[3]));
+                    rotation.addUpdateListener(new RotationUpdateListener(target));
+                    animators.add(rotation);
+                    break;
+                case TweenEngine.OPACITY:
+                    animators.add(ObjectAnimator.ofFloat(target, "opacity", step.from[0], step.to[0]));
+                    break;
+            }
+        }
+
         if (sequential) {
             animator.playSequentially(animators);
         } else {
@@ -199,7 +299,7 @@ public class EntityAnimator {
             animator.setDuration(duration);
         }
 
-        if (interpolator != null) {
+        if (interpolator != DEFAULT_INTERPOLATOR) {
             animator.setInterpolator(interpolator);
         }
 
@@ -208,11 +308,21 @@ public class EntityAnimator {
         }
     }
 
+    private static ValueAnimator vectorAnimator(Step step, TransformUpdateListener listener) {
+        ValueAnimator animator = ValueAnimator.ofObject(new VectorEvaluator(),
+                new Vector3f(step.from[0], step.from[1], step.from[2]),
+                new Vector3f(step.to[0], step.to[1], step.to[2]));
+        animator.addUpdateListener(listener);
+        return animator;
+    }
+
     /**
-     * Get {@code Animator}.
+     * Get {@code Animator}. Returned animator is independent from {@link #start()} and runs on UI thread.
      *
      * @return Animator
+     * @deprecated Animation runs on GL thread with {@link TweenEngine} now. Use {@link #start()} and {@link #cancel()}.
      */
+    @Deprecated
     public Animator getAnimator() {
         if (animator == null) {
             setupAnimator();
@@ -0,0 +1,318 @@
+package org.meganekkovr.animation;
+
+import android.animation.TimeInterpolator;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.joml.Quaternionf;
+import org.meganekkovr.Entity;
+import org.meganekkovr.FrameInput;
+
+import java.util.Arrays;
+
+/**
+ * Runs tweens of {@link Entity} properties on GL thread. This is ticked from
+ * {@link org.meganekkovr.MeganekkoApp#update(FrameInput)} with predicted display time, so animated values
+ * are always in sync with rendered frames. Tweens are stored in primitive arrays which are reused,
+ * and updating doesn't allocate any objects.
+ * <p>
+ * Tweens are added to a group which is created with {@link #begin(Runnable)}. Group's callback is called
+ * when all tweens in the group are finished. Usually {@link EntityAnimator} is used instead of this.
+ * <p>
+ * All methods must be called on GL thread, or simulation thread in pipelined mode.
+ * See {@link org.meganekkovr.MeganekkoApp#isUpdateThread()}.
+ */
+public class TweenEngine {
+
+    public static final int POSITION = 0;
+    public static final int SCALE = 1;
+    public static final int ROTATION = 2;
+    public static final int OPACITY = 3;
+
+    /**
+     * Number of floats for a value of any property.
+     */
+    private static final int VALUE_SIZE = 4;
+
+    // Tweens
+    private Entity[] targets = new Entity[64];
+    private int[] properties = new int[64];
+    private float[] from = new float[64 * VALUE_SIZE];
+    private float[] to = new float[64 * VALUE_SIZE];
+    private double[] startTimes = new double[64];
+    private float[] delays = new float[64];
+    private float[] durations = new float[64];
+    private TimeInterpolator[] interpolators = new TimeInterpolator[64];
+    private int[] tweenGroups = new int[64];
+    private int count;
+
+    // Groups
+    private int[] generations = new int[16];
+    private int[] remaining = new int[16];
+    private Runnable[] callbacks = new Runnable[16];
+    private int[] freeGroups = new int[16];
+    private int freeGroupCount;
+    private int groupCount;
+    private int[] finished = new int[16];
+
+    private final Quaternionf q0 = new Quaternionf();
+    private final Quaternionf q1 = new Quaternionf();
+
+    /**
+     * Create new group of tweens.
+     *
+     * @param callback Called on update thread when all tweens in the group are finished.
+     *                 This is <b>not</b> called when group is canceled.
+     * @return Handle of group
+     */
+    public long begin(@Nullable Runnable callback) {
+
+        int group;
+        if (freeGroupCount > 0) {
+            group = freeGroups[--freeGroupCount];
+        } else {
+            if (groupCount == generations.length) {
+                int capacity = groupCount * 2;
+                generations = Arrays.copyOf(generations, capacity);
+                remaining = Arrays.copyOf(remaining, capacity);
+                callbacks = Arrays.copyOf(callbacks, capacity);
+                freeGroups = Arrays.copyOf(freeGroups, capacity);
+                finished = Arrays.copyOf(finished, capacity);
+            }
+            group = groupCount++;
+        }
+
+        remaining[group] = 0;
+        callbacks[group] = callback;
+        return handle(group);
+    }
+
+    /**
+     * Add tween to group.
+     *
+     * @param group        Handle returned from {@link #begin(Runnable)}
+     * @param target       Entity to be animated
+     * @param property     {@link #POSITION}, {@link #SCALE}, {@link #ROTATION} or {@link #OPACITY}.
+     * @param fromValue    Start value. xyz for position and scale, xyzw for rotation and one value for opacity.
+     * @param toValue      End value.
+     * @param delay        Delay in seconds from next frame.
+     * @param duration     Duration in seconds.
+     * @param interpolator Interpolator or {@code null} for linear interpolation.
+     */
+    public void add(long group, @NonNull Entity target, int property, @NonNull float[] fromValue, @NonNull float[] toValue,
+                    float delay, float duration, @Nullable TimeInterpolator interpolator) {
+
+        final int index = checkGroup(group);
+        if (index < 0) {
+            throw new IllegalArgumentException("Group is already finished or canceled.");
+        } else if (property < POSITION || property > OPACITY) {
+            throw new IllegalArgumentException("Invalid property " + property);
+        }
+
+        if (count == targets.length) {
+            grow(count * 2);
+        }
+
+        final int size = valueSize(property);
+        targets[count] = target;
+        properties[count] = property;
+        System.arraycopy(fromValue, 0, from, count * VALUE_SIZE, size);
+        System.arraycopy(toValue, 0, to, count * VALUE_SIZE, size);
+        startTimes[count] = Double.NaN;
+        delays[count] = Math.max(delay, 0);
+        durations[count] = Math.max(duration, 0);
+        interpolators[count] = interpolator;
+        tweenGroups[count] = index;
+        ++count;
+
+        ++remaining[index];
+    }
+
+    /**
+     * Cancel all tweens in group. Group's callback will not be called.
+     *
+     * @param group Handle returned from {@link #begin(Runnable)}
+     */
+    public void cancel(long group) {
+
+        final int index = checkGroup(group);
+        if (index < 0) return;
+
+        int w = 0;
+        for (int r = 0; r < count; ++r) {
+            if (tweenGroups[r] != index) {
+                move(r, w++);
+            }
+        }
+        clear(w, count);
+        count = w;
+
+        releaseGroup(index);
+    }
+
+    /**
+     * @param group Handle returned from {@link #begin(Runnable)}
+     * @return {@code true} if group has tweens which are not finished yet.
+     */
+    public boolean isRunning(long group) {
+        final int index = checkGroup(group);
+        return index >= 0 && remaining[index] > 0;
+    }
+
+    /**
+     * @return Number of tweens which are not finished.
+     */
+    public int getActiveTweenCount() {
+        return count;
+    }
+
+    /**
+     * Called from {@link org.meganekkovr.MeganekkoApp#update(FrameInput)}.
+     *
+     * @param frame Frame information
+     */
+    public void update(FrameInput frame) {
+
+        final double time = frame.getPredictedDisplayTimeInSeconds();
+        int finishedCount = 0;
+
+        // Tweens are compacted in place to keep order.
+        // Later tween for same property wins like sequential animation expects.
+        int w = 0;
+        for (int r = 0; r < count; ++r) {
+
+            if (Double.isNaN(startTimes[r])) {
+                startTimes[r] = time + delays[r];
+            }
+
+            final double elapsed = time - startTimes[r];
+            if (elapsed < 0) {
+                move(r, w++);
+                continue;
+            }
+
+            final boolean end = elapsed >= durations[r];
+            float fraction = end ? 1 : (float) (elapsed / durations[r]);
+            if (interpolators[r] != null) {
+                fraction = interpolators[r].getInterpolation(fraction);
+            }
+            apply(r, fraction);
+
+            if (end) {
+                final int group = tweenGroups[r];
+                if (--remaining[group] == 0) {
+                    finished[finishedCount++] = group;
+                }
+            } else {
+                move(r, w++);
+            }
+        }
+        clear(w, count);
+        count = w;
+
+        // Callbacks may add new tweens
+        for (int i = 0; i < finishedCount; ++i) {
+            final int group = finished[i];
+            final Runnable callback = callbacks[group];
+            releaseGroup(group);
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    private void apply(int index, float fraction) {
+
+        final Entity target = targets[index];
+        final float[] a = from;
+        final float[] b = to;
+        final int i = index * VALUE_SIZE;
+
+        switch (properties[index]) {
+            case POSITION:
+                target.setPosition(lerp(a[i], b[i], fraction), lerp(a[i + 1], b[i + 1], fraction), lerp(a[i + 2], b[i + 2], fraction));
+                break;
+            case SCALE:
+                target.setScale(lerp(a[i], b[i], fraction), lerp(a[i + 1], b[i + 1], fraction), lerp(a[i + 2], b[i + 2], fraction));
+                break;
+            case ROTATION:
+                q0.set(a[i], a[i + 1], a[i + 2], a[i + 3]);
+                q1.set(b[i], b[i + 1], b[i + 2], b[i + 3]);
+                target.setRotation(q0.slerp(q1, fraction));
+                break;
+            case OPACITY:
+                target.setOpacity(lerp(a[i], b[i], fraction));
+                break;
+        }
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+
+    private static int valueSize(int property) {
+        switch (property) {
+            case ROTATION:
+                return 4;
+            case OPACITY:
+                return 1;
+            default:
+                return 3;
+        }
+    }
+
+    private void move(int src, int dst) {
+        if (src == dst) return;
+        targets[dst] = targets[src];
+        properties[dst] = properties[src];
+        System.arraycopy(from, src * VALUE_SIZE, from, dst * VALUE_SIZE, VALUE_SIZE);
+        System.arraycopy(to, src * VALUE_SIZE, to, dst * VALUE_SIZE, VALUE_SIZE);
+        startTimes[dst] = startTimes[src];
+        delays[dst] = delays[src];
+        durations[dst] = durations[src];
+        interpolators[dst] = interpolators[src];
+        tweenGroups[dst] = tweenGroups[src];
+    }
+
+    /**
+     * Release references of removed tweens.
+     */
+    private void clear(int start, int end) {
+        Arrays.fill(targets, start, end, null);
+        Arrays.fill(interpolators, start, end, null);
+    }
+
+    private void grow(int capacity) {
+        targets = Arrays.copyOf(targets, capacity);
+        properties = Arrays.copyOf(properties, capacity);
+        from = Arrays.copyOf(from, capacity * VALUE_SIZE);
+        to = Arrays.copyOf(to, capacity * VALUE_SIZE);
+        startTimes = Arrays.copyOf(startTimes, capacity);
+        delays = Arrays.copyOf(delays, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        interpolators = Arrays.copyOf(interpolators, capacity);
+        tweenGroups = Arrays.copyOf(tweenGroups, capacity);
+    }
+
+    private long handle(int group) {
+        return ((long) generations[group] << 32) | group;
+    }
+
+    /**
+     * @return Index of group or -1 if handle is stale.
+     */
+    private int checkGroup(long handle) {
+        final int group = (int) handle;
+        if (group < 0 || group >= groupCount || generations[group] != (int) (handle >>> 32)) {
+            return -1;
+        }
+        return group;
+    }
+
+    private void releaseGroup(int group) {
+        ++generations[group];
+        callbacks[group] = null;
+        remaining[group] = 0;
+        freeGroups[freeGroupCount++] = group;
+    }
+}
@@ -0,0 +1,264 @@
+package org.meganekkovr.mesh;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.support.annotation.NonNull;
+
+import org.joml.Vector3f;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Mesh in compact binary format. Vertex and index data are kept in direct buffers
+ * which are passed to native geometry creation as they are. Vertices are in {@link VertexLayout#interleaved(boolean, boolean)} layout.
+ * Files are memory-mapped, so loading does not create intermediate Java arrays.
+ * Asset must not be compressed to be mapped. Add {@code aaptOptions { noCompress 'mgnm' }}
+ * to build.gradle. Compressed asset is read into a direct buffer.
+ * <p/>
+ * Format (little endian):
+ * <pre>
+ * header  : int magic "MGNM", u16 version, u16 flags, int vertex count, int index count,
+ *           float min x, y, z, float max x, y, z
+ * vertices: { float position x, y, z, [float normal x, y, z], float u, v } * vertex count
+ * indices : { u16 or int index } * index count
+ * </pre>
+ * Normals exist if {@link #FLAG_NORMALS} is set. Indices are 32-bit if {@link #FLAG_INDEX32} is set.
+ * Use {@link #write(Mesh, OutputStream)} to convert {@link Mesh}, or {@link MeshCache} to convert OBJ on first load.
+ */
+public final class BinaryMesh {
+
+    public static final String EXTENSION = ".mgnm";
+    static final int MAGIC = 0x4D474E4D;
+    static final int VERSION = 1;
+    static final int FLAG_NORMALS = 1;
+    static final int FLAG_INDEX32 = 2;
+    static final int HEADER_SIZE = 40;
+
+    private final ByteBuffer vertices;
+    private final ByteBuffer indices;
+    private final int vertexCount;
+    private final int indexCount;
+    private final boolean normals;
+    private final boolean index32;
+    private final float[] bounds = new float[6];
+
+    private BinaryMesh(ByteBuffer buffer) throws IOException {
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary mesh");
+        } else if (buffer.getShort(4) != VERSION) {
+            throw new IOException("Unsupported binary mesh version " + buffer.getShort(4));
+        }
+
+        final int flags = buffer.getShort(6);
+        normals = (flags & FLAG_NORMALS) != 0;
+        index32 = (flags & FLAG_INDEX32) != 0;
+        vertexCount = buffer.getInt(8);
+        indexCount = buffer.getInt(12);
+        for (int i = 0; i < 6; ++i) {
+            bounds[i] = buffer.getFloat(16 + i * 4);
+        }
+
+        final long vertexSize = (long) vertexCount * getLayout().getVertexSize();
+        final long indexSize = (long) indexCount * (index32 ? 4 : 2);
+        if (vertexCount < 0 || indexCount < 0 || HEADER_SIZE + vertexSize + indexSize > buffer.limit()) {
+            throw new IOException("Broken binary mesh");
+        }
+
+        vertices = slice(buffer, HEADER_SIZE, (int) vertexSize);
+        indices = slice(buffer, HEADER_SIZE + (int) vertexSize, (int) indexSize);
+    }
+
+    /**
+     * Load binary mesh from buffer. Buffer is copied into direct buffer if it is not direct.
+     *
+     * @param buffer Binary mesh
+     * @return Binary mesh
+     * @throws IOException If buffer is not valid binary mesh.
+     */
+    @NonNull
+    public static BinaryMesh load(@NonNull ByteBuffer buffer) throws IOException {
+
+        if (!buffer.isDirect()) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(buffer.remaining());
+            direct.put(buffer.duplicate());
+            direct.flip();
+            buffer = direct;
+        }
+
+        return new BinaryMesh(buffer);
+    }
+
+    /**
+     * Map binary mesh file to memory.
+     *
+     * @param file Binary mesh file
+     * @return Binary mesh
+     * @throws IOException If file cannot be read or is not valid binary mesh.
+     */
+    @NonNull
+    public static BinaryMesh load(@NonNull File file) throws IOException {
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+            return new BinaryMesh(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Map binary mesh asset to memory.
+     *
+     * @param context   Context
+     * @param assetName Asset name of binary mesh
+     * @return Binary mesh
+     * @throws IOException If asset cannot be read or is not valid binary mesh.
+     */
+    @NonNull
+    public static BinaryMesh loadAsset(@NonNull Context context, @NonNull String assetName) throws IOException {
+
+        try (AssetFileDescriptor afd = context.getAssets().openFd(assetName);
+             FileInputStream stream = afd.createInputStream()) {
+            return new BinaryMesh(stream.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getDeclaredLength()));
+        } catch (FileNotFoundException e) {
+
+            // Asset is compressed or missing. Throws FileNotFoundException if missing.
+            try (InputStream stream = context.getAssets().open(assetName)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[64 * 1024];
+                int len;
+                while ((len = stream.read(buf)) != -1) {
+                    out.write(buf, 0, len);
+                }
+                return load(ByteBuffer.wrap(out.toByteArray()));
+            }
+        }
+    }
+
+    /**
+     * Convert mesh to binary mesh. Indices are written in 16-bit if mesh has up to 65536 vertices.
+     *
+     * @param mesh Mesh
+     * @param out  Destination. This is not closed.
+     * @throws IOException If failed to write.
+     */
+    public static void write(@NonNull Mesh mesh, @NonNull OutputStream out) throws IOException {
+
+        final float[] positions = mesh.getPositions();
+        final float[] normals = mesh.getNormals();
+        final float[] uvs = mesh.getUvs();
+        final int[] triangles = mesh.getTriangles();
+        final int vertexCount = mesh.getVertexCount();
+        final boolean index32 = vertexCount > 65536;
+        final int stride = VertexLayout.interleaved(normals != null, false).getVertexSize();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + vertexCount * stride + triangles.length * (index32 ? 4 : 2));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Header
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) ((normals != null ? FLAG_NORMALS : 0) | (index32 ? FLAG_INDEX32 : 0)));
+        buffer.putInt(vertexCount);
+        buffer.putInt(triangles.length);
+
+        Vector3f min = new Vector3f(Float.POSITIVE_INFINITY);
+        Vector3f max = new Vector3f(Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < vertexCount; ++i) {
+            float x = positions[i * 3];
+            float y = positions[i * 3 + 1];
+            float z = positions[i * 3 + 2];
+            min.set(Math.min(min.x, x), Math.min(min.y, y), Math.min(min.z, z));
+            max.set(Math.max(max.x, x), Math.max(max.y, y), Math.max(max.z, z));
+        }
+        if (vertexCount == 0) {
+            min.zero();
+            max.zero();
+        }
+        buffer.putFloat(min.x).putFloat(min.y).putFloat(min.z);
+        buffer.putFloat(max.x).putFloat(max.y).putFloat(max.z);
+
+        // Vertices
+        for (int i = 0; i < vertexCount; ++i) {
+            buffer.putFloat(positions[i * 3]).putFloat(positions[i * 3 + 1]).putFloat(positions[i * 3 + 2]);
+            if (normals != null) {
+                buffer.putFloat(normals[i * 3]).putFloat(normals[i * 3 + 1]).putFloat(normals[i * 3 + 2]);
+            }
+            buffer.putFloat(uvs[i * 2]).putFloat(uvs[i * 2 + 1]);
+        }
+
+        // Indices
+        for (int index : triangles) {
+            if (index32) {
+                buffer.putInt(index);
+            } else {
+                buffer.putShort((short) index);
+            }
+        }
+
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int size) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + size);
+        slice.position(offset);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return Interleaved vertex data. Read only direct buffer which shares content with mapped file.
+     */
+    @NonNull
+    public ByteBuffer getVertices() {
+        return vertices.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return Index data. Read only direct buffer which shares content with mapped file.
+     */
+    @NonNull
+    public ByteBuffer getIndices() {
+        return indices.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    public boolean hasNormals() {
+        return normals;
+    }
+
+    public boolean isIndex32() {
+        return index32;
+    }
+
+    /**
+     * @return Layout of {@link #getVertices()}. Vertices are interleaved and have no colors.
+     */
+    @NonNull
+    public VertexLayout getLayout() {
+        return VertexLayout.interleaved(normals, false);
+    }
+
+    public Vector3f getBoundsMin(Vector3f dest) {
+        return dest.set(bounds[0], bounds[1], bounds[2]);
+    }
+
+    public Vector3f getBoundsMax(Vector3f dest) {
+        return dest.set(bounds[3], bounds[4], bounds[5]);
+    }
+}
@@ -0,0 +1,41 @@
+package org.meganekkovr.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Growable float array without boxing.
+ */
+final class FloatList {
+
+    private float[] values;
+    private int size;
+
+    FloatList(int capacity) {
+        values = new float[Math.max(capacity, 16)];
+    }
+
+    void add(float value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    float get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copy values to array.
+     *
+     * @param dest   Destination array
+     * @param offset Offset in destination array
+     */
+    void copyTo(float[] dest, int offset) {
+        System.arraycopy(values, 0, dest, offset, size);
+    }
+}
@@ -0,0 +1,69 @@
+package org.meganekkovr.mesh;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Triangle mesh in primitive arrays. Each vertex has position and UV, and optionally normal.
+ * This can be passed to {@link org.meganekkovr.GeometryComponent#build(Mesh)}.
+ */
+public final class Mesh {
+
+    private final float[] positions;
+    private final float[] normals;
+    private final float[] uvs;
+    private final int[] triangles;
+
+    /**
+     * @param positions Positions. {x, y, z} per vertex.
+     * @param normals   Normals. {x, y, z} per vertex. Can be {@code null}.
+     * @param uvs       UVs. {u, v} per vertex.
+     * @param triangles Vertex indices. 3 indices per triangle.
+     */
+    public Mesh(@NonNull float[] positions, @Nullable float[] normals, @NonNull float[] uvs, @NonNull int[] triangles) {
+
+        final int vertexCount = positions.length / 3;
+        if (positions.length % 3 != 0) {
+            throw new IllegalArgumentException("positions element count must be multiple of 3.");
+        } else if (normals != null && normals.length != vertexCount * 3) {
+            throw new IllegalArgumentException("normals element count must be " + vertexCount * 3 + ".");
+        } else if (uvs.length != vertexCount * 2) {
+            throw new IllegalArgumentException("uvs element count must be " + vertexCount * 2 + ".");
+        } else if (triangles.length % 3 != 0) {
+            throw new IllegalArgumentException("triangles element count must be multiple of 3.");
+        }
+
+        this.positions = positions;
+        this.normals = normals;
+        this.uvs = uvs;
+        this.triangles = triangles;
+    }
+
+    @NonNull
+    public float[] getPositions() {
+        return positions;
+    }
+
+    @Nullable
+    public float[] getNormals() {
+        return normals;
+    }
+
+    @NonNull
+    public float[] getUvs() {
+        return uvs;
+    }
+
+    @NonNull
+    public int[] getTriangles() {
+        return triangles;
+    }
+
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    public int getTriangleCount() {
+        return triangles.length / 3;
+    }
+}
@@ -0,0 +1,143 @@
+package org.meganekkovr.mesh;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk cache of {@link BinaryMesh} converted from OBJ.
+ * Cache files are keyed by SHA-1 of OBJ content, so OBJ is parsed only on first load
+ * and changed OBJ is converted again.
+ * <pre>
+ * MeshCache cache = new MeshCache(context);
+ * BinaryMesh mesh = cache.loadObj(context.getAssets().open("model.obj"));
+ * geometry.build(mesh);
+ * </pre>
+ */
+public class MeshCache {
+
+    private static final String TAG = "MeshCache";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final File directory;
+
+    /**
+     * Create cache in application's cache directory.
+     *
+     * @param context Context
+     */
+    public MeshCache(@NonNull Context context) {
+        this(new File(context.getCacheDir(), "meshes"));
+    }
+
+    /**
+     * @param directory Directory for cache files. This is created if not exists.
+     */
+    public MeshCache(@NonNull File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Load OBJ from cache, or convert OBJ and store it to cache if not cached.
+     *
+     * @param in OBJ stream. This is read to end but not closed.
+     * @return Binary mesh mapped from cache file
+     * @throws IOException If stream cannot be read, OBJ is invalid, or cache file cannot be written.
+     */
+    @NonNull
+    public BinaryMesh loadObj(@NonNull InputStream in) throws IOException {
+
+        final byte[] data = readFully(in);
+        final File file = new File(directory, hash(data) + BinaryMesh.EXTENSION);
+
+        if (file.isFile()) {
+            try {
+                return BinaryMesh.load(file);
+            } catch (IOException e) {
+                Log.w(TAG, "Broken cache " + file + ". Convert again.", e);
+                if (!file.delete()) {
+                    Log.w(TAG, "Cannot delete " + file);
+                }
+            }
+        }
+
+        final Mesh mesh = ObjLoader.load(data, Runtime.getRuntime().availableProcessors());
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        // Write to temporary file to avoid other readers see incomplete file
+        final File tmpFile = File.createTempFile("mesh", ".tmp", directory);
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+                BinaryMesh.write(mesh, out);
+                out.getFD().sync();
+            }
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmpFile + " to " + file);
+            }
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete()) {
+                Log.w(TAG, "Cannot delete " + tmpFile);
+            }
+        }
+
+        return BinaryMesh.load(file);
+    }
+
+    /**
+     * Delete all cache files.
+     */
+    public void clear() {
+
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            if (file.getName().endsWith(BinaryMesh.EXTENSION) && !file.delete()) {
+                Log.w(TAG, "Cannot delete " + file);
+            }
+        }
+    }
+
+    /**
+     * SHA-1 of content and format version.
+     */
+    private static String hash(byte[] data) {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        digest.update((byte) BinaryMesh.VERSION);
+        byte[] bytes = digest.digest(data);
+
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[64 * 1024];
+        int len;
+        while ((len = in.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+}
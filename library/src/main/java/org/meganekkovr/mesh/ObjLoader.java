@@ -0,0 +1,260 @@
+package org.meganekkovr.mesh;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads Wavefront OBJ into {@link Mesh}.
+ * Polygons are triangulated as triangle fans. Same (position, uv, normal) index tuples
+ * are merged into one vertex. V coordinates of UVs are flipped to match textures of
+ * {@link org.meganekkovr.SurfaceRendererComponent}. Materials and groups are ignored.
+ * <pre>
+ * Mesh mesh = ObjLoader.load(context.getResources().openRawResource(R.raw.model));
+ * GeometryComponent geometry = new GeometryComponent();
+ * geometry.build(mesh);
+ * </pre>
+ */
+public final class ObjLoader {
+
+    private ObjLoader() {
+    }
+
+    /**
+     * Parse OBJ from stream on current thread. Stream is read progressively and is not closed.
+     *
+     * @param in OBJ stream
+     * @return Mesh
+     * @throws IOException If stream cannot be read or OBJ is invalid.
+     */
+    @NonNull
+    public static Mesh load(@NonNull InputStream in) throws IOException {
+        List<ObjParser.Chunk> chunks = new ArrayList<>(1);
+        chunks.add(new ObjParser(in).parse());
+        return build(chunks);
+    }
+
+    /**
+     * Parse OBJ from stream with multiple threads. Whole stream is read into memory first.
+     * This is faster than {@link #load(InputStream)} for large files.
+     *
+     * @param in      OBJ stream
+     * @param threads Number of threads used for parsing.
+     * @return Mesh
+     * @throws IOException If stream cannot be read or OBJ is invalid.
+     */
+    @NonNull
+    public static Mesh load(@NonNull InputStream in, int threads) throws IOException {
+
+        if (threads <= 1) return load(in);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[64 * 1024];
+        int len;
+        while ((len = in.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+
+        return load(out.toByteArray(), threads);
+    }
+
+    /**
+     * Parse OBJ data with multiple threads.
+     *
+     * @param data    OBJ data
+     * @param threads Number of threads used for parsing.
+     * @return Mesh
+     * @throws IOException If OBJ is invalid.
+     */
+    @NonNull
+    public static Mesh load(@NonNull final byte[] data, int threads) throws IOException {
+
+        // Split data at line breaks
+        final int chunkCount = Math.max(1, Math.min(threads, data.length / (64 * 1024)));
+        final int[] bounds = new int[chunkCount + 1];
+        bounds[chunkCount] = data.length;
+        for (int i = 1; i < chunkCount; ++i) {
+            int pos = Math.max(bounds[i - 1], (int) ((long) data.length * i / chunkCount));
+            while (pos < data.length && data[pos - 1] != '\n') {
+                ++pos;
+            }
+            bounds[i] = pos;
+        }
+
+        if (chunkCount == 1) {
+            List<ObjParser.Chunk> chunks = new ArrayList<>(1);
+            chunks.add(new ObjParser(data, 0, data.length).parse());
+            return build(chunks);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(chunkCount);
+        try {
+            List<Future<ObjParser.Chunk>> futures = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; ++i) {
+                final int start = bounds[i];
+                final int end = bounds[i + 1];
+                futures.add(executor.submit(new Callable<ObjParser.Chunk>() {
+                    @Override
+                    public ObjParser.Chunk call() throws Exception {
+                        return new ObjParser(data, start, end).parse();
+                    }
+                }));
+            }
+
+            List<ObjParser.Chunk> chunks = new ArrayList<>(chunkCount);
+            for (Future<ObjParser.Chunk> future : futures) {
+                chunks.add(future.get());
+            }
+
+            return build(chunks);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Merge chunks, de-duplicate vertices and triangulate faces.
+     */
+    private static Mesh build(List<ObjParser.Chunk> chunks) throws IOException {
+
+        // Concatenate source attributes
+        int positionSize = 0;
+        int uvSize = 0;
+        int normalSize = 0;
+        int cornerCount = 0;
+        for (ObjParser.Chunk chunk : chunks) {
+            positionSize += chunk.positions.size();
+            uvSize += chunk.uvs.size();
+            normalSize += chunk.normals.size();
+            cornerCount += chunk.corners.size() / 3;
+        }
+
+        final float[] srcPositions = new float[positionSize];
+        final float[] srcUvs = new float[uvSize];
+        final float[] srcNormals = new float[normalSize];
+        {
+            int p = 0, t = 0, n = 0;
+            for (ObjParser.Chunk chunk : chunks) {
+                chunk.positions.copyTo(srcPositions, p);
+                chunk.uvs.copyTo(srcUvs, t);
+                chunk.normals.copyTo(srcNormals, n);
+                p += chunk.positions.size();
+                t += chunk.uvs.size();
+                n += chunk.normals.size();
+            }
+        }
+
+        final int positionCount = positionSize / 3;
+        final int uvCount = uvSize / 2;
+        final int normalCount = normalSize / 3;
+        final boolean hasNormals = normalCount > 0;
+
+        final VertexTupleMap vertexMap = new VertexTupleMap(cornerCount / 2);
+        final FloatList positions = new FloatList(cornerCount * 3 / 2);
+        final FloatList uvs = new FloatList(cornerCount);
+        final FloatList normals = hasNormals ? new FloatList(cornerCount * 3 / 2) : null;
+        final IntList triangles = new IntList(cornerCount * 2);
+        int[] face = new int[16];
+
+        int positionOffset = 0;
+        int uvOffset = 0;
+        int normalOffset = 0;
+
+        for (ObjParser.Chunk chunk : chunks) {
+
+            final IntList corners = chunk.corners;
+            int corner = 0;
+
+            for (int f = 0, faceCount = chunk.faceSizes.size(); f < faceCount; ++f) {
+
+                final int size = chunk.faceSizes.get(f);
+                if (face.length < size) {
+                    face = new int[size];
+                }
+
+                // Find or create vertices
+                for (int i = 0; i < size; ++i, corner += 3) {
+
+                    int v = ObjParser.toAbsoluteIndex(corners.get(corner), positionOffset);
+                    int vt = ObjParser.toAbsoluteIndex(corners.get(corner + 1), uvOffset);
+                    int vn = ObjParser.toAbsoluteIndex(corners.get(corner + 2), normalOffset);
+
+                    if (v < 0 || v >= positionCount) throw new IOException("Invalid position index " + (v + 1));
+                    if (vt >= uvCount) throw new IOException("Invalid uv index " + (vt + 1));
+                    if (vn >= normalCount) throw new IOException("Invalid normal index " + (vn + 1));
+
+                    final int newIndex = vertexMap.size();
+                    final int index = vertexMap.getOrPut(v, vt, vn, newIndex);
+                    if (index == newIndex) {
+                        positions.add(srcPositions[v * 3]);
+                        positions.add(srcPositions[v * 3 + 1]);
+                        positions.add(srcPositions[v * 3 + 2]);
+
+                        if (vt >= 0) {
+                            uvs.add(srcUvs[vt * 2]);
+                            uvs.add(1 - srcUvs[vt * 2 + 1]);
+                        } else {
+                            uvs.add(0);
+                            uvs.add(0);
+                        }
+
+                        if (hasNormals) {
+                            if (vn >= 0) {
+                                normals.add(srcNormals[vn * 3]);
+                                normals.add(srcNormals[vn * 3 + 1]);
+                                normals.add(srcNormals[vn * 3 + 2]);
+                            } else {
+                                normals.add(0);
+                                normals.add(0);
+                                normals.add(0);
+                            }
+                        }
+                    }
+
+                    face[i] = index;
+                }
+
+                // Triangulate as fan
+                for (int i = 1; i < size - 1; ++i) {
+                    triangles.add(face[0]);
+                    triangles.add(face[i]);
+                    triangles.add(face[i + 1]);
+                }
+            }
+
+            positionOffset += chunk.positions.size() / 3;
+            uvOffset += chunk.uvs.size() / 2;
+            normalOffset += chunk.normals.size() / 3;
+        }
+
+        final int vertexCount = vertexMap.size();
+        final float[] positionArray = new float[vertexCount * 3];
+        final float[] uvArray = new float[vertexCount * 2];
+        positions.copyTo(positionArray, 0);
+        uvs.copyTo(uvArray, 0);
+
+        float[] normalArray = null;
+        if (hasNormals) {
+            normalArray = new float[vertexCount * 3];
+            normals.copyTo(normalArray, 0);
+        }
+
+        return new Mesh(positionArray, normalArray, uvArray, triangles.toArray());
+    }
+}
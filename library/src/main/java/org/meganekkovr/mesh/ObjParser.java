@@ -0,0 +1,325 @@
+package org.meganekkovr.mesh;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Hand written tokenizer for Wavefront OBJ. This reads {@code v}, {@code vt}, {@code vn} and {@code f} lines
+ * into primitive lists and ignores others. Numbers are parsed from bytes without creating Strings.
+ */
+final class ObjParser {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Base of encoded relative indices. See {@link Chunk}.
+     */
+    static final int RELATIVE_BASE = Integer.MIN_VALUE / 2;
+
+    /**
+     * Parsed data of a part of OBJ.
+     * Face indices are 1-based absolute indices, or {@code RELATIVE_BASE + n} for negative relative indices
+     * in OBJ where n is 1-based position from the start of this chunk (n &lt;= 0 refers previous chunks).
+     * {@code 0} means missing.
+     */
+    static final class Chunk {
+        final FloatList positions = new FloatList(1024);
+        final FloatList uvs = new FloatList(1024);
+        final FloatList normals = new FloatList(1024);
+
+        // 3 indices (v, vt, vn) per corner
+        final IntList corners = new IntList(4096);
+
+        // Number of corners per face
+        final IntList faceSizes = new IntList(1024);
+    }
+
+    private final InputStream in;
+    private final byte[] buf;
+    private int pos;
+    private int limit;
+    private int line = 1;
+
+    /**
+     * Parse from stream.
+     */
+    ObjParser(InputStream in) {
+        this.in = in;
+        this.buf = new byte[64 * 1024];
+    }
+
+    /**
+     * Parse a range of array.
+     */
+    ObjParser(byte[] data, int start, int end) {
+        this.in = null;
+        this.buf = data;
+        this.pos = start;
+        this.limit = end;
+    }
+
+    Chunk parse() throws IOException {
+
+        final Chunk chunk = new Chunk();
+
+        while (true) {
+
+            skipSpaces();
+            int c = peek();
+            if (c == -1) break;
+
+            if (c == 'v') {
+                ++pos;
+                c = peek();
+                if (c == ' ' || c == '\t') {
+                    chunk.positions.add(readFloat());
+                    chunk.positions.add(readFloat());
+                    chunk.positions.add(readFloat());
+                } else if (c == 't') {
+                    ++pos;
+                    chunk.uvs.add(readFloat());
+                    chunk.uvs.add(readFloat());
+                } else if (c == 'n') {
+                    ++pos;
+                    chunk.normals.add(readFloat());
+                    chunk.normals.add(readFloat());
+                    chunk.normals.add(readFloat());
+                }
+            } else if (c == 'f') {
+                ++pos;
+                c = peek();
+                if (c == ' ' || c == '\t') {
+                    readFace(chunk);
+                }
+            }
+
+            skipLine();
+        }
+
+        return chunk;
+    }
+
+    private void readFace(Chunk chunk) throws IOException {
+
+        final IntList corners = chunk.corners;
+        int count = 0;
+
+        while (true) {
+            skipSpaces();
+            int c = peek();
+            if (c == -1 || c == '\n' || c == '#') break;
+
+            int v = toChunkIndex(readInt(), chunk.positions.size() / 3);
+            int vt = 0;
+            int vn = 0;
+
+            if (peek() == '/') {
+                ++pos;
+                if (peek() != '/') {
+                    vt = toChunkIndex(readInt(), chunk.uvs.size() / 2);
+                }
+                if (peek() == '/') {
+                    ++pos;
+                    vn = toChunkIndex(readInt(), chunk.normals.size() / 3);
+                }
+            }
+
+            if (v == 0) throw error("Face has no position index");
+
+            corners.add(v);
+            corners.add(vt);
+            corners.add(vn);
+            ++count;
+        }
+
+        if (count >= 3) {
+            chunk.faceSizes.add(count);
+        } else if (count > 0) {
+            throw error("Face has less than 3 vertices");
+        }
+    }
+
+    /**
+     * Encode negative relative index to index relative to the start of chunk.
+     * Chunks are parsed in parallel and do not know count of elements in previous chunks.
+     */
+    private static int toChunkIndex(int index, int countInChunk) {
+        if (index < 0) {
+
+            // -1 refers last element. Too small index is clamped not to overflow, and rejected when decoded.
+            return RELATIVE_BASE + countInChunk + Math.max(index, RELATIVE_BASE) + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Decode index encoded by {@link #toChunkIndex(int, int)}.
+     *
+     * @param index       Encoded index
+     * @param chunkOffset Number of elements in previous chunks
+     * @return 0-based absolute index, or -1 if missing.
+     * @throws IOException If relative index refers before the first element.
+     */
+    static int toAbsoluteIndex(int index, int chunkOffset) throws IOException {
+        if (index == 0) return -1;
+        if (index < RELATIVE_BASE / 2) {
+            final int absolute = chunkOffset + (index - RELATIVE_BASE) - 1;
+            if (absolute < 0) throw new IOException("Relative index refers before the first element");
+            return absolute;
+        }
+        return index - 1;
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill()) return -1;
+        return buf[pos] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null) return false;
+
+        int len = in.read(buf, 0, buf.length);
+        if (len <= 0) return false;
+
+        pos = 0;
+        limit = len;
+        return true;
+    }
+
+    private void skipSpaces() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c != ' ' && c != '\t' && c != '\r') return;
+            ++pos;
+        }
+    }
+
+    private void skipLine() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == -1) return;
+            ++pos;
+            if (c == '\n') {
+                ++line;
+                return;
+            }
+        }
+    }
+
+    private int readInt() throws IOException {
+
+        skipSpaces();
+
+        boolean negative = false;
+        int c = peek();
+        if (c == '-') {
+            negative = true;
+            ++pos;
+        } else if (c == '+') {
+            ++pos;
+        }
+
+        int value = 0;
+        boolean hasDigit = false;
+        while (true) {
+            c = peek();
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+            hasDigit = true;
+            ++pos;
+        }
+
+        if (!hasDigit) throw error("Invalid index");
+
+        return negative ? -value : value;
+    }
+
+    private float readFloat() throws IOException {
+
+        skipSpaces();
+
+        boolean negative = false;
+        int c = peek();
+        if (c == '-') {
+            negative = true;
+            ++pos;
+        } else if (c == '+') {
+            ++pos;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean hasDigit = false;
+
+        // Integer part
+        while (true) {
+            c = peek();
+            if (c < '0' || c > '9') break;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) ++digits;
+            } else {
+                ++exponent;
+            }
+            hasDigit = true;
+            ++pos;
+        }
+
+        // Fraction part
+        if (c == '.') {
+            ++pos;
+            while (true) {
+                c = peek();
+                if (c < '0' || c > '9') break;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) ++digits;
+                    --exponent;
+                }
+                hasDigit = true;
+                ++pos;
+            }
+        }
+
+        if (!hasDigit) throw error("Invalid number");
+
+        // Exponent part
+        if (c == 'e' || c == 'E') {
+            ++pos;
+            boolean negativeExponent = false;
+            c = peek();
+            if (c == '-') {
+                negativeExponent = true;
+                ++pos;
+            } else if (c == '+') {
+                ++pos;
+            }
+
+            int e = 0;
+            while (true) {
+                c = peek();
+                if (c < '0' || c > '9') break;
+                if (e < 1000) e = e * 10 + (c - '0');
+                ++pos;
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+
+        double value = mantissa;
+        if (exponent > 0) {
+            value *= exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[exponent] : Math.pow(10, exponent);
+        } else if (exponent < 0) {
+            value /= -exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[-exponent] : Math.pow(10, -exponent);
+        }
+
+        return (float) (negative ? -value : value);
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + (in != null ? " at line " + line : ""));
+    }
+}
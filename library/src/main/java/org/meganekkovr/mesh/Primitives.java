@@ -0,0 +1,246 @@
+package org.meganekkovr.mesh;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Procedural meshes with configurable tessellation.
+ * Sphere, cylinder, curved image and skybox are seen from inside like
+ * {@link org.meganekkovr.GeometryComponent#buildGlobe()}. Their front is toward -Z.
+ * Use {@link org.meganekkovr.GeometryComponent#sphere(float, int, int)} and so on to share
+ * geometries with same parameters.
+ */
+public final class Primitives {
+
+    private Primitives() {
+    }
+
+    /**
+     * Sphere for equirectangular image.
+     *
+     * @param radius         Radius
+     * @param segmentsWidth  Number of horizontal segments
+     * @param segmentsHeight Number of vertical segments
+     * @return Mesh
+     */
+    @NonNull
+    public static Mesh sphere(float radius, int segmentsWidth, int segmentsHeight) {
+
+        checkSegments(segmentsWidth, segmentsHeight);
+
+        final Grid grid = new Grid(segmentsWidth, segmentsHeight);
+        for (int y = 0; y <= segmentsHeight; ++y) {
+
+            final float yf = (float) y / segmentsHeight;
+            final double lat = (yf - 0.5) * Math.PI;
+            final float cosLat = (float) Math.cos(lat);
+            final float sinLat = (float) Math.sin(lat);
+
+            for (int x = 0; x <= segmentsWidth; ++x) {
+
+                // Last column is exactly same as first one to avoid cracks at seam
+                final float xf = (float) (x % segmentsWidth) / segmentsWidth;
+                final double lon = (0.25 + xf) * Math.PI * 2;
+
+                // Converge UVs at poles
+                final float u = y == 0 || y == segmentsHeight ? 0.5f : (float) x / segmentsWidth;
+
+                grid.put(radius * (float) Math.cos(lon) * cosLat, radius * sinLat, radius * (float) Math.sin(lon) * cosLat,
+                        u, 1 - yf);
+            }
+        }
+
+        return grid.toMesh();
+    }
+
+    /**
+     * Open ended cylinder.
+     *
+     * @param radius         Radius
+     * @param height         Height
+     * @param segmentsRadial Number of horizontal segments
+     * @param segmentsHeight Number of vertical segments
+     * @return Mesh
+     */
+    @NonNull
+    public static Mesh cylinder(float radius, float height, int segmentsRadial, int segmentsHeight) {
+        return curvedImage(radius, height, 360, segmentsRadial, segmentsHeight);
+    }
+
+    /**
+     * Part of cylinder which is centered at front. This is used for curved screens.
+     *
+     * @param radius         Radius
+     * @param height         Height
+     * @param thetaLength    Central angle in degrees
+     * @param segmentsRadial Number of horizontal segments
+     * @param segmentsHeight Number of vertical segments
+     * @return Mesh
+     */
+    @NonNull
+    public static Mesh curvedImage(float radius, float height, float thetaLength, int segmentsRadial, int segmentsHeight) {
+
+        checkSegments(segmentsRadial, segmentsHeight);
+
+        final double theta = Math.toRadians(thetaLength);
+        final Grid grid = new Grid(segmentsRadial, segmentsHeight);
+        for (int y = 0; y <= segmentsHeight; ++y) {
+
+            final float yf = (float) y / segmentsHeight;
+
+            for (int x = 0; x <= segmentsRadial; ++x) {
+
+                final float xf = (float) x / segmentsRadial;
+                final double lon = Math.PI * 1.5 + (xf - 0.5) * theta;
+
+                grid.put(radius * (float) Math.cos(lon), (yf - 0.5f) * height, radius * (float) Math.sin(lon),
+                        xf, 1 - yf);
+            }
+        }
+
+        return grid.toMesh();
+    }
+
+    /**
+     * Cube for cube map image. Faces are arranged in 3x2 grid in texture:
+     * <pre>
+     * +-------+-------+-------+
+     * | right | left  |  top  |
+     * +-------+-------+-------+
+     * |bottom | front | back  |
+     * +-------+-------+-------+
+     * </pre>
+     * Top face's up is toward back, and bottom face's up is toward front.
+     *
+     * @param size     Length of edges
+     * @param segments Number of segments of an edge
+     * @return Mesh
+     */
+    @NonNull
+    public static Mesh skybox(float size, int segments) {
+
+        checkSegments(segments, segments);
+        if ((segments + 1) * (segments + 1) * 6 > 65536) {
+            throw new IllegalArgumentException("Too many segments " + segments);
+        }
+
+        final float h = size * 0.5f;
+
+        // center, right and up of each face seen from inside, and column and row in texture
+        final float[][] faces = {
+                {h, 0, 0, 0, 0, 1, 0, 1, 0, 0, 0},    // right
+                {-h, 0, 0, 0, 0, -1, 0, 1, 0, 1, 0},  // left
+                {0, h, 0, 1, 0, 0, 0, 0, 1, 2, 0},    // top
+                {0, -h, 0, 1, 0, 0, 0, 0, -1, 0, 1},  // bottom
+                {0, 0, -h, 1, 0, 0, 0, 1, 0, 1, 1},   // front
+                {0, 0, h, -1, 0, 0, 0, 1, 0, 2, 1}    // back
+        };
+
+        final Mesh[] meshes = new Mesh[faces.length];
+        for (int i = 0; i < faces.length; ++i) {
+
+            final float[] f = faces[i];
+            final Grid grid = new Grid(segments, segments);
+
+            for (int y = 0; y <= segments; ++y) {
+
+                final float yf = (float) y / segments;
+                final float b = (yf * 2 - 1) * h;
+
+                for (int x = 0; x <= segments; ++x) {
+
+                    final float xf = (float) x / segments;
+                    final float a = (xf * 2 - 1) * h;
+
+                    grid.put(f[0] + f[3] * a + f[6] * b, f[1] + f[4] * a + f[7] * b, f[2] + f[5] * a + f[8] * b,
+                            (f[9] + xf) / 3, (f[10] + 1 - yf) / 2);
+                }
+            }
+            meshes[i] = grid.toMesh();
+        }
+
+        return concat(meshes);
+    }
+
+    private static void checkSegments(int horizontal, int vertical) {
+        if (horizontal < 1 || vertical < 1) {
+            throw new IllegalArgumentException("Segments must be positive.");
+        } else if ((horizontal + 1) * (vertical + 1) > 65536) {
+            throw new IllegalArgumentException("Too many segments " + horizontal + " x " + vertical);
+        }
+    }
+
+    private static Mesh concat(Mesh[] meshes) {
+
+        int vertexCount = 0;
+        int indexCount = 0;
+        for (Mesh mesh : meshes) {
+            vertexCount += mesh.getVertexCount();
+            indexCount += mesh.getTriangles().length;
+        }
+
+        final float[] positions = new float[vertexCount * 3];
+        final float[] uvs = new float[vertexCount * 2];
+        final int[] triangles = new int[indexCount];
+
+        int vertexOffset = 0;
+        int indexOffset = 0;
+        for (Mesh mesh : meshes) {
+            System.arraycopy(mesh.getPositions(), 0, positions, vertexOffset * 3, mesh.getPositions().length);
+            System.arraycopy(mesh.getUvs(), 0, uvs, vertexOffset * 2, mesh.getUvs().length);
+            for (int index : mesh.getTriangles()) {
+                triangles[indexOffset++] = vertexOffset + index;
+            }
+            vertexOffset += mesh.getVertexCount();
+        }
+
+        return new Mesh(positions, null, uvs, triangles);
+    }
+
+    /**
+     * Vertices in rows from bottom to top. Columns go to right seen from inside.
+     */
+    private static class Grid {
+
+        private final int columns;
+        private final int rows;
+        private final float[] positions;
+        private final float[] uvs;
+        private int count;
+
+        Grid(int columns, int rows) {
+            this.columns = columns;
+            this.rows = rows;
+            this.positions = new float[(columns + 1) * (rows + 1) * 3];
+            this.uvs = new float[(columns + 1) * (rows + 1) * 2];
+        }
+
+        void put(float x, float y, float z, float u, float v) {
+            positions[count * 3] = x;
+            positions[count * 3 + 1] = y;
+            positions[count * 3 + 2] = z;
+            uvs[count * 2] = u;
+            uvs[count * 2 + 1] = v;
+            ++count;
+        }
+
+        Mesh toMesh() {
+
+            final int[] triangles = new int[columns * rows * 6];
+            int i = 0;
+            for (int y = 0; y < rows; ++y) {
+                for (int x = 0; x < columns; ++x) {
+                    final int a = y * (columns + 1) + x;
+                    final int b = a + columns + 1;
+                    triangles[i++] = a;
+                    triangles[i++] = a + 1;
+                    triangles[i++] = b;
+                    triangles[i++] = b;
+                    triangles[i++] = a + 1;
+                    triangles[i++] = b + 1;
+                }
+            }
+
+            return new Mesh(positions, null, uvs, triangles);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.meganekkovr.mesh;
+
+/**
+ * Declares how vertex attributes are arranged in a buffer passed to
+ * {@link org.meganekkovr.GeometryComponent#build(java.nio.ByteBuffer, VertexLayout, int, java.nio.ByteBuffer)}.
+ * Attributes are 32-bit floats in native byte order, in order of position (x, y, z), normal (x, y, z),
+ * color (r, g, b, a) and UV (u, v). Position and UV are always present.
+ * <p/>
+ * Interleaved layout stores all attributes of a vertex together.
+ * Planar layout stores all positions first, then all normals, colors and UVs.
+ */
+public final class VertexLayout {
+
+    public static final int POSITION = 0;
+    public static final int NORMAL = 1;
+    public static final int COLOR = 2;
+    public static final int UV = 3;
+
+    private static final int[] SIZES = {12, 12, 16, 8};
+
+    private final boolean interleaved;
+    private final boolean normals;
+    private final boolean colors;
+    private final int vertexSize;
+
+    private VertexLayout(boolean interleaved, boolean normals, boolean colors) {
+        this.interleaved = interleaved;
+        this.normals = normals;
+        this.colors = colors;
+
+        int size = 0;
+        for (int attribute = POSITION; attribute <= UV; ++attribute) {
+            if (hasAttribute(attribute)) {
+                size += SIZES[attribute];
+            }
+        }
+        this.vertexSize = size;
+    }
+
+    /**
+     * @param normals Whether vertices have normals.
+     * @param colors  Whether vertices have colors.
+     * @return Interleaved layout
+     */
+    public static VertexLayout interleaved(boolean normals, boolean colors) {
+        return new VertexLayout(true, normals, colors);
+    }
+
+    /**
+     * @param normals Whether vertices have normals.
+     * @param colors  Whether vertices have colors.
+     * @return Planar layout
+     */
+    public static VertexLayout planar(boolean normals, boolean colors) {
+        return new VertexLayout(false, normals, colors);
+    }
+
+    public boolean isInterleaved() {
+        return interleaved;
+    }
+
+    public boolean hasNormals() {
+        return normals;
+    }
+
+    public boolean hasColors() {
+        return colors;
+    }
+
+    /**
+     * @param attribute One of {@link #POSITION}, {@link #NORMAL}, {@link #COLOR} or {@link #UV}.
+     * @return {@code true} if layout contains attribute.
+     */
+    public boolean hasAttribute(int attribute) {
+        switch (attribute) {
+            case POSITION:
+            case UV:
+                return true;
+            case NORMAL:
+                return normals;
+            case COLOR:
+                return colors;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return Total byte size of attributes of a vertex.
+     */
+    public int getVertexSize() {
+        return vertexSize;
+    }
+
+    /**
+     * @param vertexCount Number of vertices
+     * @return Byte size of buffer which holds vertices.
+     */
+    public int getBufferSize(int vertexCount) {
+        return vertexSize * vertexCount;
+    }
+
+    /**
+     * @param attribute Attribute
+     * @return Byte distance between consecutive attribute values.
+     */
+    public int getStride(int attribute) {
+        return interleaved ? vertexSize : SIZES[attribute];
+    }
+
+    /**
+     * @param attribute   Attribute
+     * @param vertexCount Number of vertices. This is used only for planar layout.
+     * @return Byte offset of first attribute value from start of buffer, or -1 if layout does not contain attribute.
+     */
+    public int getOffset(int attribute, int vertexCount) {
+
+        if (!hasAttribute(attribute)) return -1;
+
+        int offset = 0;
+        for (int i = POSITION; i < attribute; ++i) {
+            if (hasAttribute(i)) {
+                offset += interleaved ? SIZES[i] : SIZES[i] * vertexCount;
+            }
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,107 @@
+package org.meganekkovr.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from (position, uv, normal) index tuple to vertex index.
+ * Keys and values are stored in primitive arrays.
+ */
+final class VertexTupleMap {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    VertexTupleMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Get vertex index for tuple, or put new index if tuple is not found.
+     *
+     * @param v        Position index
+     * @param vt       UV index or -1
+     * @param vn       Normal index or -1
+     * @param newIndex Vertex index used if tuple is not found.
+     * @return Existing vertex index, or {@code newIndex} if tuple is added.
+     */
+    int getOrPut(int v, int vt, int vn, int newIndex) {
+
+        int slot = hash(v, vt, vn) & mask;
+        while (true) {
+            int value = values[slot];
+            if (value == EMPTY) break;
+
+            int k = slot * 3;
+            if (keys[k] == v && keys[k + 1] == vt && keys[k + 2] == vn) {
+                return value;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        put(slot, v, vt, vn, newIndex);
+
+        if (++size * 2 > values.length) {
+            rehash();
+        }
+
+        return newIndex;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void put(int slot, int v, int vt, int vn, int value) {
+        int k = slot * 3;
+        keys[k] = v;
+        keys[k + 1] = vt;
+        keys[k + 2] = vn;
+        values[slot] = value;
+    }
+
+    private void rehash() {
+
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(oldValues.length * 2);
+
+        for (int i = 0; i < oldValues.length; ++i) {
+            int value = oldValues[i];
+            if (value == EMPTY) continue;
+
+            int k = i * 3;
+            int v = oldKeys[k];
+            int vt = oldKeys[k + 1];
+            int vn = oldKeys[k + 2];
+
+            int slot = hash(v, vt, vn) & mask;
+            while (values[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            put(slot, v, vt, vn, value);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity * 3];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private static int hash(int v, int vt, int vn) {
+        int h = v * 0x9E3779B1;
+        h = (h ^ (h >>> 15)) + vt * 0x85EBCA77;
+        h = (h ^ (h >>> 13)) + vn * 0xC2B2AE3D;
+        return h ^ (h >>> 16);
+    }
+}
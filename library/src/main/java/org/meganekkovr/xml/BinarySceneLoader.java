@@ -0,0 +1,562 @@
+package org.meganekkovr.xml;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import org.joml.Quaternionf;
+import org.meganekkovr.Entity;
+import org.meganekkovr.Scene;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * This creates {@link Entity} from precompiled binary scene.
+ * Binary scene is created from scene XML by {@code compileSceneXml} task
+ * defined in {@code library/scene-compiler.gradle} and placed beside XML with {@code .mgns} extension.
+ * Attribute values of default primitives are parsed at build time.
+ * Resource IDs and classes are resolved at load time through {@link ResolutionCache}.
+ * <p/>
+ * Binary scene in assets is compiled from XML in same build, so it is used without checking XML.
+ * Binary scene of file is used if its header has length of XML file and it is not older than XML file.
+ * <p/>
+ * Format (big endian):
+ * <pre>
+ * header   : int magic "MGNS", short version, int source XML length
+ * strings  : int count, { u16 byte length, UTF-8 bytes } * count
+ * node     : int byte length of rest of node, u16 tag, u16 attribute count, attribute * count,
+ *            u16 child count, node * count
+ * attribute: u16 name, u16 raw value, u8 type, payload
+ * </pre>
+ * Payload is empty for {@link #TYPE_STRING}, float for {@link #TYPE_FLOAT}, 3 floats for {@link #TYPE_VEC3},
+ * 4 floats (x, y, z, w) for {@link #TYPE_QUAT}, u8 for {@link #TYPE_BOOL}, int for {@link #TYPE_INT},
+ * u16 type and u16 name for {@link #TYPE_RESOURCE}, and u16 class name for {@link #TYPE_CLASS}.
+ * Strings are referenced by index of string table.
+ */
+public class BinarySceneLoader {
+
+    public static final String EXTENSION = ".mgns";
+    static final int MAGIC = 0x4D474E53;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 10;
+
+    static final int TYPE_STRING = 0;
+    static final int TYPE_FLOAT = 1;
+    static final int TYPE_VEC3 = 2;
+    static final int TYPE_QUAT = 3;
+    static final int TYPE_BOOL = 4;
+    static final int TYPE_INT = 5;
+    static final int TYPE_RESOURCE = 6;
+    static final int TYPE_CLASS = 7;
+
+    private static final String TAG = "BinarySceneLoader";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+    private final Context context;
+    private final Quaternionf tmpQuaternion = new Quaternionf();
+
+    // Valid only while loading
+    private String[] strings;
+    private Class<?>[] classes;
+    private SparseIntArray resourceIds;
+    private Document document;
+
+    public BinarySceneLoader(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Load binary scene compiled from XML asset.
+     *
+     * @param xmlAssetName Asset name of XML. Not binary scene's.
+     * @return Root entity or {@code null} if binary scene is missing.
+     */
+    @Nullable
+    public synchronized Entity loadAsset(String xmlAssetName) {
+
+        ByteBuffer buffer;
+        try {
+            buffer = mapAsset(xmlAssetName + EXTENSION);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read binary scene of " + xmlAssetName, e);
+            return null;
+        }
+
+        // Binary is compiled from XML at build time. Reading XML here costs as much as parsing it.
+        return load(buffer);
+    }
+
+    /**
+     * Load binary scene compiled from XML file. Binary scene must be in same directory.
+     *
+     * @param xmlFile XML file. Not binary scene's.
+     * @return Root entity or {@code null} if binary scene is missing or older than XML.
+     */
+    @Nullable
+    public synchronized Entity loadFile(File xmlFile) {
+
+        File binaryFile = new File(xmlFile.getPath() + EXTENSION);
+        if (!binaryFile.isFile()) return null;
+
+        ByteBuffer buffer;
+        try (FileInputStream stream = new FileInputStream(binaryFile)) {
+            FileChannel channel = stream.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + binaryFile, e);
+            return null;
+        }
+
+        if (xmlFile.isFile() && !isCompiledFrom(buffer, binaryFile, xmlFile)) return null;
+
+        return load(buffer);
+    }
+
+    /**
+     * Create entities from binary scene.
+     *
+     * @param buffer Binary scene
+     * @return Root entity or {@code null} if binary is invalid or root element is unknown.
+     */
+    @Nullable
+    public synchronized Entity load(@NonNull ByteBuffer buffer) {
+
+        try {
+            if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+                Log.w(TAG, "Unsupported binary scene");
+                return null;
+            }
+
+            buffer.position(HEADER_SIZE);
+            readStrings(buffer);
+            return readNode(buffer);
+
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            Log.w(TAG, "Broken binary scene", e);
+            return null;
+        } finally {
+            strings = null;
+            classes = null;
+            resourceIds = null;
+            document = null;
+        }
+    }
+
+    /**
+     * Map uncompressed asset to memory. Compressed asset is read into heap.
+     */
+    private ByteBuffer mapAsset(String assetName) throws IOException {
+
+        try (AssetFileDescriptor afd = context.getAssets().openFd(assetName);
+             FileInputStream stream = afd.createInputStream()) {
+            return stream.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getDeclaredLength());
+        } catch (FileNotFoundException e) {
+
+            // Asset is compressed or missing. Throws FileNotFoundException if missing.
+            try (InputStream stream = context.getAssets().open(assetName)) {
+                return ByteBuffer.wrap(readFully(stream));
+            }
+        }
+    }
+
+    /**
+     * Check without reading XML. Binary has to be written after XML is modified.
+     */
+    private static boolean isCompiledFrom(ByteBuffer buffer, File binaryFile, File xmlFile) {
+        return buffer.limit() >= HEADER_SIZE
+                && buffer.getInt(6) == xmlFile.length()
+                && binaryFile.lastModified() >= xmlFile.lastModified();
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int len;
+        while ((len = stream.read(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private void readStrings(ByteBuffer buffer) {
+
+        final int count = buffer.getInt();
+        strings = new String[count];
+        classes = new Class<?>[count];
+        resourceIds = new SparseIntArray();
+
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < count; ++i) {
+            int length = readIndex(buffer);
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            buffer.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, UTF_8);
+        }
+    }
+
+    private static int readIndex(ByteBuffer buffer) {
+        return buffer.getShort() & 0xFFFF;
+    }
+
+    @Nullable
+    private Entity readNode(ByteBuffer buffer) {
+
+        final int length = buffer.getInt();
+        final int end = buffer.position() + length;
+        final String tag = strings[readIndex(buffer)];
+        final int attrCount = readIndex(buffer);
+        final int attrStart = buffer.position();
+
+        Entity entity = createEntity(tag, buffer, attrCount);
+
+        // Ignore unknown element
+        if (entity == null) {
+            buffer.position(end);
+            return null;
+        }
+
+        // Parse components
+        buffer.position(attrStart);
+        final boolean lazy = applyAttributes(entity, buffer, attrCount);
+
+        // Keep children in buffer until entity becomes visible
+        final int childCount = readIndex(buffer);
+        if (lazy && !entity.isVisible() && childCount > 0) {
+            entity.setContentInflater(new LazyChildren(buffer.duplicate(), childCount));
+            buffer.position(end);
+            return entity;
+        }
+
+        // Parse children
+        for (int i = 0; i < childCount; ++i) {
+            Entity child = readNode(buffer);
+            if (child != null) {
+                entity.add(child);
+            }
+        }
+
+        return entity;
+    }
+
+    /**
+     * Same as {@link DefautPrimitive} but uses pre-parsed values.
+     * If default primitive cannot create entity, element is passed to {@link XmlPrimitiveFactory}.
+     */
+    @Nullable
+    private Entity createEntity(String tag, ByteBuffer buffer, int attrCount) {
+
+        final int attrStart = buffer.position();
+        int classIndex = -1;
+        int src = 0;
+
+        for (int i = 0; i < attrCount; ++i) {
+            String name = strings[readIndex(buffer)];
+            readIndex(buffer); // raw value
+            int type = buffer.get();
+
+            if (type == TYPE_CLASS) {
+                classIndex = readIndex(buffer);
+            } else if (type == TYPE_RESOURCE && "src".equals(name)) {
+                src = readResourceId(buffer);
+            } else {
+                skipPayload(buffer, type);
+            }
+        }
+
+        Entity entity = createDefaultEntity(tag, classIndex, src);
+        if (entity != null) return entity;
+
+        // Custom primitive
+        buffer.position(attrStart);
+        return XmlPrimitiveFactory.getInstance().parse(createElement(tag, buffer, attrCount), context);
+    }
+
+    @Nullable
+    private Entity createDefaultEntity(String tag, int classIndex, int src) {
+
+        if (classIndex >= 0) {
+            Class<?> clazz = getClass(classIndex);
+            if (clazz == null) return null;
+            if (Entity.class.isAssignableFrom(clazz)) {
+                return DefautPrimitive.createEntity(clazz, context);
+            }
+        }
+
+        switch (tag) {
+            case "scene":
+                return new Scene();
+
+            case "entity":
+                return new Entity();
+
+            case "view":
+                return src != 0 ? DefautPrimitive.createViewEntity(src, context) : null;
+
+            case "img":
+                return src != 0 ? DefautPrimitive.createImgEntity(src, context) : null;
+
+            case "camera":
+                return DefautPrimitive.createCameraEntity();
+        }
+
+        return null;
+    }
+
+    /**
+     * @return {@code true} if element has {@code lazy="true"}.
+     */
+    private boolean applyAttributes(Entity entity, ByteBuffer buffer, int attrCount) {
+
+        final XmlAttributeParser attributeParser = XmlAttributeParser.getInstance();
+        boolean lazy = false;
+
+        for (int i = 0; i < attrCount; ++i) {
+            String name = strings[readIndex(buffer)];
+            String rawValue = strings[readIndex(buffer)];
+            int type = buffer.get();
+
+            if (XmlParser.LAZY_ATTRIBUTE.equals(name)) {
+                lazy = "true".equals(rawValue);
+            }
+
+            // Skip unknown attribute
+            XmlAttributeParser.XmlAttributeHandler handler = attributeParser.getHandler(name);
+            if (handler == null) {
+                skipPayload(buffer, type);
+                continue;
+            }
+
+            if (!applyPreParsedValue(entity, handler, buffer, type)) {
+                handler.parse(entity, rawValue, context);
+            }
+        }
+
+        return lazy;
+    }
+
+    /**
+     * Apply pre-parsed value without string parsing if handler is default one.
+     *
+     * @return {@code true} if value was applied.
+     */
+    private boolean applyPreParsedValue(Entity entity, XmlAttributeParser.XmlAttributeHandler handler, ByteBuffer buffer, int type) {
+
+        final Class<?> handlerClass = handler.getClass();
+
+        switch (type) {
+            case TYPE_VEC3:
+                if (handlerClass == PositionHandler.class) {
+                    entity.setPosition(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    return true;
+                } else if (handlerClass == ScaleHandler.class) {
+                    entity.setScale(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    return true;
+                }
+                break;
+
+            case TYPE_QUAT:
+                if (handlerClass == RotationHandler.class) {
+                    tmpQuaternion.set(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                    entity.setRotation(tmpQuaternion);
+                    return true;
+                }
+                break;
+
+            case TYPE_FLOAT:
+                if (handlerClass == OpacityHandler.class) {
+                    entity.setOpacity(buffer.getFloat());
+                    return true;
+                }
+                break;
+
+            case TYPE_BOOL:
+                if (handlerClass == VisibleHandler.class) {
+                    entity.setVisible(buffer.get() != 0);
+                    return true;
+                }
+                break;
+
+            case TYPE_INT:
+                if (handlerClass == IdHandler.class) {
+                    entity.setId(buffer.getInt());
+                    return true;
+                }
+                break;
+
+            case TYPE_RESOURCE:
+                if (handlerClass == IdHandler.class) {
+                    int id = readResourceId(buffer);
+                    if (id != 0) {
+                        entity.setId(id);
+                    }
+                    return true;
+                }
+                break;
+        }
+
+        skipPayload(buffer, type);
+        return false;
+    }
+
+    private static void skipPayload(ByteBuffer buffer, int type) {
+
+        int size;
+        switch (type) {
+            case TYPE_FLOAT:
+            case TYPE_INT:
+            case TYPE_RESOURCE:
+                size = 4;
+                break;
+            case TYPE_VEC3:
+                size = 12;
+                break;
+            case TYPE_QUAT:
+                size = 16;
+                break;
+            case TYPE_BOOL:
+                size = 1;
+                break;
+            case TYPE_CLASS:
+                size = 2;
+                break;
+            default:
+                size = 0;
+                break;
+        }
+
+        buffer.position(buffer.position() + size);
+    }
+
+    private int readResourceId(ByteBuffer buffer) {
+
+        final int typeIndex = readIndex(buffer);
+        final int nameIndex = readIndex(buffer);
+        final int key = (typeIndex << 16) | nameIndex;
+
+        int id = resourceIds.get(key, -1);
+        if (id == -1) {
+            id = ResolutionCache.getIdentifier(strings[nameIndex], strings[typeIndex], context);
+            resourceIds.put(key, id);
+        }
+
+        return id;
+    }
+
+    @Nullable
+    private Class<?> getClass(int index) {
+
+        Class<?> clazz = classes[index];
+        if (clazz == null) {
+            try {
+                clazz = ResolutionCache.forName(strings[index]);
+                classes[index] = clazz;
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return clazz;
+    }
+
+    /**
+     * Create detached {@link Element} for {@link XmlPrimitiveFactory.XmlPrimitiveHandler}.
+     */
+    private Element createElement(String tag, ByteBuffer buffer, int attrCount) {
+
+        if (document == null) {
+            try {
+                document = documentBuilderFactory.newDocumentBuilder().newDocument();
+            } catch (ParserConfigurationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        Element element = document.createElement(tag);
+        for (int i = 0; i < attrCount; ++i) {
+            String name = strings[readIndex(buffer)];
+            String rawValue = strings[readIndex(buffer)];
+            skipPayload(buffer, buffer.get());
+            element.setAttribute(name, rawValue);
+        }
+
+        return element;
+    }
+
+    /**
+     * Children of element with {@code lazy="true"}. They are read from binary scene when entity becomes visible.
+     */
+    private class LazyChildren implements Entity.ContentInflater {
+
+        private final String[] strings;
+        private final ByteBuffer buffer;
+        private int remaining;
+
+        LazyChildren(ByteBuffer buffer, int childCount) {
+            this.strings = BinarySceneLoader.this.strings;
+            this.buffer = buffer;
+            this.remaining = childCount;
+        }
+
+        @Override
+        public boolean inflate(Entity entity, long budgetNanos) {
+
+            synchronized (BinarySceneLoader.this) {
+
+                // Save state in case of loading in progress
+                final String[] prevStrings = BinarySceneLoader.this.strings;
+                final Class<?>[] prevClasses = classes;
+                final SparseIntArray prevResourceIds = resourceIds;
+                final Document prevDocument = document;
+
+                BinarySceneLoader.this.strings = strings;
+                classes = new Class<?>[strings.length];
+                resourceIds = new SparseIntArray();
+                document = null;
+
+                try {
+                    final long startTime = System.nanoTime();
+                    while (remaining > 0) {
+                        Entity child = readNode(buffer);
+                        --remaining;
+                        if (child != null) {
+                            entity.add(child);
+                        }
+
+                        if (System.nanoTime() - startTime >= budgetNanos) break;
+                    }
+                } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                    Log.w(TAG, "Broken binary scene", e);
+                    remaining = 0;
+                } finally {
+                    BinarySceneLoader.this.strings = prevStrings;
+                    classes = prevClasses;
+                    resourceIds = prevResourceIds;
+                    document = prevDocument;
+                }
+            }
+
+            return remaining == 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.meganekkovr.xml;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.meganekkovr.Entity;
+import org.meganekkovr.animation.AnimationClip;
+import org.meganekkovr.animation.AnimationClipComponent;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Define {@code clip} attribute. Plays {@link AnimationClip} from raw resource or assets.
+ * <pre>
+ * clip="@raw/intro"
+ * clip="src: anim/idle.mgna; loop: true; speed: 0.5"
+ * </pre>
+ * Loaded clips are shared among entities.
+ */
+public class ClipHandler implements XmlAttributeParser.XmlAttributeHandler {
+
+    private static final String TAG = "ClipHandler";
+    private static final Map<String, AnimationClip> clipCache = new HashMap<>();
+
+    @Override
+    public String attributeName() {
+        return "clip";
+    }
+
+    @Override
+    public void parse(Entity entity, String rawValue, Context context) {
+
+        Map<String, String> map = XmlAttributeParser.parseInlineValue(rawValue);
+        String src = map.isEmpty() ? rawValue.trim() : map.get("src");
+
+        // Ignore invalid
+        if (src == null) return;
+
+        AnimationClip clip = getClip(src, context);
+        if (clip == null) return;
+
+        AnimationClipComponent player = new AnimationClipComponent();
+        player.setLooping(map.containsKey("loop") && Boolean.parseBoolean(map.get("loop")));
+        if (map.containsKey("speed")) {
+            player.setSpeed(Float.parseFloat(map.get("speed")));
+        }
+        player.play(clip);
+        entity.add(player);
+    }
+
+    private static AnimationClip getClip(String src, Context context) {
+
+        synchronized (clipCache) {
+            AnimationClip clip = clipCache.get(src);
+            if (clip != null) return clip;
+        }
+
+        AnimationClip clip;
+        try {
+            if (XmlAttributeParser.isRawResource(src)) {
+
+                // src = @raw/xxx
+                clip = AnimationClip.loadResource(context, XmlAttributeParser.toResourceId(src, context));
+
+            } else {
+
+                // src = asset name
+                clip = AnimationClip.loadAsset(context, src);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + src, e);
+            return null;
+        }
+
+        synchronized (clipCache) {
+            clipCache.put(src, clip);
+        }
+        return clip;
+    }
+}
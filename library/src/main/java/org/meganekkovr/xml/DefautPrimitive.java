@@ -23,6 +23,9 @@ import java.util.regex.Pattern;
  */
 class DefautPrimitive implements XmlPrimitiveFactory.XmlPrimitiveHandler {
 
+    private static final Pattern LAYOUT_PATTERN = Pattern.compile("@layout/(.+)");
+    private static final Pattern DRAWABLE_PATTERN = Pattern.compile("@drawable/(.+)");
+
     @Override
     public Entity createEntity(@NonNull Node node, @NonNull Context context) {
 
@@ -33,24 +36,11 @@ class DefautPrimitive implements XmlPrimitiveFactory.XmlPrimitiveHandler {
             String className = classAttr.getNodeValue();
 
             try {
-                Class<?> clazz = Class.forName(className);
+                Class<?> clazz = ResolutionCache.forName(className);
                 if (Entity.class.isAssignableFrom(clazz)) {
-
-                    // Support AndroidAnnotations @EBean
-                    for (Method method : clazz.getDeclaredMethods()) {
-
-                        // Generated class has static getInstance_(Context) method. Use it if exists.
-                        if ("getInstance_".equals(method.getName())
-                                && method.getParameterTypes().length == 1
-                                && method.getParameterTypes()[0].equals(Context.class)) {
-                            return (Entity) method.invoke(null, context);
-                        }
-                    }
-
-                    // Default constructor
-                    return (Entity) clazz.newInstance();
+                    return createEntity(clazz, context);
                 }
-            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            } catch (ClassNotFoundException e) {
                 e.printStackTrace();
                 return null;
             }
@@ -79,6 +69,61 @@ class DefautPrimitive implements XmlPrimitiveFactory.XmlPrimitiveHandler {
         return null;
     }
 
+    /**
+     * Instantiate {@link Entity} from class.
+     *
+     * @param clazz   Class which extends Entity.
+     * @param context Context
+     * @return New Entity or {@code null} if it cannot be instantiated.
+     */
+    @Nullable
+    static Entity createEntity(@NonNull Class<?> clazz, @NonNull Context context) {
+        try {
+            // Support AndroidAnnotations @EBean
+            // Generated class has static getInstance_(Context) method. Use it if exists.
+            Method method = ResolutionCache.getFactoryMethod(clazz);
+            if (method != null) {
+                return (Entity) method.invoke(null, context);
+            }
+
+            // Default constructor
+            return (Entity) clazz.newInstance();
+
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @param layoutId Layout resource ID.
+     * @param context  Context
+     * @return New Entity which renders inflated View.
+     */
+    @NonNull
+    static Entity createViewEntity(int layoutId, @NonNull Context context) {
+        View view = LayoutInflater.from(context).inflate(layoutId, null);
+        return Entity.from(view);
+    }
+
+    /**
+     * @param drawableId Drawable resource ID.
+     * @param context    Context
+     * @return New Entity which renders Drawable.
+     */
+    @NonNull
+    static Entity createImgEntity(int drawableId, @NonNull Context context) {
+        Drawable drawable = ContextCompat.getDrawable(context, drawableId);
+        return Entity.from(drawable);
+    }
+
+    @NonNull
+    static Entity createCameraEntity() {
+        Entity entity = new Entity();
+        entity.add(new CameraComponent());
+        return entity;
+    }
+
     @Nullable
     private Entity createViewEntity(@NonNull Node node, @NonNull Context context) {
 
@@ -87,14 +132,12 @@ class DefautPrimitive implements XmlPrimitiveFactory.XmlPrimitiveHandler {
         if (src != null) {
 
             String srcVal = src.getNodeValue();
-            Pattern pattern = Pattern.compile("@layout/(.+)");
-            Matcher matcher = pattern.matcher(srcVal);
+            Matcher matcher = LAYOUT_PATTERN.matcher(srcVal);
             if (matcher.find()) {
                 String layoutName = matcher.group(1);
-                int id = context.getResources().getIdentifier(layoutName, "layout", context.getPackageName());
+                int id = ResolutionCache.getIdentifier(layoutName, "layout", context);
                 if (id != 0) {
-                    View view = LayoutInflater.from(context).inflate(id, null);
-                    return Entity.from(view);
+                    return createViewEntity(id, context);
                 }
             }
         }
@@ -110,14 +153,12 @@ class DefautPrimitive implements XmlPrimitiveFactory.XmlPrimitiveHandler {
         if (src != null) {
 
             String srcVal = src.getNodeValue();
-            Pattern pattern = Pattern.compile("@drawable/(.+)");
-            Matcher matcher = pattern.matcher(srcVal);
+            Matcher matcher = DRAWABLE_PATTERN.matcher(srcVal);
             if (matcher.find()) {
                 String drawableName = matcher.group(1);
-                int id = context.getResources().getIdentifier(drawableName, "drawable", context.getPackageName());
+                int id = ResolutionCache.getIdentifier(drawableName, "drawable", context);
                 if (id != 0) {
-                    Drawable drawable = ContextCompat.getDrawable(context, id);
-                    return Entity.from(drawable);
+                    return createImgEntity(id, context);
                 }
             }
         }
@@ -125,10 +166,4 @@ class DefautPrimitive implements XmlPrimitiveFactory.XmlPrimitiveHandler {
         return null;
     }
 
-    @NonNull
-    private Entity createCameraEntity() {
-        Entity entity = new Entity();
-        entity.add(new CameraComponent());
-        return entity;
-    }
 }
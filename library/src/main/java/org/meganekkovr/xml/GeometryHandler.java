@@ -9,6 +9,16 @@ import java.util.Map;
 
 /**
  * Define {@code geometry} attribute.
+ * <pre>
+ * geometry="primitive: plane; width: 1; height: 1"
+ * geometry="primitive: globe"
+ * geometry="primitive: sphere; radius: 100; segmentsWidth: 128; segmentsHeight: 64"
+ * geometry="primitive: cylinder; radius: 1; height: 2; segmentsRadial: 64; segmentsHeight: 1"
+ * geometry="primitive: curvedimage; radius: 2; height: 1; thetaLength: 90; segmentsRadial: 32"
+ * geometry="primitive: skybox; size: 100; segments: 1"
+ * </pre>
+ * Parameters of sphere, cylinder, curvedimage and skybox can be omitted.
+ * Globe with any sphere parameter is built as sphere. Those geometries are shared among entities with same parameters.
  */
 public class GeometryHandler implements XmlAttributeParser.XmlAttributeHandler {
 
@@ -26,16 +36,48 @@ public class GeometryHandler implements XmlAttributeParser.XmlAttributeHandler {
         String primitive = map.get("primitive");
 
         if (primitive != null) {
-            geometryComponent = new GeometryComponent();
             switch (primitive) {
                 case "plane": {
-                    float width = map.containsKey("width") ? Float.parseFloat(map.get("width")) : 0;
-                    float height = map.containsKey("height") ? Float.parseFloat(map.get("height")) : 0;
+                    float width = getFloat(map, "width", 0);
+                    float height = getFloat(map, "height", 0);
+                    geometryComponent = new GeometryComponent();
                     geometryComponent.buildQuad(width, height);
                 }
                 break;
                 case "globe": {
-                    geometryComponent.buildGlobe();
+                    if (map.containsKey("radius") || map.containsKey("segmentsWidth") || map.containsKey("segmentsHeight")) {
+                        geometryComponent = createSphere(map);
+                    } else {
+                        geometryComponent = new GeometryComponent();
+                        geometryComponent.buildGlobe();
+                    }
+                }
+                break;
+                case "sphere": {
+                    geometryComponent = createSphere(map);
+                }
+                break;
+                case "cylinder": {
+                    float radius = getFloat(map, "radius", 1);
+                    float height = getFloat(map, "height", 2);
+                    int segmentsRadial = getInt(map, "segmentsRadial", 64);
+                    int segmentsHeight = getInt(map, "segmentsHeight", 1);
+                    geometryComponent = GeometryComponent.cylinder(radius, height, segmentsRadial, segmentsHeight);
+                }
+                break;
+                case "curvedimage": {
+                    float radius = getFloat(map, "radius", 2);
+                    float height = getFloat(map, "height", 1);
+                    float thetaLength = getFloat(map, "thetaLength", 90);
+                    int segmentsRadial = getInt(map, "segmentsRadial", 32);
+                    int segmentsHeight = getInt(map, "segmentsHeight", 1);
+                    geometryComponent = GeometryComponent.curvedImage(radius, height, thetaLength, segmentsRadial, segmentsHeight);
+                }
+                break;
+                case "skybox": {
+                    float size = getFloat(map, "size", 100);
+                    int segments = getInt(map, "segments", 1);
+                    geometryComponent = GeometryComponent.skybox(size, segments);
                 }
                 break;
             }
@@ -45,4 +87,19 @@ public class GeometryHandler implements XmlAttributeParser.XmlAttributeHandler {
             entity.add(geometryComponent);
         }
     }
+
+    private static GeometryComponent createSphere(Map<String, String> map) {
+        float radius = getFloat(map, "radius", 100);
+        int segmentsWidth = getInt(map, "segmentsWidth", 128);
+        int segmentsHeight = getInt(map, "segmentsHeight", 64);
+        return GeometryComponent.sphere(radius, segmentsWidth, segmentsHeight);
+    }
+
+    private static float getFloat(Map<String, String> map, String key, float defaultValue) {
+        return map.containsKey(key) ? Float.parseFloat(map.get(key)) : defaultValue;
+    }
+
+    private static int getInt(Map<String, String> map, String key, int defaultValue) {
+        return map.containsKey(key) ? Integer.parseInt(map.get(key)) : defaultValue;
+    }
 }
@@ -0,0 +1,109 @@
+package org.meganekkovr.xml;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.meganekkovr.Entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Template of {@link Entity} tree which is parsed from XML only once.
+ * {@link #instantiate()} creates copies with {@link Entity#copy()}, so copies share
+ * geometry and textures with template. Resource lookup, view inflation and geometry building
+ * are not repeated for each copy.
+ * <pre>
+ * Prefab prefab = Prefab.fromAsset(context, "button.xml");
+ * for (int i = 0; i &lt; 500; ++i) {
+ *     scene.add(prefab.instantiate(i, new Vector3f(i, 0, -5), null, null));
+ * }
+ * </pre>
+ */
+public class Prefab {
+
+    private final Entity template;
+
+    /**
+     * @param template Entity tree used as template. It must not be modified or attached to scene after this.
+     */
+    public Prefab(@NonNull Entity template) {
+        this.template = template;
+    }
+
+    /**
+     * Create prefab from XML asset.
+     *
+     * @param context   Context
+     * @param assetName Asset name
+     * @return Prefab
+     * @throws XmlParserException If XML is invalid or root element is unknown.
+     */
+    public static Prefab fromAsset(Context context, String assetName) throws XmlParserException {
+        return fromEntity(new XmlParser(context).parseAsset(assetName));
+    }
+
+    /**
+     * Create prefab from XML fragment such as {@code <view src="@layout/button"/>}.
+     *
+     * @param context Context
+     * @param xml     XML string
+     * @return Prefab
+     * @throws XmlParserException If XML is invalid or root element is unknown.
+     */
+    public static Prefab fromString(Context context, String xml) throws XmlParserException {
+        try {
+            return fromEntity(new XmlParser(context).parse(new ByteArrayInputStream(xml.getBytes("UTF-8"))));
+        } catch (UnsupportedEncodingException e) {
+            throw new XmlParserException(e);
+        }
+    }
+
+    private static Prefab fromEntity(@Nullable Entity entity) throws XmlParserException {
+        if (entity == null) {
+            throw new XmlParserException("Root element is unknown.");
+        }
+        return new Prefab(entity);
+    }
+
+    /**
+     * Create a copy of template.
+     *
+     * @return New entity
+     */
+    public Entity instantiate() {
+        return template.copy();
+    }
+
+    /**
+     * Create a copy of template with overridden id and transform.
+     *
+     * @param id       ID of new entity
+     * @param position Position or {@code null} to use template's one.
+     * @param rotation Rotation or {@code null} to use template's one.
+     * @param scale    Scale or {@code null} to use template's one.
+     * @return New entity
+     */
+    public Entity instantiate(int id, @Nullable Vector3f position, @Nullable Quaternionf rotation, @Nullable Vector3f scale) {
+
+        Entity entity = template.copy();
+        entity.setId(id);
+
+        if (position != null) {
+            entity.setPosition(position);
+        }
+
+        if (rotation != null) {
+            entity.setRotation(rotation);
+        }
+
+        if (scale != null) {
+            entity.setScale(scale);
+        }
+
+        return entity;
+    }
+}
@@ -0,0 +1,166 @@
+package org.meganekkovr.xml;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared caches for resource IDs, classes and factory methods which are resolved while loading XML.
+ * {@link android.content.res.Resources#getIdentifier(String, String, String)} and reflection are slow,
+ * so each name is resolved only once. This is thread safe and can be used from background loaders.
+ */
+public final class ResolutionCache {
+
+    /**
+     * Hit and miss counts of a cache.
+     */
+    public static final class Statistics {
+
+        private final AtomicLong hitCount = new AtomicLong();
+        private final AtomicLong missCount = new AtomicLong();
+
+        private Statistics() {
+        }
+
+        public long getHitCount() {
+            return hitCount.get();
+        }
+
+        public long getMissCount() {
+            return missCount.get();
+        }
+
+        /**
+         * @return Ratio of hits to all lookups. {@code 0} if never looked up.
+         */
+        public float getHitRate() {
+            long hit = hitCount.get();
+            long total = hit + missCount.get();
+            return total == 0 ? 0 : (float) hit / total;
+        }
+
+        private void reset() {
+            hitCount.set(0);
+            missCount.set(0);
+        }
+    }
+
+    private static final Map<String, Integer> resourceIds = new ConcurrentHashMap<>();
+    private static final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Method> factoryMethods = new ConcurrentHashMap<>();
+    private static final Set<Class<?>> noFactoryMethods = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+    private static final Statistics resourceIdStatistics = new Statistics();
+    private static final Statistics classStatistics = new Statistics();
+    private static final Statistics factoryMethodStatistics = new Statistics();
+
+    private ResolutionCache() {
+    }
+
+    /**
+     * Cached version of {@link android.content.res.Resources#getIdentifier(String, String, String)}.
+     *
+     * @param name    Resource name
+     * @param defType Resource type such as {@code "drawable"}
+     * @param context Context
+     * @return Resource ID or {@code 0} if not found.
+     */
+    public static int getIdentifier(@NonNull String name, @NonNull String defType, @NonNull Context context) {
+
+        final String packageName = context.getPackageName();
+        final String key = packageName + ':' + defType + '/' + name;
+
+        Integer id = resourceIds.get(key);
+        if (id != null) {
+            resourceIdStatistics.hitCount.incrementAndGet();
+            return id;
+        }
+
+        resourceIdStatistics.missCount.incrementAndGet();
+        id = context.getResources().getIdentifier(name, defType, packageName);
+        resourceIds.put(key, id);
+        return id;
+    }
+
+    /**
+     * Cached version of {@link Class#forName(String)}.
+     *
+     * @param className Fully qualified class name
+     * @return Class
+     * @throws ClassNotFoundException If class is not found.
+     */
+    @NonNull
+    public static Class<?> forName(@NonNull String className) throws ClassNotFoundException {
+
+        Class<?> clazz = classes.get(className);
+        if (clazz != null) {
+            classStatistics.hitCount.incrementAndGet();
+            return clazz;
+        }
+
+        classStatistics.missCount.incrementAndGet();
+        clazz = Class.forName(className);
+        classes.put(className, clazz);
+        return clazz;
+    }
+
+    /**
+     * Find static {@code getInstance_(Context)} method which is generated by AndroidAnnotations for @EBean.
+     *
+     * @param clazz Class
+     * @return Method or {@code null} if class does not have it.
+     */
+    @Nullable
+    public static Method getFactoryMethod(@NonNull Class<?> clazz) {
+
+        Method method = factoryMethods.get(clazz);
+        if (method != null || noFactoryMethods.contains(clazz)) {
+            factoryMethodStatistics.hitCount.incrementAndGet();
+            return method;
+        }
+
+        factoryMethodStatistics.missCount.incrementAndGet();
+        for (Method m : clazz.getDeclaredMethods()) {
+            if ("getInstance_".equals(m.getName())
+                    && m.getParameterTypes().length == 1
+                    && m.getParameterTypes()[0].equals(Context.class)) {
+                factoryMethods.put(clazz, m);
+                return m;
+            }
+        }
+
+        noFactoryMethods.add(clazz);
+        return null;
+    }
+
+    public static Statistics getResourceIdStatistics() {
+        return resourceIdStatistics;
+    }
+
+    public static Statistics getClassStatistics() {
+        return classStatistics;
+    }
+
+    public static Statistics getFactoryMethodStatistics() {
+        return factoryMethodStatistics;
+    }
+
+    /**
+     * Clear all caches and statistics.
+     */
+    public static void clear() {
+        resourceIds.clear();
+        classes.clear();
+        factoryMethods.clear();
+        noFactoryMethods.clear();
+        resourceIdStatistics.reset();
+        classStatistics.reset();
+        factoryMethodStatistics.reset();
+    }
+}
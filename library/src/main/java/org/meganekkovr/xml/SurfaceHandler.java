@@ -47,7 +47,7 @@ public class SurfaceHandler implements XmlAttributeParser.XmlAttributeHandler {
             // renderer = class name
 
             try {
-                Class<?> clazz = Class.forName(renderer);
+                Class<?> clazz = ResolutionCache.forName(renderer);
 
                 // renderer is a class that extends CanvasRenderer
                 if (SurfaceRendererComponent.CanvasRenderer.class.isAssignableFrom(clazz)) {
@@ -2,11 +2,13 @@ package org.meganekkovr.xml;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.util.ArrayMap;
 
 import org.meganekkovr.Entity;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.xmlpull.v1.XmlPullParser;
 
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -20,6 +22,7 @@ public class XmlAttributeParser {
     static {
         // Install default attribute handlers
         XmlAttributeParser parser = XmlAttributeParser.getInstance();
+        parser.install(new ClipHandler());
         parser.install(new GeometryHandler());
         parser.install(new IdHandler());
         parser.install(new OpacityHandler());
@@ -47,6 +50,8 @@ public class XmlAttributeParser {
         void parse(Entity entity, String rawValue, Context context);
     }
 
+    private static final Pattern RESOURCE_PATTERN = Pattern.compile("@\\+?(.+)/(.+)");
+
     // singleton
     private static XmlAttributeParser instance;
 
@@ -80,6 +85,36 @@ public class XmlAttributeParser {
         }
     }
 
+    /**
+     * Apply attributes of current {@link XmlPullParser#START_TAG} event.
+     *
+     * @param entity  Entity
+     * @param parser  XmlPullParser which is positioned at start tag.
+     * @param context Context
+     */
+    void parse(Entity entity, XmlPullParser parser, Context context) {
+
+        for (int i = 0, len = parser.getAttributeCount(); i < len; ++i) {
+
+            String attrName = parser.getAttributeName(i);
+
+            // Skip unknown attribute
+            XmlAttributeHandler attributeHandler = handlers.get(attrName);
+            if (attributeHandler == null) continue;
+
+            attributeHandler.parse(entity, parser.getAttributeValue(i), context);
+        }
+    }
+
+    /**
+     * @param attributeName Attribute name
+     * @return Installed handler or {@code null}.
+     */
+    @Nullable
+    XmlAttributeHandler getHandler(String attributeName) {
+        return handlers.get(attributeName);
+    }
+
     /**
      * Add custom {@link XmlAttributeHandler}.
      *
@@ -161,7 +196,7 @@ public class XmlAttributeParser {
      * @return {@code true} if str represents id resource.
      */
     public static boolean isIdResource(String str) {
-        return str.matches("^@\\+?id/.+$");
+        return (str.startsWith("@id/") && str.length() > 4) || (str.startsWith("@+id/") && str.length() > 5);
     }
 
     /**
@@ -171,13 +206,12 @@ public class XmlAttributeParser {
      */
     public static int toResourceId(String str, Context context) {
 
-        Pattern pattern = Pattern.compile("@\\+?(.+)/(.+)");
-        Matcher matcher = pattern.matcher(str);
+        Matcher matcher = RESOURCE_PATTERN.matcher(str);
 
         if (matcher.find()) {
             String name = matcher.group(2);
             String defType = matcher.group(1);
-            return context.getResources().getIdentifier(name, defType, context.getPackageName());
+            return ResolutionCache.getIdentifier(name, defType, context);
         }
 
         return 0;
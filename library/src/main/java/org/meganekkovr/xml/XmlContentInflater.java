@@ -0,0 +1,96 @@
+package org.meganekkovr.xml;
+
+import android.support.annotation.NonNull;
+
+import org.meganekkovr.Entity;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Creates children of {@link Entity} from parsed {@link XmlNode}s.
+ * Entities are created in document order and creation can be split over multiple frames.
+ * Elements with {@code lazy="true"} and {@code visible="false"} attributes keep their children
+ * as XmlNodes until they become visible.
+ */
+public class XmlContentInflater implements Entity.ContentInflater {
+
+    private final XmlParser xmlParser;
+    private final Deque<XmlNode> pendingNodes = new ArrayDeque<>();
+    private final Deque<Entity> pendingParents = new ArrayDeque<>();
+    private final List<XmlNode> nodes;
+    private Entity root;
+    private int totalCount;
+    private int processedCount;
+
+    /**
+     * @param xmlParser XmlParser used to create entities.
+     * @param nodes     Child nodes.
+     */
+    public XmlContentInflater(@NonNull XmlParser xmlParser, @NonNull List<XmlNode> nodes) {
+        this.xmlParser = xmlParser;
+        this.nodes = nodes;
+
+        for (XmlNode node : nodes) {
+            totalCount += node.size();
+        }
+    }
+
+    @Override
+    public boolean inflate(Entity entity, long budgetNanos) {
+
+        // First call
+        if (root == null) {
+            root = entity;
+            push(nodes, entity);
+        }
+
+        // Create entities in depth first order until time runs out
+        final long startTime = System.nanoTime();
+        while (!pendingNodes.isEmpty()) {
+
+            XmlNode node = pendingNodes.pop();
+            Entity parent = pendingParents.pop();
+
+            Entity child = xmlParser.createEntity(node);
+            if (child != null) {
+                parent.add(child);
+                ++processedCount;
+
+                if (XmlParser.isLazy(node, child)) {
+                    child.setContentInflater(new XmlContentInflater(xmlParser, node.getChildren()));
+                    processedCount += node.size() - 1;
+                } else {
+                    push(node.getChildren(), child);
+                }
+
+            } else {
+
+                // Unknown element and its children are skipped
+                processedCount += node.size();
+            }
+
+            if (System.nanoTime() - startTime >= budgetNanos) break;
+        }
+
+        return pendingNodes.isEmpty();
+    }
+
+    /**
+     * @return Progress in the range of 0.0 - 1.0.
+     */
+    public float getProgress() {
+        return totalCount == 0 ? 1 : (float) processedCount / totalCount;
+    }
+
+    /**
+     * Push nodes to stack in reverse order to process them in document order.
+     */
+    private void push(List<XmlNode> nodes, Entity parent) {
+        for (int i = nodes.size() - 1; i >= 0; --i) {
+            pendingNodes.push(nodes.get(i));
+            pendingParents.push(parent);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.meganekkovr.xml;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.w3c.dom.Element;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed XML element which is not instantiated to {@link org.meganekkovr.Entity} yet.
+ * This is created by {@code XmlParser.parse*Node} methods and can be parsed on background thread.
+ * Use {@link XmlParser#createEntity(XmlNode)} or {@link XmlParser#createEntityTree(XmlNode)} to instantiate.
+ */
+public final class XmlNode {
+
+    private final Element element;
+    private final List<XmlNode> children = new ArrayList<>();
+    private int size = 1;
+
+    XmlNode(@NonNull Element element) {
+        this.element = element;
+    }
+
+    /**
+     * For internal use only.
+     *
+     * @return Detached element which has tag name and attributes of this node.
+     */
+    Element getElement() {
+        return element;
+    }
+
+    void add(XmlNode child) {
+        children.add(child);
+        size += child.size;
+    }
+
+    public String getTagName() {
+        return element.getTagName();
+    }
+
+    /**
+     * @param name Attribute name
+     * @return Attribute value or {@code null} if this does not have the attribute.
+     */
+    @Nullable
+    public String getAttribute(String name) {
+        return element.hasAttribute(name) ? element.getAttribute(name) : null;
+    }
+
+    /**
+     * @return Child nodes. Returned {@link List} can not be modified.
+     */
+    public List<XmlNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * @return Number of nodes in this subtree including this node.
+     */
+    public int size() {
+        return size;
+    }
+}
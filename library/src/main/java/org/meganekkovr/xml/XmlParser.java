@@ -1,31 +1,42 @@
 package org.meganekkovr.xml;
 
 import android.content.Context;
+import android.content.res.XmlResourceParser;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.XmlRes;
+import android.util.Xml;
 
 import org.meganekkovr.Entity;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 /**
  * This creates {@link Entity} from XML. XMLs are loaded from asset file, local file, or internet.
+ * XML is read with {@link XmlPullParser} and entities are created while reading.
+ * Whole document is never kept in memory.
  */
 public class XmlParser {
 
+    /**
+     * Attribute name to create children of invisible element on first {@link Entity#setVisible(boolean) setVisible(true)}.
+     */
+    public static final String LAZY_ATTRIBUTE = "lazy";
+
     private static final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
     private final Context context;
 
@@ -33,7 +44,16 @@ public class XmlParser {
         this.context = context;
     }
 
+    /**
+     * Create {@link Entity} from XML asset. If precompiled binary scene {@code assetName + ".mgns"}
+     * exists and is compiled from current XML, it is used instead of XML.
+     * See {@link BinarySceneLoader}.
+     */
     public Entity parseAsset(String assetName) throws XmlParserException {
+
+        Entity entity = new BinarySceneLoader(context).loadAsset(assetName);
+        if (entity != null) return entity;
+
         try (InputStream stream = context.getAssets().open(assetName)) {
             return parse(stream);
         } catch (IOException e) {
@@ -41,120 +61,331 @@ public class XmlParser {
         }
     }
 
+    /**
+     * Create {@link Entity} from XML file. If precompiled binary scene {@code file + ".mgns"}
+     * exists and is compiled from current XML, it is used instead of XML.
+     * See {@link BinarySceneLoader}.
+     */
     public Entity parseFile(File file) throws XmlParserException {
-        try {
-            Document document = documentBuilderFactory.newDocumentBuilder().parse(file);
-            return parse(document.getDocumentElement());
-        } catch (SAXException | IOException | ParserConfigurationException e) {
+
+        Entity entity = new BinarySceneLoader(context).loadFile(file);
+        if (entity != null) return entity;
+
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            return parse(stream);
+        } catch (IOException e) {
             throw new XmlParserException(e);
         }
     }
 
     public Entity parseUri(String uri) throws XmlParserException {
-        try {
-            Document document = documentBuilderFactory.newDocumentBuilder().parse(uri);
-            return parse(document.getDocumentElement());
-        } catch (SAXException | IOException | ParserConfigurationException e) {
+        try (InputStream stream = new BufferedInputStream(new URL(uri).openStream())) {
+            return parse(stream);
+        } catch (IOException e) {
             throw new XmlParserException(e);
         }
     }
 
     public Entity parse(InputStream is) throws XmlParserException {
         try {
-            Document document = documentBuilderFactory.newDocumentBuilder().parse(is);
-            return parse(document.getDocumentElement());
-        } catch (SAXException | IOException | ParserConfigurationException e) {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(is, null);
+            return parse(parser);
+        } catch (XmlPullParserException | IOException e) {
             throw new XmlParserException(e);
         }
     }
 
     public Entity parseXmlResource(@XmlRes int xmlRes) throws XmlParserException {
+        XmlResourceParser parser = context.getResources().getXml(xmlRes);
         try {
-            Document document = createDocumentFrom(context.getResources().getXml(xmlRes));
-            return parse(document.getDocumentElement());
-        } catch (ParserConfigurationException | IOException | XmlPullParserException e) {
+            return parse(parser);
+        } catch (IOException | XmlPullParserException e) {
             throw new XmlParserException(e);
+        } finally {
+            parser.close();
         }
     }
 
-    @Nullable
-    private Entity parse(@NonNull Node node) {
+    /**
+     * Parse XML asset without instantiating {@link Entity}. This can be called on background thread.
+     *
+     * @param assetName Asset name
+     * @return Root node
+     * @throws XmlParserException If XML is invalid or empty.
+     */
+    public XmlNode parseAssetNode(String assetName) throws XmlParserException {
+        try (InputStream stream = context.getAssets().open(assetName)) {
+            return parseNode(stream);
+        } catch (IOException e) {
+            throw new XmlParserException(e);
+        }
+    }
 
-        Entity entity = XmlPrimitiveFactory.getInstance().parse(node, context);
+    /**
+     * Same as {@link #parseAssetNode(String)} but XML is loaded from file.
+     */
+    public XmlNode parseFileNode(File file) throws XmlParserException {
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            return parseNode(stream);
+        } catch (IOException e) {
+            throw new XmlParserException(e);
+        }
+    }
 
-        // Ignore unknown element
-        if (entity == null) return null;
+    /**
+     * Same as {@link #parseAssetNode(String)} but XML is loaded from URI.
+     */
+    public XmlNode parseUriNode(String uri) throws XmlParserException {
+        try (InputStream stream = new BufferedInputStream(new URL(uri).openStream())) {
+            return parseNode(stream);
+        } catch (IOException e) {
+            throw new XmlParserException(e);
+        }
+    }
+
+    /**
+     * Same as {@link #parseAssetNode(String)} but XML is loaded from stream.
+     */
+    public XmlNode parseNode(InputStream is) throws XmlParserException {
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(is, null);
+            return parseNode(parser);
+        } catch (XmlPullParserException | IOException e) {
+            throw new XmlParserException(e);
+        }
+    }
+
+    /**
+     * Same as {@link #parseAssetNode(String)} but XML is loaded from resource.
+     */
+    public XmlNode parseXmlResourceNode(@XmlRes int xmlRes) throws XmlParserException {
+        XmlResourceParser parser = context.getResources().getXml(xmlRes);
+        try {
+            return parseNode(parser);
+        } catch (IOException | XmlPullParserException e) {
+            throw new XmlParserException(e);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Create single {@link Entity} from {@link XmlNode}. Children are not created.
+     *
+     * @param node XmlNode
+     * @return New entity or {@code null} if element is unknown.
+     */
+    @Nullable
+    public Entity createEntity(@NonNull XmlNode node) {
+
+        Element element = node.getElement();
+        Entity entity = XmlPrimitiveFactory.getInstance().parse(element, context);
 
         // Parse components
-        XmlAttributeParser.getInstance().parse(entity, node, context);
+        if (entity != null) {
+            XmlAttributeParser.getInstance().parse(entity, element, context);
+        }
 
-        // Parse children
-        NodeList list = node.getChildNodes();
-        for (int i = 0, len = list.getLength(); i < len; ++i) {
-            Node childNode = list.item(i);
+        return entity;
+    }
 
-            // Only process element node
-            if (childNode.getNodeType() == Node.ELEMENT_NODE) {
+    /**
+     * Create {@link Entity} tree from {@link XmlNode}.
+     *
+     * @param node XmlNode
+     * @return New entity or {@code null} if element is unknown.
+     */
+    @Nullable
+    public Entity createEntityTree(@NonNull XmlNode node) {
 
-                Entity childEntity = parse(childNode);
+        Entity entity = createEntity(node);
+        if (entity == null) return null;
 
-                if (childEntity != null) {
-                    entity.add(childEntity);
-                }
+        if (isLazy(node, entity)) {
+            entity.setContentInflater(new XmlContentInflater(this, node.getChildren()));
+            return entity;
+        }
+
+        for (XmlNode childNode : node.getChildren()) {
+            Entity child = createEntityTree(childNode);
+            if (child != null) {
+                entity.add(child);
             }
         }
 
         return entity;
     }
 
+    @NonNull
+    private XmlNode parseNode(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+
+        final Document document;
+        try {
+            document = documentBuilderFactory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new XmlPullParserException(e.getMessage(), parser, e);
+        }
+
+        // Move to root element
+        int type;
+        do {
+            type = parser.next();
+        } while (type != XmlPullParser.START_TAG && type != XmlPullParser.END_DOCUMENT);
+
+        if (type == XmlPullParser.END_DOCUMENT) {
+            throw new XmlPullParserException("XML has no element.");
+        }
+
+        return parseSubtree(parser, document);
+    }
+
     /**
-     * Create new {@link Document} from {@link XmlPullParser}.
+     * Read current element and its descendants as {@link XmlNode}.
      *
-     * @param parser
-     * @return
-     * @throws ParserConfigurationException
-     * @throws IOException
-     * @throws XmlPullParserException
+     * @param parser   XmlPullParser which is positioned at start tag. It will be positioned at matching end tag.
+     * @param document Owner document of elements.
+     * @return Node of current element
      */
     @NonNull
-    private static Document createDocumentFrom(@NonNull XmlPullParser parser) throws ParserConfigurationException, IOException, XmlPullParserException {
+    private static XmlNode parseSubtree(@NonNull XmlPullParser parser, @NonNull Document document) throws XmlPullParserException, IOException {
 
-        Document document = documentBuilderFactory.newDocumentBuilder().newDocument();
+        final Deque<XmlNode> parents = new ArrayDeque<>();
+        parents.push(new XmlNode(createElementFrom(parser, document)));
 
-        Node parent = document;
-        int type;
+        while (true) {
+
+            switch (parser.next()) {
+                case XmlPullParser.START_TAG:
+                    parents.push(new XmlNode(createElementFrom(parser, document)));
+                    break;
+
+                case XmlPullParser.END_TAG:
+
+                    // Add completed node to parent
+                    XmlNode node = parents.pop();
+                    XmlNode parent = parents.peek();
+                    if (parent == null) return node;
+                    parent.add(node);
+                    break;
+
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException("Unexpected end of document.");
+            }
+        }
+    }
+
+    /**
+     * @param node   XmlNode
+     * @param entity Entity created from node
+     * @return {@code true} if children of node should be created later.
+     */
+    static boolean isLazy(@NonNull XmlNode node, @NonNull Entity entity) {
+        return !entity.isVisible() && "true".equals(node.getAttribute(LAZY_ATTRIBUTE));
+    }
+
+    /**
+     * Create {@link Entity} tree from {@link XmlPullParser} events.
+     * {@link XmlPrimitiveFactory.XmlPrimitiveHandler} receives detached {@link Element} which has
+     * tag name and attributes of current element but has no child nodes.
+     *
+     * @param parser XmlPullParser
+     * @return Root entity or {@code null} if root element is unknown.
+     * @throws XmlPullParserException
+     * @throws IOException
+     */
+    @Nullable
+    private Entity parse(@NonNull XmlPullParser parser) throws XmlPullParserException, IOException {
+
+        final Document document;
+        try {
+            document = documentBuilderFactory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new XmlPullParserException(e.getMessage(), parser, e);
+        }
+
+        final Deque<Entity> parents = new ArrayDeque<>();
+        Entity root = null;
+
+        // Depth in unknown element
+        int skipDepth = 0;
 
         while (true) {
 
-            type = parser.next();
+            int type = parser.next();
             if (type == XmlPullParser.END_DOCUMENT) break;
 
             switch (type) {
 
-                case XmlPullParser.START_TAG:
-                    Element element = document.createElement(parser.getName());
+                case XmlPullParser.START_TAG: {
+
+                    // Ignore unknown element and its children
+                    if (skipDepth > 0) {
+                        ++skipDepth;
+                        break;
+                    }
 
-                    // Set attributes
-                    for (int i = 0; i < parser.getAttributeCount(); i++) {
-                        String attr = parser.getAttributeName(i);
-                        String value = parser.getAttributeValue(i);
-                        element.setAttribute(attr, value);
+                    Entity entity = XmlPrimitiveFactory.getInstance().parse(createElementFrom(parser, document), context);
+                    if (entity == null) {
+                        skipDepth = 1;
+                        break;
                     }
 
-                    // Add to parent
-                    parent.appendChild(element);
+                    // Parse components
+                    XmlAttributeParser.getInstance().parse(entity, parser, context);
+
+                    Entity parent = parents.peek();
+                    if (parent != null) {
+                        parent.add(entity);
+                    } else {
+                        root = entity;
+                    }
+
+                    // Keep children as XmlNodes until entity becomes visible
+                    if (!entity.isVisible() && "true".equals(parser.getAttributeValue(null, LAZY_ATTRIBUTE))) {
+                        XmlNode node = parseSubtree(parser, document);
+                        entity.setContentInflater(new XmlContentInflater(this, node.getChildren()));
+                        break;
+                    }
 
                     // I'm a parent
-                    parent = element;
+                    parents.push(entity);
                     break;
+                }
 
                 case XmlPullParser.END_TAG:
-                    // Next parent
-                    parent = parent.getParentNode();
+                    if (skipDepth > 0) {
+                        --skipDepth;
+                    } else {
+                        // Next parent
+                        parents.pop();
+                    }
                     break;
             }
         }
 
-        return document;
+        return root;
+    }
+
+    /**
+     * Create detached {@link Element} from current start tag of {@link XmlPullParser}.
+     * This is an adapter for {@link XmlPrimitiveFactory.XmlPrimitiveHandler}.
+     *
+     * @param parser   XmlPullParser which is positioned at start tag.
+     * @param document Owner document. Created element is not added to it.
+     * @return New element
+     */
+    @NonNull
+    static Element createElementFrom(@NonNull XmlPullParser parser, @NonNull Document document) {
+
+        Element element = document.createElement(parser.getName());
+
+        // Set attributes
+        for (int i = 0, len = parser.getAttributeCount(); i < len; i++) {
+            element.setAttribute(parser.getAttributeName(i), parser.getAttributeValue(i));
+        }
+
+        return element;
     }
 }
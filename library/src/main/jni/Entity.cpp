@@ -18,12 +18,25 @@
 
 namespace mgn {
 
-Entity::Entity() : surfaceDef(nullptr) {}
+Entity::Entity()
+    : sharedMatrix(nullptr), surfaceDef(nullptr), opacity(1.0f) {}
 
 Entity::~Entity() { delete surfaceDef; }
 
 void Entity::SetWorldModelMatrix(const Matrix4f &m) { this->modelMatrix = m; }
-const Matrix4f &Entity::GetWorldModelMatrix() { return modelMatrix; }
+
+void Entity::SetSharedWorldModelMatrix(const float *m) {
+  this->sharedMatrix = m;
+}
+
+const Matrix4f &Entity::GetWorldModelMatrix() {
+
+  // Read in place. Layout is same as Matrix4f.
+  if (sharedMatrix != nullptr) {
+    return *reinterpret_cast<const Matrix4f *>(sharedMatrix);
+  }
+  return modelMatrix;
+}
 
 ovrSurfaceDef *Entity::GetOrCreateSurfaceDef() {
 
@@ -42,6 +55,10 @@ ovrSurfaceDef *Entity::GetOrCreateSurfaceDef() {
 }
 
 ovrSurfaceDef *Entity::GetSurfaceDef() { return surfaceDef; }
+
+void Entity::SetOpacity(float opacity) { this->opacity = opacity; }
+
+float &Entity::GetOpacity() { return opacity; }
 } // namespace mgn
 
 /*
@@ -81,4 +98,22 @@ void Java_org_meganekkovr_Entity_setWorldModelMatrix(JNIEnv *jni, jclass clazz,
   mgn::Entity *entity = reinterpret_cast<mgn::Entity *>(entityPtr);
   entity->SetWorldModelMatrix(m);
 }
+
+void Java_org_meganekkovr_Entity_setSharedWorldModelMatrix(JNIEnv *jni,
+                                                           jclass clazz,
+                                                           jlong entityPtr,
+                                                           jobject buffer,
+                                                           jint offset) {
+
+  mgn::Entity *entity = reinterpret_cast<mgn::Entity *>(entityPtr);
+
+  if (buffer == nullptr) {
+    entity->SetSharedWorldModelMatrix(nullptr);
+    return;
+  }
+
+  jbyte *address = static_cast<jbyte *>(jni->GetDirectBufferAddress(buffer));
+  entity->SetSharedWorldModelMatrix(
+      reinterpret_cast<const float *>(address + offset));
+}
 } // extern "C"
\ No newline at end of file
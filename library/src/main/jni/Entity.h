@@ -29,13 +29,22 @@ public:
   virtual ~Entity();
 
   void SetWorldModelMatrix(const Matrix4f &m);
+  void SetSharedWorldModelMatrix(const float *m);
   const Matrix4f &GetWorldModelMatrix();
   ovrSurfaceDef *GetOrCreateSurfaceDef();
   ovrSurfaceDef *GetSurfaceDef();
+  void SetOpacity(float opacity);
+  float &GetOpacity();
 
 private:
   Matrix4f modelMatrix;
+
+  // Row-major matrix in direct buffer of Java side, or nullptr
+  const float *sharedMatrix;
   ovrSurfaceDef *surfaceDef;
+
+  // Rendering opacity. Kept per entity because copies share texture.
+  float opacity;
 };
 }
 
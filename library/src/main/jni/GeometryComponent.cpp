@@ -14,19 +14,235 @@
  * limitations under the License.
  */
 #include "GeometryComponent.h"
+#include "GlProgram.h"
+#include "Kernel/OVR_GlUtils.h"
 #include "util/convert.h"
 
+#include <algorithm>
+
+namespace {
+
+const int ATTRIBUTE_COUNT = 4;
+
+// Position, normal, color and uv. Same order as VertexLayout in Java.
+const GLuint ATTRIBUTE_LOCATIONS[ATTRIBUTE_COUNT] = {
+    VERTEX_ATTRIBUTE_LOCATION_POSITION, VERTEX_ATTRIBUTE_LOCATION_NORMAL,
+    VERTEX_ATTRIBUTE_LOCATION_COLOR, VERTEX_ATTRIBUTE_LOCATION_UV0};
+const GLint ATTRIBUTE_COMPONENTS[ATTRIBUTE_COUNT] = {3, 3, 4, 2};
+
+/**
+ * Set attribute pointers of currently bound VAO to currently bound
+ * GL_ARRAY_BUFFER. Offset is -1 for missing attribute.
+ */
+void SetVertexAttributes(const jint *offsets, const jint *strides) {
+  for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+    if (offsets[i] < 0) {
+      glDisableVertexAttribArray(ATTRIBUTE_LOCATIONS[i]);
+      continue;
+    }
+
+    glEnableVertexAttribArray(ATTRIBUTE_LOCATIONS[i]);
+    glVertexAttribPointer(ATTRIBUTE_LOCATIONS[i], ATTRIBUTE_COMPONENTS[i],
+                          GL_FLOAT, false, strides[i],
+                          reinterpret_cast<void *>(offsets[i]));
+  }
+}
+
+void ResetVertexAttributes() {
+  for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+    glDisableVertexAttribArray(ATTRIBUTE_LOCATIONS[i]);
+  }
+}
+
+/**
+ * Free geometries. Slots of dynamic geometry share index buffer of first one.
+ */
+void FreeGeometries(std::vector<GlGeometry> &geometries) {
+  glDeleteBuffers(1, &geometries[0].indexBuffer);
+  for (GlGeometry &geo : geometries) {
+    glDeleteBuffers(1, &geo.vertexBuffer);
+    glDeleteVertexArrays(1, &geo.vertexArrayObject);
+  }
+}
+
+Bounds3f CalculateBounds(const uint8_t *positions, jint stride,
+                         jint vertexCount) {
+  Bounds3f bounds;
+  bounds.Clear();
+  for (int i = 0; i < vertexCount; i++, positions += stride) {
+    bounds.AddPoint(*reinterpret_cast<const Vector3f *>(positions));
+  }
+  return bounds;
+}
+}
+
 namespace mgn {
 
-GeometryComponent::GeometryComponent() {}
+GeometryComponent::GeometryComponent() : current(0), pending(false) {}
 
-GeometryComponent::~GeometryComponent() { geometry.Free(); }
+GeometryComponent::~GeometryComponent() {
+
+  // No copy is left. Nothing draws these geometries any more.
+  Retire();
+  for (Retired &entry : retired) {
+    if (entry.fence != nullptr) {
+      glDeleteSync(entry.fence);
+    }
+    FreeGeometries(entry.geometries);
+  }
+}
 
 GlGeometry &GeometryComponent::GetGeometry() { return geometry; }
 
 void GeometryComponent::SetGeometry(const GlGeometry &geo) {
+  Retire();
   this->geometry = geo;
 }
+
+void GeometryComponent::SetDynamicGeometry(const std::vector<GlGeometry> &slots,
+                                           const uint8_t *vertices,
+                                           size_t size) {
+  Retire();
+  this->slots = slots;
+  this->shadow.assign(vertices, vertices + size);
+  this->dirtyRanges.assign(slots.size(), Range{0, 0});
+  this->fences.assign(slots.size(), nullptr);
+  this->current = 0;
+  this->geometry = slots[0];
+}
+
+void GeometryComponent::ReleaseRetired() {
+  for (Retired &entry : retired) {
+    if (entry.fence == nullptr) {
+      entry.fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+  }
+}
+
+bool GeometryComponent::CollectRetired() {
+
+  for (size_t i = 0; i < retired.size();) {
+    Retired &entry = retired[i];
+    if (entry.fence == nullptr ||
+        glClientWaitSync(entry.fence, 0, 0) == GL_TIMEOUT_EXPIRED) {
+      i++;
+      continue;
+    }
+
+    glDeleteSync(entry.fence);
+    FreeGeometries(entry.geometries);
+    retired.erase(retired.begin() + i);
+  }
+
+  return !retired.empty();
+}
+
+bool GeometryComponent::IsDynamic() const { return !slots.empty(); }
+
+void GeometryComponent::UpdateVertices(size_t offset, const void *data,
+                                       size_t size) {
+  memcpy(GetDirtyRange(offset, size), data, size);
+}
+
+uint8_t *GeometryComponent::GetDirtyRange(size_t offset, size_t size) {
+
+  // Every slot has to receive this range before it is shown
+  for (Range &range : dirtyRanges) {
+    if (range.begin >= range.end) {
+      range.begin = offset;
+      range.end = offset + size;
+    } else {
+      range.begin = std::min(range.begin, offset);
+      range.end = std::max(range.end, offset + size);
+    }
+  }
+  pending = true;
+  return shadow.data() + offset;
+}
+
+int GeometryComponent::Flush() {
+
+  if (!pending) {
+    return current;
+  }
+
+  const int next = (current + 1) % slots.size();
+  GlGeometry &slot = slots[next];
+  Range &range = dirtyRanges[next];
+  const bool single = slots.size() == 1;
+
+  // GPU may still read next slot. Try again in next frame instead of waiting.
+  GLsync &fence = fences[next];
+  if (fence != nullptr) {
+    if (glClientWaitSync(fence, 0, 0) == GL_TIMEOUT_EXPIRED) {
+      return current;
+    }
+    glDeleteSync(fence);
+    fence = nullptr;
+  }
+  pending = false;
+
+  if (range.begin < range.end) {
+
+    // Single buffer is always read by GPU. Let driver synchronize it.
+    const GLbitfield access =
+        single ? GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT
+               : GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT |
+                     GL_MAP_UNSYNCHRONIZED_BIT;
+
+    glBindBuffer(GL_ARRAY_BUFFER, slot.vertexBuffer);
+    void *dest = glMapBufferRange(GL_ARRAY_BUFFER, range.begin,
+                                  range.end - range.begin, access);
+    if (dest != nullptr) {
+      memcpy(dest, shadow.data() + range.begin, range.end - range.begin);
+      glUnmapBuffer(GL_ARRAY_BUFFER);
+    } else {
+      glBufferSubData(GL_ARRAY_BUFFER, range.begin, range.end - range.begin,
+                      shadow.data() + range.begin);
+    }
+    glBindBuffer(GL_ARRAY_BUFFER, 0);
+    range.begin = range.end = 0;
+  }
+
+  // Draws of previous slot are already issued and it is not drawn any more.
+  // Fence tells when GPU has finished reading it.
+  if (!single) {
+    fences[current] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+  }
+
+  current = next;
+  geometry = slot;
+  return current;
+}
+
+void GeometryComponent::Retire() {
+
+  Retired entry;
+  entry.fence = nullptr;
+
+  if (IsDynamic()) {
+    entry.geometries = slots;
+    for (GLsync fence : fences) {
+      if (fence != nullptr) {
+        glDeleteSync(fence);
+      }
+    }
+
+    slots.clear();
+    fences.clear();
+    dirtyRanges.clear();
+    shadow.clear();
+    current = 0;
+    pending = false;
+  } else if (geometry.vertexArrayObject != 0) {
+    entry.geometries.push_back(geometry);
+  }
+
+  geometry = GlGeometry();
+  if (!entry.geometries.empty()) {
+    retired.push_back(entry);
+  }
+}
 }
 
 /*
@@ -65,6 +281,218 @@ void Java_org_meganekkovr_GeometryComponent_build(
   geometry->SetGeometry(GlGeometry(attribs, indices));
 }
 
+void Java_org_meganekkovr_GeometryComponent_buildBuffers(
+    JNIEnv *env, jclass clazz, jlong nativePtr, jint vertexCount,
+    jobject jPositions, jint positionOffset, jint positionStride,
+    jobject jNormals, jint normalOffset, jint normalStride, jobject jColors,
+    jint colorOffset, jint colorStride, jobject jUvs, jint uvOffset,
+    jint uvStride, jobject jIndices, jint indexOffset, jint indexCount,
+    jfloatArray jBounds) {
+
+  const jobject buffers[ATTRIBUTE_COUNT] = {jPositions, jNormals, jColors,
+                                            jUvs};
+  jint offsets[ATTRIBUTE_COUNT] = {positionOffset, normalOffset, colorOffset,
+                                   uvOffset};
+  const jint strides[ATTRIBUTE_COUNT] = {positionStride, normalStride,
+                                         colorStride, uvStride};
+
+  // Find distinct source buffers. Interleaved attributes share one buffer.
+  // Buffers are read in place. No copy is made on Java heap.
+  const uint8_t *sources[ATTRIBUTE_COUNT];
+  size_t sourceSizes[ATTRIBUTE_COUNT];
+  jint sourceOffsets[ATTRIBUTE_COUNT];
+  int attributeSources[ATTRIBUTE_COUNT];
+  int sourceCount = 0;
+
+  for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+    if (buffers[i] == nullptr) {
+      offsets[i] = -1;
+      continue;
+    }
+
+    const uint8_t *address =
+        static_cast<const uint8_t *>(env->GetDirectBufferAddress(buffers[i]));
+    const size_t end = vertexCount > 0
+                           ? offsets[i] + (vertexCount - 1) * strides[i] +
+                                 ATTRIBUTE_COMPONENTS[i] * sizeof(float)
+                           : 0;
+
+    int source = 0;
+    while (source < sourceCount && sources[source] != address) {
+      source++;
+    }
+    if (source == sourceCount) {
+      sources[source] = address;
+      sourceSizes[source] = 0;
+      sourceCount++;
+    }
+    sourceSizes[source] = std::max(sourceSizes[source], end);
+    attributeSources[i] = source;
+  }
+
+  size_t vertexBufferSize = 0;
+  for (int i = 0; i < sourceCount; i++) {
+    sourceOffsets[i] = vertexBufferSize;
+    vertexBufferSize += (sourceSizes[i] + 3) & ~3;
+  }
+
+  const uint8_t *indices =
+      static_cast<const uint8_t *>(env->GetDirectBufferAddress(jIndices)) +
+      indexOffset;
+
+  GlGeometry geo;
+  geo.vertexCount = vertexCount;
+  geo.indexCount = indexCount;
+
+  if (jBounds != nullptr) {
+    jfloat bounds[6];
+    env->GetFloatArrayRegion(jBounds, 0, 6, bounds);
+    geo.localBounds = Bounds3f(Vector3f(bounds[0], bounds[1], bounds[2]),
+                               Vector3f(bounds[3], bounds[4], bounds[5]));
+  } else {
+    geo.localBounds = CalculateBounds(
+        sources[attributeSources[0]] + offsets[0], strides[0], vertexCount);
+  }
+
+  glGenBuffers(1, &geo.vertexBuffer);
+  glGenBuffers(1, &geo.indexBuffer);
+  glGenVertexArrays(1, &geo.vertexArrayObject);
+  glBindVertexArray(geo.vertexArrayObject);
+
+  glBindBuffer(GL_ARRAY_BUFFER, geo.vertexBuffer);
+  if (sourceCount == 1) {
+    glBufferData(GL_ARRAY_BUFFER, sourceSizes[0], sources[0], GL_STATIC_DRAW);
+  } else {
+    glBufferData(GL_ARRAY_BUFFER, vertexBufferSize, nullptr, GL_STATIC_DRAW);
+    for (int i = 0; i < sourceCount; i++) {
+      glBufferSubData(GL_ARRAY_BUFFER, sourceOffsets[i], sourceSizes[i],
+                      sources[i]);
+    }
+  }
+
+  // Offsets in packed vertex buffer
+  for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+    if (offsets[i] >= 0) {
+      offsets[i] += sourceOffsets[attributeSources[i]];
+    }
+  }
+  SetVertexAttributes(offsets, strides);
+
+  glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, geo.indexBuffer);
+  glBufferData(GL_ELEMENT_ARRAY_BUFFER, indexCount * sizeof(TriangleIndex),
+               indices, GL_STATIC_DRAW);
+
+  glBindVertexArray(0);
+  ResetVertexAttributes();
+
+  mgn::GeometryComponent *geometry =
+      reinterpret_cast<mgn::GeometryComponent *>(nativePtr);
+  geometry->SetGeometry(geo);
+}
+
+void Java_org_meganekkovr_GeometryComponent_buildDynamic(
+    JNIEnv *env, jclass clazz, jlong nativePtr, jint vertexCount,
+    jobject jVertices, jint vertexOffset, jint vertexSize, jintArray jOffsets,
+    jintArray jStrides, jobject jIndices, jint indexOffset, jint indexCount,
+    jint bufferCount) {
+
+  const uint8_t *vertices =
+      static_cast<const uint8_t *>(env->GetDirectBufferAddress(jVertices)) +
+      vertexOffset;
+  const uint8_t *indices =
+      static_cast<const uint8_t *>(env->GetDirectBufferAddress(jIndices)) +
+      indexOffset;
+
+  jint offsets[ATTRIBUTE_COUNT];
+  jint strides[ATTRIBUTE_COUNT];
+  env->GetIntArrayRegion(jOffsets, 0, ATTRIBUTE_COUNT, offsets);
+  env->GetIntArrayRegion(jStrides, 0, ATTRIBUTE_COUNT, strides);
+
+  GLuint indexBuffer;
+  glGenBuffers(1, &indexBuffer);
+
+  const Bounds3f bounds =
+      CalculateBounds(vertices + offsets[0], strides[0], vertexCount);
+
+  // Each slot has own vertex buffer and VAO, and shares index buffer.
+  std::vector<GlGeometry> slots(bufferCount);
+  for (GlGeometry &slot : slots) {
+    slot.vertexCount = vertexCount;
+    slot.indexCount = indexCount;
+    slot.localBounds = bounds;
+    slot.indexBuffer = indexBuffer;
+
+    glGenBuffers(1, &slot.vertexBuffer);
+    glGenVertexArrays(1, &slot.vertexArrayObject);
+    glBindVertexArray(slot.vertexArrayObject);
+
+    glBindBuffer(GL_ARRAY_BUFFER, slot.vertexBuffer);
+    glBufferData(GL_ARRAY_BUFFER, vertexSize, vertices, GL_DYNAMIC_DRAW);
+    SetVertexAttributes(offsets, strides);
+
+    glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+    if (&slot == &slots[0]) {
+      glBufferData(GL_ELEMENT_ARRAY_BUFFER, indexCount * sizeof(TriangleIndex),
+                   indices, GL_STATIC_DRAW);
+    }
+  }
+
+  glBindVertexArray(0);
+  ResetVertexAttributes();
+
+  mgn::GeometryComponent *geometry =
+      reinterpret_cast<mgn::GeometryComponent *>(nativePtr);
+  geometry->SetDynamicGeometry(slots, vertices, vertexSize);
+}
+
+void Java_org_meganekkovr_GeometryComponent_updateVertices(
+    JNIEnv *env, jclass clazz, jlong nativePtr, jint offset, jobject jData,
+    jint dataOffset, jint size) {
+
+  const uint8_t *data =
+      static_cast<const uint8_t *>(env->GetDirectBufferAddress(jData)) +
+      dataOffset;
+
+  mgn::GeometryComponent *geometry =
+      reinterpret_cast<mgn::GeometryComponent *>(nativePtr);
+  geometry->UpdateVertices(offset, data, size);
+}
+
+void Java_org_meganekkovr_GeometryComponent_updateVerticesFloat(
+    JNIEnv *env, jclass clazz, jlong nativePtr, jint offset,
+    jfloatArray jValues, jint start, jint count) {
+
+  mgn::GeometryComponent *geometry =
+      reinterpret_cast<mgn::GeometryComponent *>(nativePtr);
+
+  // Copy directly into CPU side vertices
+  jfloat *dest = reinterpret_cast<jfloat *>(
+      geometry->GetDirtyRange(offset, count * sizeof(jfloat)));
+  env->GetFloatArrayRegion(jValues, start, count, dest);
+}
+
+void Java_org_meganekkovr_GeometryComponent_releaseRetired(JNIEnv *env,
+                                                           jclass clazz,
+                                                           jlong nativePtr) {
+  mgn::GeometryComponent *geometry =
+      reinterpret_cast<mgn::GeometryComponent *>(nativePtr);
+  geometry->ReleaseRetired();
+}
+
+jboolean Java_org_meganekkovr_GeometryComponent_collectRetired(
+    JNIEnv *env, jclass clazz, jlong nativePtr) {
+  mgn::GeometryComponent *geometry =
+      reinterpret_cast<mgn::GeometryComponent *>(nativePtr);
+  return geometry->CollectRetired();
+}
+
+jint Java_org_meganekkovr_GeometryComponent_flush(JNIEnv *env, jclass clazz,
+                                                  jlong nativePtr) {
+  mgn::GeometryComponent *geometry =
+      reinterpret_cast<mgn::GeometryComponent *>(nativePtr);
+  return geometry->Flush();
+}
+
 void Java_org_meganekkovr_GeometryComponent_setEntityGeometry(JNIEnv *jni,
                                                               jclass clazz,
                                                               jlong entityPtr,
@@ -78,4 +506,14 @@ void Java_org_meganekkovr_GeometryComponent_setEntityGeometry(JNIEnv *jni,
   surfaceDef->geo = geo->GetGeometry();
 }
 
+void Java_org_meganekkovr_GeometryComponent_removeEntityGeometry(
+    JNIEnv *jni, jclass clazz, jlong entityPtr) {
+
+  mgn::Entity *entity = reinterpret_cast<mgn::Entity *>(entityPtr);
+  ovrSurfaceDef *surfaceDef = entity->GetSurfaceDef();
+  if (surfaceDef != nullptr) {
+    surfaceDef->geo = GlGeometry();
+  }
+}
+
 } // extern "C"
\ No newline at end of file
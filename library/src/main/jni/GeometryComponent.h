@@ -19,6 +19,8 @@
 #include "Entity.h"
 #include "HybridObject.h"
 
+#include <vector>
+
 using namespace OVR;
 
 namespace mgn {
@@ -29,10 +31,60 @@ public:
   ~GeometryComponent();
 
   GlGeometry &GetGeometry();
+
+  /*
+   * Previous geometry is retired instead of being freed, because entities of
+   * copies still draw it until they are bound to new one.
+   */
   void SetGeometry(const GlGeometry &geo);
 
+  /*
+   * Dynamic geometry. Vertices are kept in CPU memory and streamed to one of
+   * ring buffers on Flush. Slot which GPU may still read is skipped until its
+   * fence is signaled, so GPU reading previous frames is never waited.
+   */
+  void SetDynamicGeometry(const std::vector<GlGeometry> &slots,
+                          const uint8_t *vertices, size_t size);
+  bool IsDynamic() const;
+  void UpdateVertices(size_t offset, const void *data, size_t size);
+  uint8_t *GetDirtyRange(size_t offset, size_t size);
+  int Flush();
+
+  /*
+   * Called when no entity is bound to retired geometries. They are freed by
+   * CollectRetired after GPU finishes reading them.
+   */
+  void ReleaseRetired();
+
+  /*
+   * Free released geometries which GPU has finished reading.
+   * Returns true if some retired geometries are left.
+   */
+  bool CollectRetired();
+
 private:
+  struct Range {
+    size_t begin;
+    size_t end;
+  };
+
+  struct Retired {
+    std::vector<GlGeometry> geometries;
+    GLsync fence; // Set when released
+  };
+
+  void Retire();
+
   GlGeometry geometry;
+
+  std::vector<GlGeometry> slots;
+  std::vector<Range> dirtyRanges; // Per slot
+  std::vector<GLsync> fences;     // Per slot. Set when slot is replaced.
+  std::vector<uint8_t> shadow;
+  int current;
+  bool pending;
+
+  std::vector<Retired> retired;
 };
 }
 
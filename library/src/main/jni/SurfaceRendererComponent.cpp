@@ -20,7 +20,7 @@
 namespace mgn {
 
 SurfaceRendererComponent::SurfaceRendererComponent(JNIEnv *jni)
-    : jni(jni), surfaceTexture(jni), opacity(1.0f) {
+    : jni(jni), surfaceTexture(jni) {
 
   // Reference: SurfaceTexture.h
   // Get Surface class
@@ -93,10 +93,6 @@ jobject SurfaceRendererComponent::GetSurfaceTexture() {
 jobject SurfaceRendererComponent::GetSurface() { return surface; }
 
 GlTexture &SurfaceRendererComponent::GetTexture() { return texture; }
-void SurfaceRendererComponent::SetOpacity(float opacity) {
-  this->opacity = opacity;
-}
-float &SurfaceRendererComponent::GetOpacity() { return opacity; }
 
 void SurfaceRendererComponent::SetStereoMode(StereoMode stereoMode) {
   this->stereoMode = stereoMode;
@@ -187,7 +183,7 @@ void Java_org_meganekkovr_SurfaceRendererComponent_setEntityTexture(
       &sur->programMatrices[0];
   surfaceDef->graphicsCommand.UniformData[mgn::Shader::PARM_TEXM].Count = 2;
   surfaceDef->graphicsCommand.UniformData[mgn::Shader::PARM_OPACITY].Data =
-      &sur->GetOpacity();
+      &entity->GetOpacity();
   surfaceDef->graphicsCommand.UniformData[mgn::Shader::PARM_TEXTURE].Data =
       &sur->GetTexture();
 }
@@ -210,12 +206,11 @@ void Java_org_meganekkovr_SurfaceRendererComponent_removeEntityTexture(
 
 void Java_org_meganekkovr_SurfaceRendererComponent_setOpacity(JNIEnv *jni,
                                                               jobject thiz,
-                                                              jlong nativePtr,
+                                                              jlong entityPtr,
                                                               jfloat opacity) {
 
-  mgn::SurfaceRendererComponent *sur =
-      reinterpret_cast<mgn::SurfaceRendererComponent *>(nativePtr);
-  sur->SetOpacity(opacity);
+  mgn::Entity *entity = reinterpret_cast<mgn::Entity *>(entityPtr);
+  entity->SetOpacity(opacity);
 }
 
 void Java_org_meganekkovr_SurfaceRendererComponent_setStereoMode(
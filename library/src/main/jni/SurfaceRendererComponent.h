@@ -44,8 +44,6 @@ public:
   jobject GetSurfaceTexture();
   jobject GetSurface();
   GlTexture &GetTexture();
-  void SetOpacity(float opacity);
-  float &GetOpacity();
   void SetStereoMode(StereoMode stereoMode);
   StereoMode GetStereoMode();
   Matrix4f programMatrices[2]; // 0: For left eye, 1: For right eye
@@ -54,7 +52,6 @@ private:
   SurfaceTexture surfaceTexture;
   jobject surface;
   GlTexture texture;
-  float opacity;
   StereoMode stereoMode;
 };
 
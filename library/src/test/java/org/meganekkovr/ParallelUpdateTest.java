@@ -0,0 +1,219 @@
+package org.meganekkovr;
+
+import org.joml.Quaternionf;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Parallel update must give same result as serial update. Entities in these trees have neither
+ * {@link GeometryComponent} nor {@link SurfaceRendererComponent}, so they don't make native calls.
+ */
+public class ParallelUpdateTest {
+
+    private static final int FRAME_COUNT = 30;
+
+    /**
+     * Frame input without native frame.
+     */
+    private static class TestFrameInput extends FrameInput {
+
+        int frameNumber;
+
+        TestFrameInput() {
+            super(0);
+        }
+
+        @Override
+        public double getPredictedDisplayTimeInSeconds() {
+            return frameNumber / 60.0;
+        }
+
+        @Override
+        public float getDeltaSeconds() {
+            return 1 / 60.0f;
+        }
+
+        @Override
+        public int getFrameNumber() {
+            return frameNumber;
+        }
+
+        @Override
+        public float getSwipeFraction() {
+            return 0;
+        }
+
+        @Override
+        public int getButtonState() {
+            return 0;
+        }
+
+        @Override
+        public int getButtonPressed() {
+            return 0;
+        }
+
+        @Override
+        public int getButtonReleased() {
+            return 0;
+        }
+    }
+
+    /**
+     * Moves its own entity. Result depends only on frame and its parameters.
+     */
+    private static class MotionComponent extends Component {
+
+        private final float speed;
+        private final float phase;
+        private final int blinkInterval;
+        private final Quaternionf rotation = new Quaternionf();
+
+        MotionComponent(Random random) {
+            this.speed = random.nextFloat() * 4;
+            this.phase = random.nextFloat() * 6;
+            this.blinkInterval = random.nextInt(4) == 0 ? 2 + random.nextInt(5) : 0;
+        }
+
+        @Override
+        public void update(FrameInput frame) {
+
+            final Entity entity = getEntity();
+            final float t = (float) frame.getPredictedDisplayTimeInSeconds() * speed + phase;
+            entity.setPosition((float) Math.sin(t), (float) Math.cos(t) * 2, -t);
+            entity.setRotation(rotation.identity().rotateXYZ(t, t * 0.5f, t * 0.25f));
+            entity.setScale(1 + 0.5f * (float) Math.sin(t * 3), 1, 1.5f);
+            entity.setOpacity(0.5f + 0.5f * (float) Math.cos(t));
+            if (blinkInterval > 0) {
+                entity.setVisible(frame.getFrameNumber() % blinkInterval != 0);
+            }
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+    }
+
+    /**
+     * Changes its parent, so it must be updated in same order as serial update.
+     */
+    private static class ParentScalingComponent extends Component {
+
+        @Override
+        public void update(FrameInput frame) {
+            final Entity parent = getEntity().getParent();
+            if (parent != null) {
+                parent.setScaleY(1 + 0.01f * (frame.getFrameNumber() % 10));
+            }
+        }
+    }
+
+    /**
+     * Entity which overrides update is always updated on GL thread.
+     */
+    private static class SpinningEntity extends Entity {
+
+        @Override
+        public void update(FrameInput frame) {
+            setRotation(new Quaternionf().rotateZ(frame.getFrameNumber() * 0.1f));
+            super.update(frame);
+        }
+    }
+
+    @Test
+    public void parallelUpdateMatchesSerialUpdate() {
+        for (long seed = 0; seed < 4; ++seed) {
+            assertSameResult(seed, 3000, 1);
+        }
+    }
+
+    @Test
+    public void parallelUpdateMatchesSerialUpdateWithDefaultMinParallelSize() {
+        assertSameResult(100, 5000, 256);
+    }
+
+    private static void assertSameResult(long seed, int entityCount, int minParallelSize) {
+
+        final Scene serial = createScene(seed, entityCount);
+        final Scene parallel = createScene(seed, entityCount);
+        parallel.setParallelUpdate(true);
+        parallel.setMinParallelSize(minParallelSize);
+
+        final List<Entity> serialEntities = collect(serial, new ArrayList<Entity>());
+        final List<Entity> parallelEntities = collect(parallel, new ArrayList<Entity>());
+        assertEquals(serialEntities.size(), parallelEntities.size());
+
+        final TestFrameInput frame = new TestFrameInput();
+        final float[] expected = new float[16];
+        final float[] actual = new float[16];
+
+        for (int frameNumber = 1; frameNumber <= FRAME_COUNT; ++frameNumber) {
+
+            frame.frameNumber = frameNumber;
+            serial.update(frame);
+            parallel.update(frame);
+
+            for (int i = 0, size = serialEntities.size(); i < size; ++i) {
+
+                final Entity s = serialEntities.get(i);
+                final Entity p = parallelEntities.get(i);
+                final String message = "seed " + seed + ", frame " + frameNumber + ", entity " + i;
+
+                s.getWorldModelMatrix().get(expected);
+                p.getWorldModelMatrix().get(actual);
+                assertArrayEquals(message, expected, actual, 0);
+                assertEquals(message, s.getRenderingOpacity(), p.getRenderingOpacity(), 0);
+                assertEquals(message, s.isShown(), p.isShown());
+            }
+        }
+    }
+
+    /**
+     * Build random tree. Same seed builds same tree.
+     */
+    private static Scene createScene(long seed, int entityCount) {
+
+        final Random random = new Random(seed);
+        final Scene scene = new Scene();
+        final List<Entity> entities = new ArrayList<>();
+        entities.add(scene);
+
+        while (entities.size() < entityCount) {
+
+            // Prefer recent entities to make deep subtrees
+            final int index = Math.max(0, entities.size() - 1 - random.nextInt(Math.min(entities.size(), 50)));
+            final Entity parent = entities.get(random.nextInt(8) == 0 ? random.nextInt(entities.size()) : index);
+
+            final Entity entity = random.nextInt(200) == 0 ? new SpinningEntity() : new Entity();
+            entity.setPosition(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            entity.setOpacity(random.nextFloat());
+            entity.setVisible(random.nextInt(20) != 0);
+            if (random.nextInt(3) == 0) {
+                entity.add(new MotionComponent(random));
+            }
+            if (random.nextInt(100) == 0) {
+                entity.add(new ParentScalingComponent());
+            }
+
+            parent.add(entity);
+            entities.add(entity);
+        }
+
+        return scene;
+    }
+
+    private static List<Entity> collect(Entity entity, List<Entity> list) {
+        list.add(entity);
+        for (Entity child : entity.getChildren()) {
+            collect(child, list);
+        }
+        return list;
+    }
+}
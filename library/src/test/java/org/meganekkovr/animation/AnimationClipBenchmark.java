@@ -0,0 +1,78 @@
+package org.meganekkovr.animation;
+
+import org.joml.Quaternionf;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Timing harness of {@link AnimationClip#sample(float, int[], float[])}. This reports time per track
+ * and doesn't fail on slow machines. Compare results before and after changing the sampler.
+ */
+public class AnimationClipBenchmark {
+
+    private static final int TRACK_COUNT = 64;
+    private static final int KEY_COUNT = 240;
+    private static final int FRAME_COUNT = 20000;
+    private static final int RUN_COUNT = 5;
+
+    private static AnimationClip createClip() {
+
+        final Random random = new Random(1);
+        final AnimationClip.Builder builder = new AnimationClip.Builder();
+        final Quaternionf q = new Quaternionf();
+
+        for (int track = 0; track < TRACK_COUNT; ++track) {
+            final int property = track % 4;
+            final float[] times = new float[KEY_COUNT];
+            final float[] values = new float[KEY_COUNT * AnimationClip.components(property)];
+
+            for (int i = 0; i < KEY_COUNT; ++i) {
+                times[i] = i / 30.0f;
+                if (property == TweenEngine.ROTATION) {
+                    q.identity().rotateXYZ(random.nextFloat(), random.nextFloat(), random.nextFloat());
+                    values[i * 4] = q.x;
+                    values[i * 4 + 1] = q.y;
+                    values[i * 4 + 2] = q.z;
+                    values[i * 4 + 3] = q.w;
+                }
+            }
+            if (property != TweenEngine.ROTATION) {
+                for (int i = 0; i < values.length; ++i) {
+                    values[i] = random.nextFloat() * 10;
+                }
+            }
+
+            builder.addTrack(track, property, times, values);
+        }
+
+        return builder.build();
+    }
+
+    @Test
+    public void sampleForward() {
+
+        final AnimationClip clip = createClip();
+        final int[] cursors = new int[clip.getTrackCount()];
+        final float[] out = new float[clip.getTrackCount() * 4];
+        final float step = clip.getDuration() / FRAME_COUNT;
+
+        // First run warms up JIT
+        long best = Long.MAX_VALUE;
+        float sum = 0;
+        for (int run = 0; run < RUN_COUNT; ++run) {
+            final long start = System.nanoTime();
+            for (int frame = 0; frame < FRAME_COUNT; ++frame) {
+                clip.sample(frame * step, cursors, out);
+                sum += out[0];
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.printf("AnimationClip.sample: %d tracks, %.1f ns/track%n",
+                TRACK_COUNT, (double) best / FRAME_COUNT / TRACK_COUNT);
+        assertTrue(!Float.isNaN(sum));
+    }
+}
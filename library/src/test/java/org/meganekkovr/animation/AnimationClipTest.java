@@ -0,0 +1,160 @@
+package org.meganekkovr.animation;
+
+import org.joml.Quaternionf;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AnimationClipTest {
+
+    private static AnimationClip createClip() {
+        return new AnimationClip.Builder()
+                .addTrack(0, TweenEngine.POSITION, new float[]{0, 1, 3}, new float[]{0, 0, -10, 2, 4, -5, -2, 1, 0})
+                .addTrack("child", TweenEngine.OPACITY, new float[]{0.5f, 2}, new float[]{0, 1})
+                .addTrack("child", TweenEngine.SCALE, new float[]{0}, new float[]{2, 2, 2})
+                .build();
+    }
+
+    /**
+     * Keys are restored within quantization error of their ranges.
+     */
+    @Test
+    public void sampleAtKeysRestoresValues() {
+
+        AnimationClip clip = createClip();
+        assertEquals(3, clip.getDuration(), 0);
+        assertEquals(3, clip.getTrackCount());
+        assertEquals("child".hashCode(), clip.getTrackTarget(1));
+        assertEquals(TweenEngine.SCALE, clip.getTrackProperty(2));
+
+        int[] cursors = new int[3];
+        float[] out = new float[12];
+
+        // Position ranges are 4, 4 and 10
+        clip.sample(1, cursors, out);
+        assertArrayEquals(new float[]{2, 4, -5}, new float[]{out[0], out[1], out[2]}, 10 / 65535f);
+
+        clip.sample(3, cursors, out);
+        assertArrayEquals(new float[]{-2, 1, 0}, new float[]{out[0], out[1], out[2]}, 10 / 65535f);
+        assertEquals(1, out[4], 1 / 65535f);
+
+        // Track with a key and zero extent is constant
+        assertArrayEquals(new float[]{2, 2, 2}, new float[]{out[8], out[9], out[10]}, 0);
+    }
+
+    @Test
+    public void sampleInterpolatesAndClamps() {
+
+        AnimationClip clip = createClip();
+        int[] cursors = new int[3];
+        float[] out = new float[12];
+
+        clip.sample(0.5f, cursors, out);
+        assertArrayEquals(new float[]{1, 2, -7.5f}, new float[]{out[0], out[1], out[2]}, 1e-3f);
+        assertEquals(0, out[4], 1e-4f);
+
+        clip.sample(1.25f, cursors, out);
+        assertEquals(0.5f, out[4], 1e-3f);
+
+        clip.sample(-1, cursors, out);
+        assertArrayEquals(new float[]{0, 0, -10}, new float[]{out[0], out[1], out[2]}, 1e-3f);
+
+        clip.sample(10, cursors, out);
+        assertArrayEquals(new float[]{-2, 1, 0}, new float[]{out[0], out[1], out[2]}, 1e-3f);
+    }
+
+    /**
+     * Result doesn't depend on cursors left by previous samples.
+     */
+    @Test
+    public void cursorSearchMatchesFreshSearch() {
+
+        float[] times = new float[50];
+        float[] values = new float[50];
+        for (int i = 0; i < times.length; ++i) {
+            times[i] = i * 0.1f;
+            values[i] = (float) Math.sin(i);
+        }
+        AnimationClip clip = new AnimationClip.Builder()
+                .addTrack(0, TweenEngine.OPACITY, times, values)
+                .build();
+
+        int[] cursors = new int[1];
+        float[] out = new float[4];
+        float[] expected = new float[4];
+
+        // Forward, backward, and cursor out of range of track
+        float[] sampleTimes = {0, 0.33f, 0.34f, 1.7f, 4.9f, 4.9f, 2.05f, 0.01f, 3.3f};
+        for (float time : sampleTimes) {
+            clip.sample(time, cursors, out);
+            clip.sample(time, new int[1], expected);
+            assertEquals("time " + time, expected[0], out[0], 0);
+        }
+
+        cursors[0] = 1000;
+        clip.sample(1.55f, cursors, out);
+        clip.sample(1.55f, new int[1], expected);
+        assertEquals(expected[0], out[0], 0);
+        assertEquals(15, cursors[0]);
+    }
+
+    /**
+     * Quaternion q and -q are same rotation. Builder flips keys to interpolate through shortest path.
+     */
+    @Test
+    public void rotationIsInterpolatedInSameHemisphere() {
+
+        Quaternionf q0 = new Quaternionf().rotateY(0.2f);
+        Quaternionf q1 = new Quaternionf().rotateY(1.0f);
+        AnimationClip clip = new AnimationClip.Builder()
+                .addTrack(0, TweenEngine.ROTATION, new float[]{0, 1}, new float[]{
+                        q0.x, q0.y, q0.z, q0.w,
+                        -q1.x, -q1.y, -q1.z, -q1.w})
+                .build();
+
+        float[] out = new float[4];
+        clip.sample(0.5f, new int[1], out);
+
+        // Normalized lerp of same hemisphere keys stays around Y axis
+        Quaternionf expected = new Quaternionf().rotateY(0.6f);
+        assertArrayEquals(new float[]{expected.x, expected.y, expected.z, expected.w}, out, 1e-3f);
+
+        float length = (float) Math.sqrt(out[0] * out[0] + out[1] * out[1] + out[2] * out[2] + out[3] * out[3]);
+        assertEquals(1, length, 1e-5f);
+    }
+
+    @Test
+    public void writeAndLoadKeepQuantizedKeys() throws IOException {
+
+        AnimationClip clip = createClip();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        clip.write(bytes);
+
+        AnimationClip loaded = AnimationClip.load(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals(clip.getDuration(), loaded.getDuration(), 0);
+        assertEquals(clip.getTrackCount(), loaded.getTrackCount());
+
+        float[] expected = new float[12];
+        float[] out = new float[12];
+        for (float time = 0; time <= 3; time += 0.125f) {
+            clip.sample(time, new int[3], expected);
+            loaded.sample(time, new int[3], out);
+            assertArrayEquals(expected, out, 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void loadRejectsBrokenClip() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        createClip().write(bytes);
+
+        byte[] data = bytes.toByteArray();
+        AnimationClip.load(ByteBuffer.wrap(data, 0, data.length - 2).slice());
+    }
+}
@@ -0,0 +1,138 @@
+package org.meganekkovr.mesh;
+
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryMeshTest {
+
+    private static Mesh createMesh(boolean normals) {
+        return new Mesh(
+                new float[]{-1, 0, 2, 3, -4, 5, 0.5f, 6, -7},
+                normals ? new float[]{0, 0, 1, 0, 1, 0, 1, 0, 0} : null,
+                new float[]{0, 0, 1, 0.25f, 0.5f, 1},
+                new int[]{0, 1, 2, 2, 1, 0});
+    }
+
+    private static byte[] write(Mesh mesh) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryMesh.write(mesh, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void headerIsWrittenAndLoaded() throws IOException {
+
+        byte[] data = write(createMesh(true));
+        ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(BinaryMesh.MAGIC, header.getInt(0));
+        assertEquals(BinaryMesh.VERSION, header.getShort(4));
+        assertEquals(BinaryMesh.FLAG_NORMALS, header.getShort(6));
+        assertEquals(BinaryMesh.HEADER_SIZE + 3 * 32 + 6 * 2, data.length);
+
+        BinaryMesh mesh = BinaryMesh.load(ByteBuffer.wrap(data));
+        assertEquals(3, mesh.getVertexCount());
+        assertEquals(6, mesh.getIndexCount());
+        assertTrue(mesh.hasNormals());
+        assertFalse(mesh.isIndex32());
+        assertEquals(32, mesh.getLayout().getVertexSize());
+        assertEquals(new Vector3f(-1, -4, -7), mesh.getBoundsMin(new Vector3f()));
+        assertEquals(new Vector3f(3, 6, 5), mesh.getBoundsMax(new Vector3f()));
+    }
+
+    /**
+     * Vertex and index buffers start at their offsets in file and have exact sizes.
+     */
+    @Test
+    public void slicesStartAtDataOffsets() throws IOException {
+
+        Mesh source = createMesh(true);
+        BinaryMesh mesh = BinaryMesh.load(ByteBuffer.wrap(write(source)));
+
+        ByteBuffer vertices = mesh.getVertices();
+        assertTrue(vertices.isDirect());
+        assertEquals(0, vertices.position());
+        assertEquals(3 * 32, vertices.remaining());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, vertices.order());
+        for (int i = 0; i < 3; ++i) {
+            int offset = i * 32;
+            assertEquals(source.getPositions()[i * 3], vertices.getFloat(offset), 0);
+            assertEquals(source.getPositions()[i * 3 + 2], vertices.getFloat(offset + 8), 0);
+            assertEquals(source.getNormals()[i * 3 + 1], vertices.getFloat(offset + 16), 0);
+            assertEquals(source.getUvs()[i * 2 + 1], vertices.getFloat(offset + 28), 0);
+        }
+
+        ByteBuffer indices = mesh.getIndices();
+        assertEquals(0, indices.position());
+        assertEquals(6 * 2, indices.remaining());
+        for (int i = 0; i < 6; ++i) {
+            assertEquals(source.getTriangles()[i], indices.getShort(i * 2));
+        }
+    }
+
+    @Test
+    public void meshWithoutNormalsHasShortVertices() throws IOException {
+
+        Mesh source = createMesh(false);
+        BinaryMesh mesh = BinaryMesh.load(ByteBuffer.wrap(write(source)));
+
+        assertFalse(mesh.hasNormals());
+        assertEquals(3 * 20, mesh.getVertices().remaining());
+        assertEquals(source.getUvs()[4], mesh.getVertices().getFloat(2 * 20 + 12), 0);
+        assertEquals(2, mesh.getIndices().getShort(3 * 2));
+    }
+
+    @Test
+    public void largeMeshHas32BitIndices() throws IOException {
+
+        final int vertexCount = 65537;
+        Mesh source = new Mesh(new float[vertexCount * 3], null, new float[vertexCount * 2],
+                new int[]{0, 65535, 65536});
+        BinaryMesh mesh = BinaryMesh.load(ByteBuffer.wrap(write(source)));
+
+        assertTrue(mesh.isIndex32());
+        assertEquals(3 * 4, mesh.getIndices().remaining());
+        assertEquals(65536, mesh.getIndices().getInt(8));
+    }
+
+    @Test
+    public void fileIsMappedAtDataOffsets() throws IOException {
+
+        File file = File.createTempFile("mesh", BinaryMesh.EXTENSION);
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                BinaryMesh.write(createMesh(true), out);
+            }
+
+            BinaryMesh mesh = BinaryMesh.load(file);
+            assertEquals(3 * 32, mesh.getVertices().remaining());
+            assertEquals(3, mesh.getVertices().getFloat(32), 0);
+            assertEquals(1, mesh.getIndices().getShort(2));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void truncatedMeshIsRejected() throws IOException {
+
+        byte[] data = write(createMesh(true));
+        try {
+            BinaryMesh.load(ByteBuffer.wrap(data, 0, data.length - 1));
+            fail("Truncated mesh is accepted");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.meganekkovr.mesh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ObjLoaderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static Mesh load(String obj) throws IOException {
+        return ObjLoader.load(new ByteArrayInputStream(obj.getBytes(UTF_8)));
+    }
+
+    /**
+     * Grid of quads. Each quad refers its own 4 vertices with absolute or relative indices.
+     */
+    private static String createGrid(int quadCount, boolean relative) {
+
+        StringBuilder obj = new StringBuilder();
+        obj.append("# grid\n");
+        for (int i = 0; i < quadCount; ++i) {
+            obj.append("v ").append(i).append(" 0 0\n");
+            obj.append("v ").append(i + 1).append(" 0 0\n");
+            obj.append("v ").append(i + 1).append(" 1 0\n");
+            obj.append("v ").append(i).append(" 1 0\n");
+            obj.append("vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n");
+            obj.append("vn 0 0 1\n");
+            if (relative) {
+                obj.append("f -4/-4/-1 -3/-3/-1 -2/-2/-1 -1/-1/-1\n");
+            } else {
+                int v = i * 4;
+                obj.append("f ").append(v + 1).append('/').append(v + 1).append('/').append(i + 1)
+                        .append(' ').append(v + 2).append('/').append(v + 2).append('/').append(i + 1)
+                        .append(' ').append(v + 3).append('/').append(v + 3).append('/').append(i + 1)
+                        .append(' ').append(v + 4).append('/').append(v + 4).append('/').append(i + 1)
+                        .append('\n');
+            }
+        }
+        return obj.toString();
+    }
+
+    private static void assertMeshEquals(Mesh expected, Mesh actual) {
+        assertArrayEquals(expected.getPositions(), actual.getPositions(), 0);
+        assertArrayEquals(expected.getUvs(), actual.getUvs(), 0);
+        assertArrayEquals(expected.getNormals(), actual.getNormals(), 0);
+        assertArrayEquals(expected.getTriangles(), actual.getTriangles());
+    }
+
+    @Test
+    public void relativeIndicesReferPrecedingElements() throws IOException {
+
+        Mesh mesh = load(""
+                + "v 0 0 0\nv 1 0 0\nv 1 1 0\n"
+                + "vt 0 0\nvt 1 0\nvt 1 1\n"
+                + "f -3/-3 -2/-2 -1/-1\n"
+                + "v 0 1 0\n"
+                + "f 1/1 3/3 -1/-3\n");
+
+        assertEquals(2, mesh.getTriangleCount());
+        assertEquals(4, mesh.getVertexCount());
+        assertArrayEquals(new float[]{0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0}, mesh.getPositions(), 0);
+
+        // V is flipped
+        assertArrayEquals(new float[]{0, 1, 1, 1, 1, 0, 0, 1}, mesh.getUvs(), 0);
+    }
+
+    @Test
+    public void relativeIndicesMatchAbsoluteIndices() throws IOException {
+        assertMeshEquals(load(createGrid(8, false)), load(createGrid(8, true)));
+    }
+
+    /**
+     * Parallel parsing splits data into chunks which don't know elements of previous chunks.
+     */
+    @Test
+    public void relativeIndicesAcrossChunks() throws IOException {
+
+        byte[] data = createGrid(4000, true).getBytes(UTF_8);
+        assertTrue(data.length > 4 * 64 * 1024);
+
+        Mesh expected = load(createGrid(4000, false));
+        assertMeshEquals(expected, ObjLoader.load(data, 4));
+        assertMeshEquals(expected, load(createGrid(4000, true)));
+    }
+
+    @Test
+    public void relativeIndexBeforeFirstElementIsRejected() throws IOException {
+
+        try {
+            load("v 0 0 0\nv 1 0 0\nv 1 1 0\nf -4 -2 -1\n");
+            fail("Relative index before the first vertex is accepted");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        try {
+            load("v 0 0 0\nv 1 0 0\nv 1 1 0\nvt 0 0\nf 1/-2 2/-1 3/-1\n");
+            fail("Relative index before the first uv is accepted");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void encodedIndicesAreDecodedWithChunkOffset() throws IOException {
+
+        byte[] data = "f -1 -2/-1 -3//-2\n".getBytes(UTF_8);
+        ObjParser.Chunk chunk = new ObjParser(data, 0, data.length).parse();
+
+        // Chunk has no elements, so relative indices refer previous chunks
+        assertEquals(9, chunk.corners.size());
+        assertEquals(9, ObjParser.toAbsoluteIndex(chunk.corners.get(0), 10));
+        assertEquals(8, ObjParser.toAbsoluteIndex(chunk.corners.get(3), 10));
+        assertEquals(9, ObjParser.toAbsoluteIndex(chunk.corners.get(4), 10));
+        assertEquals(7, ObjParser.toAbsoluteIndex(chunk.corners.get(6), 10));
+        assertEquals(-1, ObjParser.toAbsoluteIndex(chunk.corners.get(7), 10));
+        assertEquals(8, ObjParser.toAbsoluteIndex(chunk.corners.get(8), 10));
+
+        // Absolute indices are not affected by offset
+        assertEquals(4, ObjParser.toAbsoluteIndex(5, 10));
+    }
+}